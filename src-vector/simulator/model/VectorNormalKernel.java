@@ -0,0 +1,62 @@
+package simulator.model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernel of a {@link NormalBatch} over the vector lanes of {@code jdk.incubator.vector}, with the
+ * same arithmetic as {@link NormalBatch#compute_lanes}: additions, products, quotients and
+ * square roots round the same in every lane, the zero-length move and the clamps are selects.
+ * The lanes after the last full vector are computed by the scalar loop.
+ * <p>
+ * Loaded by {@link NormalBatch} by name, so that the rest of the simulator builds and runs
+ * without the module.
+ */
+final class VectorNormalKernel implements NormalBatch.Kernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    VectorNormalKernel() {
+    }
+
+    @Override
+    public void compute(NormalBatch b, double dt) {
+        Parameters p = b.get_parameters();
+        DoubleVector max_energy = DoubleVector.broadcast(SPECIES, p._maxenergy);
+        DoubleVector lowest_energy = DoubleVector.broadcast(SPECIES, p._lowestenergy);
+        DoubleVector max_desire = DoubleVector.broadcast(SPECIES, p._maxdesire);
+        DoubleVector lowest_desire = DoubleVector.broadcast(SPECIES, p._lowestdesire);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+
+        int m = b._lanes;
+        int bound = SPECIES.loopBound(m);
+        for (int k = 0; k < bound; k += SPECIES.length()) {
+            DoubleVector step = DoubleVector.fromArray(SPECIES, b._speed, k).mul(dt).mul(DoubleVector.fromArray(SPECIES, b._pace, k));
+            DoubleVector x = DoubleVector.fromArray(SPECIES, b._x, k);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, b._y, k);
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, b._dest_x, k).sub(x);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, b._dest_y, k).sub(y);
+            DoubleVector d = dx.mul(dx).add(dy.mul(dy)).lanewise(VectorOperators.SQRT);
+            VectorMask<Double> moving = d.compare(VectorOperators.GT, 0.0);
+            DoubleVector inv = one.div(d);
+            x.blend(x.add(dx.mul(inv).mul(step)), moving).intoArray(b._new_x, k);
+            y.blend(y.add(dy.mul(inv).mul(step)), moving).intoArray(b._new_y, k);
+
+            DoubleVector.fromArray(SPECIES, b._age, k).add(dt).intoArray(b._new_age, k);
+
+            DoubleVector energy = DoubleVector.fromArray(SPECIES, b._energy, k)
+                    .sub(DoubleVector.fromArray(SPECIES, b._energy_rate, k).mul(dt));
+            energy = energy.blend(max_energy, energy.compare(VectorOperators.GT, max_energy));
+            energy = energy.blend(lowest_energy, energy.compare(VectorOperators.LT, lowest_energy));
+            energy.intoArray(b._new_energy, k);
+
+            DoubleVector desire = DoubleVector.fromArray(SPECIES, b._desire, k)
+                    .add(DoubleVector.fromArray(SPECIES, b._desire_rate, k).mul(dt));
+            desire = desire.blend(max_desire, desire.compare(VectorOperators.GT, max_desire));
+            desire = desire.blend(lowest_desire, desire.compare(VectorOperators.LT, lowest_desire));
+            desire.intoArray(b._new_desire, k);
+        }
+        b.compute_lanes(bound, m, dt);
+    }
+}
@@ -0,0 +1,126 @@
+package simulator.control;
+
+import simulator.model.*;
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Observer that forwards the notifications of the simulator to another observer on a writer
+ * thread, through an {@link AsyncSink}, so that an observer writing to disk, such as a
+ * {@link TrajectoryRecorder}, does not stall the steps. Every notification is queued with its
+ * arguments; the lists of animals are {@link AnimalSnapshot}s, which do not change afterwards.
+ * The map and the regions are the live ones: the delegate may read their dimensions only.
+ * <p>
+ * Only the notifications of the selected events are queued, so that a delegate which ignores
+ * some of them, like the recorder, which only needs the states of {@link #STATES}, does not
+ * spend queue slots on them. With a backpressure policy other than BLOCK, any queued
+ * notification may be skipped, so the delegate must not rely on seeing all of them.
+ * {@link #open} is called directly, on the calling thread.
+ */
+public class AsyncObserver implements EcoSysObserver, Closeable {
+    public enum Event {
+        REGISTER, RESET, ANIMAL_ADDED, ANIMALS_ADDED, REGION_SET, ADVANCED
+    }
+
+    // the notifications that carry the whole state of the simulation
+    public static final Set<Event> STATES = EnumSet.of(Event.REGISTER, Event.RESET, Event.ADVANCED);
+
+    private final EcoSysObserver _delegate;
+    private final AsyncSink<Consumer<EcoSysObserver>> _sink;
+    private final Set<Event> _events;
+
+    /**
+     * Creates an observer forwarding every notification to the given one, and starts its writer
+     * thread.
+     *
+     * @param delegate The observer the notifications are forwarded to
+     * @param capacity The number of notifications the queue holds
+     * @param policy   What to do when the queue is full
+     */
+    public AsyncObserver(EcoSysObserver delegate, int capacity, AsyncSink.Backpressure policy) {
+        this(delegate, capacity, policy, EnumSet.allOf(Event.class));
+    }
+
+    /**
+     * Creates an observer forwarding the notifications of some events to the given one, and
+     * starts its writer thread.
+     *
+     * @param delegate The observer the notifications are forwarded to
+     * @param capacity The number of notifications the queue holds
+     * @param policy   What to do when the queue is full
+     * @param events   The events forwarded, the others are ignored
+     */
+    public AsyncObserver(EcoSysObserver delegate, int capacity, AsyncSink.Backpressure policy, Set<Event> events) {
+        _delegate = delegate;
+        _events = EnumSet.copyOf(events);
+        _sink = new AsyncSink<>("observer-" + delegate.getClass().getSimpleName(), capacity, policy, n -> n.accept(delegate));
+    }
+
+    public long get_dropped() {
+        return _sink.get_dropped();
+    }
+
+    /**
+     * Waits until the delegate has received every queued notification. The delegate itself is
+     * not closed.
+     *
+     * @throws IOException If the delegate failed to handle a notification
+     */
+    @Override
+    public void close() throws IOException {
+        _sink.close();
+    }
+
+    @Override
+    public void onRegister(double time, MapInfo map, List<AnimalInfo> animals) {
+        if (_events.contains(Event.REGISTER)) {
+            _sink.offer(o -> o.onRegister(time, map, animals));
+        }
+    }
+
+    @Override
+    public void onReset(double time, MapInfo map, List<AnimalInfo> animals) {
+        if (_events.contains(Event.RESET)) {
+            _sink.offer(o -> o.onReset(time, map, animals));
+        }
+    }
+
+    @Override
+    public void onAnimalAdded(double time, MapInfo map, List<AnimalInfo> animals, AnimalInfo a) {
+        if (_events.contains(Event.ANIMAL_ADDED)) {
+            _sink.offer(o -> o.onAnimalAdded(time, map, animals, a));
+        }
+    }
+
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+        if (_events.contains(Event.ANIMALS_ADDED)) {
+            _sink.offer(o -> o.onAnimalsAdded(time, map, animals, added));
+        }
+    }
+
+    @Override
+    public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
+        if (_events.contains(Event.REGION_SET)) {
+            _sink.offer(o -> o.onRegionSet(row, col, map, r));
+        }
+    }
+
+    @Override
+    public void open(Component parent) {
+        _delegate.open(parent);
+    }
+
+    @Override
+    public void onAdvanced(double currentTime, MapInfo mapInfo, List<AnimalInfo> animals, double dt) {
+        if (_events.contains(Event.ADVANCED)) {
+            _sink.offer(o -> o.onAdvanced(currentTime, mapInfo, animals, dt));
+        }
+    }
+}
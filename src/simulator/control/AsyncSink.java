@@ -0,0 +1,190 @@
+package simulator.control;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands payloads from the simulation thread to a writer thread through a bounded queue, so
+ * that a slow output does not stall the steps. The payloads must not change once offered, e.g.
+ * an AnimalSnapshot or a copy of the counters of the step.
+ * <p>
+ * When the queue is full, the {@link Backpressure} policy decides: BLOCK waits for the writer,
+ * DROP_OLDEST discards the oldest queued payload, and SAMPLE only accepts one payload out of a
+ * stride that doubles every time the queue is full and halves when it is less than half full.
+ * An error of the writer stops the writing, the next payloads are discarded, and it is thrown
+ * by {@link #close()}.
+ *
+ * @param <T> The type of the payloads
+ */
+public final class AsyncSink<T> implements Closeable {
+    public enum Backpressure {
+        BLOCK, DROP_OLDEST, SAMPLE
+    }
+
+    /**
+     * Writes the payloads, on the writer thread.
+     *
+     * @param <T> The type of the payloads
+     */
+    public interface Target<T> {
+        void write(T payload) throws IOException;
+    }
+
+    // queued after the last payload to stop the writer
+    private static final Object END = new Object();
+    private static final int MAX_STRIDE = 1 << 16;
+
+    private final BlockingQueue<Object> _queue;
+    private final int _capacity;
+    private final Backpressure _policy;
+    private final Target<T> _target;
+    private final Thread _writer;
+    private volatile Throwable _failure;
+    // queued payloads the writer skipped after an error, written by the writer only
+    private volatile long _skipped;
+    private boolean _closed;
+    private long _offered;
+    private long _dropped;
+    private int _stride;
+
+    /**
+     * Creates a sink and starts its writer thread.
+     *
+     * @param name     The name of the writer thread
+     * @param capacity The number of payloads the queue holds
+     * @param policy   What to do when the queue is full
+     * @param target   Where the payloads are written
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    public AsyncSink(String name, int capacity, Backpressure policy, Target<T> target) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the queue must be positive");
+        }
+        _queue = new ArrayBlockingQueue<>(capacity);
+        _capacity = capacity;
+        _policy = policy;
+        _target = target;
+        _stride = 1;
+        _writer = new Thread(this::drain, name);
+        // a run that fails must not keep the program alive: only close() waits for the writer
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    /**
+     * Queues a payload for the writer, applying the backpressure policy if the queue is full.
+     * Must be called from a single thread, the one that closes the sink.
+     *
+     * @param payload The payload
+     * @throws IllegalStateException If the sink is closed
+     */
+    public void offer(T payload) {
+        if (_closed) {
+            throw new IllegalStateException("The sink is closed");
+        }
+        if (_failure != null) {
+            _dropped++;
+            return;
+        }
+        switch (_policy) {
+            case BLOCK -> {
+                try {
+                    _queue.put(payload);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    _dropped++;
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!_queue.offer(payload)) {
+                    if (_queue.poll() != null) {
+                        _dropped++;
+                    }
+                }
+            }
+            case SAMPLE -> {
+                if (_offered++ % _stride != 0) {
+                    _dropped++;
+                } else if (!_queue.offer(payload)) {
+                    _dropped++;
+                    _stride = Math.min(_stride * 2, MAX_STRIDE);
+                } else if (_stride > 1 && _queue.size() < _capacity / 2) {
+                    _stride /= 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of payloads discarded so far, by the policy or after an error.
+     *
+     * @return The number of payloads discarded
+     */
+    public long get_dropped() {
+        return _dropped + _skipped;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        try {
+            while (true) {
+                Object payload = _queue.take();
+                if (payload == END) {
+                    return;
+                }
+                if (_failure != null) {
+                    _skipped++;
+                    continue;
+                }
+                try {
+                    _target.write((T) payload);
+                } catch (IOException | RuntimeException e) {
+                    _failure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            _failure = e;
+        }
+    }
+
+    /**
+     * Waits until the writer has written every queued payload and stops it.
+     *
+     * @throws IOException If the writer failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                _queue.put(END);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (true) {
+            try {
+                _writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable failure = _failure;
+        if (failure instanceof IOException e) {
+            throw e;
+        } else if (failure != null) {
+            throw new IOException(failure.getMessage(), failure);
+        }
+    }
+}
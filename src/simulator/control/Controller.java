@@ -6,18 +6,156 @@ import simulator.model.*;
 import simulator.view.SimpleObjectViewer;
 import simulator.view.SimpleObjectViewer.ObjInfo;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-public class Controller {
+public class Controller implements AutoCloseable {
+    // wall time between two frames of the viewer of run(), about 60 per second
+    private static final long VIEW_FRAME_NANOS = 1_000_000_000L / 60;
 
     private final Simulator _sim;
+    private Path _checkpoint_file;
+    private double _checkpoint_interval;
+    private boolean _pretty_output = true;
+    private boolean _compact_output = false;
+    private Path _population_file;
+    private int _population_interval;
+    private int _queue_capacity;
+    private AsyncSink.Backpressure _backpressure = AsyncSink.Backpressure.BLOCK;
+    private final Map<EcoSysObserver, Set<AsyncObserver.Event>> _sinks = new LinkedHashMap<>();
 
     public Controller(Simulator sim) {
         this._sim = sim;
     }
 
+    /**
+     * Makes run() write a checkpoint of the simulation to the given file every time the
+     * simulated time passes a multiple of the interval, replacing the previous one.
+     *
+     * @param file     The checkpoint file, or null to stop checkpointing
+     * @param interval The simulated time between two checkpoints
+     * @throws IllegalArgumentException If the interval is not positive
+     */
+    public void set_checkpoint(Path file, double interval) {
+        if (file != null && !(interval > 0)) {
+            throw new IllegalArgumentException("The checkpoint interval must be positive");
+        }
+        _checkpoint_file = file;
+        _checkpoint_interval = interval;
+    }
+
+    /**
+     * Makes run() export the population counters of the simulation to the given file, before
+     * the first step and then every given number of steps, see {@link PopulationExporter}. The
+     * format is chosen by the extension of the file.
+     *
+     * @param file     The export file, or null to stop exporting
+     * @param interval The number of steps between two records
+     * @throws IllegalArgumentException If the interval is not positive
+     */
+    public void set_population_export(Path file, int interval) {
+        if (file != null && interval < 1) {
+            throw new IllegalArgumentException("The population export interval must be positive");
+        }
+        _population_file = file;
+        _population_interval = interval;
+    }
+
+    /**
+     * Makes run() hand its per-step outputs, the sinks added with {@link #add_sink} and the
+     * population export, to writer threads, each through its own {@link AsyncSink} with the
+     * given capacity and policy, instead of writing them on the simulation thread.
+     *
+     * @param capacity The number of records every output can queue, or 0 to write them on the
+     *                 simulation thread
+     * @param policy   What to do when a queue is full
+     * @throws IllegalArgumentException If the capacity is negative
+     */
+    public void set_output_queue(int capacity, AsyncSink.Backpressure policy) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity of the output queue cannot be negative");
+        }
+        _queue_capacity = capacity;
+        _backpressure = policy;
+    }
+
+    /**
+     * Adds an observer that run() registers with the simulator while it runs, behind an
+     * {@link AsyncObserver} if an output queue was selected with {@link #set_output_queue}.
+     * Every sink gets its own queue and writer thread, and has received all its notifications
+     * when run() returns; closing it is left to the caller.
+     *
+     * @param o The observer
+     */
+    public void add_sink(EcoSysObserver o) {
+        add_sink(o, EnumSet.allOf(AsyncObserver.Event.class));
+    }
+
+    /**
+     * Adds an observer as {@link #add_sink(EcoSysObserver)} does, whose queue only takes the
+     * notifications of the given events. Without a queue it is notified of every event.
+     *
+     * @param o      The observer
+     * @param events The events the observer needs
+     */
+    public void add_sink(EcoSysObserver o, Set<AsyncObserver.Event> events) {
+        _sinks.put(o, events);
+    }
+
+    public void remove_sink(EcoSysObserver o) {
+        _sinks.remove(o);
+    }
+
+    /**
+     * Selects whether run() indents its output, as toString(2) of org.json, or writes it on one
+     * line. It is indented by default.
+     *
+     * @param pretty Whether the output is indented
+     */
+    public void set_pretty_output(boolean pretty) {
+        _pretty_output = pretty;
+    }
+
+    /**
+     * Selects the schema of the states written by run(): the compact one, where every animal
+     * appears once with numeric coordinates and codes, or the one of Simulator.as_JSON, kept by
+     * default for compatibility.
+     *
+     * @param compact Whether the states are written in the compact schema
+     */
+    public void set_compact_output(boolean compact) {
+        _compact_output = compact;
+    }
+
+    /**
+     * Writes a checkpoint of the simulation to the given file.
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public void save_checkpoint(Path file) throws IOException {
+        _sim.save_checkpoint(file);
+    }
+
+    /**
+     * Replaces the state of the simulation with the checkpoint in the given file. The simulation
+     * then continues from the time of the checkpoint.
+     *
+     * @param file The file to read
+     * @throws IOException If the file cannot be read or is not a valid checkpoint
+     */
+    public void restore_checkpoint(Path file) throws IOException {
+        _sim.restore_checkpoint(file);
+    }
+
     /**
      * Loads simulation data from the provided JSON object.
      *
@@ -33,9 +171,7 @@ public class Controller {
             JSONObject animalSpec = animals.getJSONObject(i);
             int amount = animalSpec.getInt("amount");
             JSONObject spec = animalSpec.getJSONObject("spec");
-            for (int j = 0; j < amount; j++) {
-                _sim.add_animal(spec);
-            }
+            _sim.add_animals(spec, amount);
         }
     }
 
@@ -65,43 +201,171 @@ public class Controller {
     }
 
     /**
-     * Runs the simulation for the specified duration.
+     * Runs the simulation until its time reaches t, writing the checkpoints selected with
+     * {@link #set_checkpoint}, the population export selected with
+     * {@link #set_population_export} and the sinks added with {@link #add_sink} on the way. The output is an object with the initial state under
+     * "in" and the final one under "out"; it is streamed, the initial state before running.
      *
-     * @param t   Duration of the simulation
+     * @param t   Time at which the simulation stops, its duration when it starts at time 0
      * @param dt  Time step for the simulation
-     * @param sv  Indicates whether to display the simulation visually
+     * @param sv  Indicates whether to display the simulation visually, at most 60 frames per
+     *            second and always the final state
      * @param out Output stream to write simulation results
      */
     public void run(double t, double dt, boolean sv, OutputStream out) {
-        JSONObject init_state = _sim.as_JSON();
-        JSONObject final_state;
+        JSONStream json = new JSONStream(out, _pretty_output);
+        try {
+            json.begin_object(2).key("in");
+            write_state(json);
+        } catch (IOException e) {
+            System.err.println("Error while writing the output file: " + e.getLocalizedMessage());
+            json = null;
+        }
+        List<EcoSysObserver> sinks = attach_sinks();
+        PopulationExporter exporter = null;
+        AsyncSink<PopulationExporter.Sample> export_queue = null;
         SimpleObjectViewer view = null;
-        if (sv) {
-            MapInfo m = _sim.get_map_info();
-            view = new SimpleObjectViewer("ECOSYSTEM", m.get_width(), m.get_height(), m.get_cols(), m.get_rows());
-            view.update(to_animals_info(_sim.getAnimals()), _sim.get_time(), dt);
+        // the sinks, the export and the view are released even if a step fails
+        try {
+            if (_population_file != null) {
+                try {
+                    exporter = new PopulationExporter(_sim, Files.newOutputStream(_population_file), PopulationExporter.format_of(_population_file));
+                    if (_queue_capacity > 0) {
+                        export_queue = new AsyncSink<>("population-export", _queue_capacity, _backpressure, exporter::write);
+                    }
+                    export(exporter, export_queue);
+                } catch (IOException e) {
+                    System.err.println("Error while writing the population export: " + e.getLocalizedMessage());
+                    exporter = close_quietly(exporter);
+                }
+            }
+            long last_frame = 0;
+            if (sv) {
+                MapInfo m = _sim.get_map_info();
+                view = new SimpleObjectViewer("ECOSYSTEM", m.get_width(), m.get_height(), m.get_cols(), m.get_rows());
+                view.update(to_animals_info(_sim.get_animals()), _sim.get_time(), dt);
+                last_frame = System.nanoTime();
+            }
+
+            double next_checkpoint = _checkpoint_file == null ? Double.POSITIVE_INFINITY : next_checkpoint_time();
+            int steps = 0;
+            while (_sim.get_time() < t) {
+                _sim.advance(dt);
+                steps++;
+                if (exporter != null && steps % _population_interval == 0) {
+                    try {
+                        export(exporter, export_queue);
+                    } catch (IOException e) {
+                        System.err.println("Error while writing the population export: " + e.getLocalizedMessage());
+                        exporter = close_quietly(exporter);
+                    }
+                }
+                if (sv && (_sim.get_time() >= t || System.nanoTime() - last_frame >= VIEW_FRAME_NANOS)) {
+                    view.update(to_animals_info(_sim.get_animals()), _sim.get_time(), dt);
+                    last_frame = System.nanoTime();
+                }
+                if (_sim.get_time() >= next_checkpoint) {
+                    try {
+                        _sim.save_checkpoint(_checkpoint_file);
+                    } catch (IOException e) {
+                        System.err.println("Error while writing the checkpoint: " + e.getLocalizedMessage());
+                    }
+                    next_checkpoint = next_checkpoint_time();
+                }
+            }
 
+            if (json != null) {
+                try {
+                    json.key("out");
+                    write_state(json);
+                    json.end_object();
+                } catch (IOException e) {
+                    System.err.println("Error while writing the output file: " + e.getLocalizedMessage());
+                }
+            }
+        } finally {
+            detach_sinks(sinks);
+            close_export(exporter, export_queue);
+            if (view != null) {
+                view.close();
+            }
         }
+    }
 
-        while (_sim.get_time() < t) {
-            _sim.advance(dt);
-            if (sv) {
-                view.update(to_animals_info(_sim.getAnimals()), _sim.get_time(), dt);
+    // stops the writer thread of the export, if any, and closes the exporter, if it did not fail
+    private static void close_export(PopulationExporter exporter, AsyncSink<PopulationExporter.Sample> queue) {
+        try {
+            if (queue != null) {
+                queue.close();
             }
+            if (exporter != null) {
+                exporter.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error while writing the population export: " + e.getLocalizedMessage());
+            close_quietly(exporter);
         }
-        final_state = _sim.as_JSON();
-        JSONObject output = new JSONObject();
-        output.put("in", init_state);
-        output.put("out", final_state);
+    }
 
+    // writes a record of the exporter, or queues it for the writer thread
+    private static void export(PopulationExporter exporter, AsyncSink<PopulationExporter.Sample> queue) throws IOException {
+        if (queue != null) {
+            queue.offer(exporter.capture());
+        } else {
+            exporter.write();
+        }
+    }
 
-        try {
-            out.write(output.toString(2).getBytes());
-        } catch (Exception e) {
-            System.err.println("Error while writing the output file: " + e.getLocalizedMessage());
+    // registers the sinks with the simulator, behind their queues if any
+    private List<EcoSysObserver> attach_sinks() {
+        List<EcoSysObserver> attached = new ArrayList<>(_sinks.size());
+        for (Map.Entry<EcoSysObserver, Set<AsyncObserver.Event>> e : _sinks.entrySet()) {
+            EcoSysObserver o = e.getKey();
+            EcoSysObserver a = _queue_capacity > 0 ? new AsyncObserver(o, _queue_capacity, _backpressure, e.getValue()) : o;
+            _sim.addObserver(a);
+            attached.add(a);
+        }
+        return attached;
+    }
+
+    // unregisters the sinks and waits for their writer threads
+    private void detach_sinks(List<EcoSysObserver> attached) {
+        for (EcoSysObserver a : attached) {
+            _sim.removeObserver(a);
         }
-        if (sv)
-            view.close();
+        for (EcoSysObserver a : attached) {
+            if (a instanceof AsyncObserver q) {
+                try {
+                    q.close();
+                } catch (IOException e) {
+                    System.err.println("Error while writing an output: " + e.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    // closes an exporter that failed, ignoring further errors
+    private static PopulationExporter close_quietly(PopulationExporter exporter) {
+        if (exporter != null) {
+            try {
+                exporter.close();
+            } catch (IOException e) {
+                // the error was already reported
+            }
+        }
+        return null;
+    }
+
+    private void write_state(JSONStream json) throws IOException {
+        if (_compact_output) {
+            _sim.write_compact_JSON(json);
+        } else {
+            _sim.write_JSON(json);
+        }
+    }
+
+    private double next_checkpoint_time() {
+        return (Math.floor(_sim.get_time() / _checkpoint_interval) + 1) * _checkpoint_interval;
     }
 
     /**
@@ -146,6 +410,37 @@ public class Controller {
         _sim.advance(dt);
     }
 
+    /**
+     * Advances the simulation by a number of steps, notifying the observers of the sampled
+     * steps and of the last one.
+     *
+     * @param steps The number of steps
+     * @param dt    The time increment of every step
+     * @see Simulator#fast_forward
+     */
+    public void fast_forward(int steps, double dt) {
+        _sim.fast_forward(steps, dt);
+    }
+
+    /**
+     * Selects which steps the observers are notified of.
+     *
+     * @param every       The number of steps between two notifications, at least 1
+     * @param interval_ms The wall time between two notifications in milliseconds, or 0
+     * @see Simulator#set_observer_sampling
+     */
+    public void set_observer_sampling(int every, long interval_ms) {
+        _sim.set_observer_sampling(every, interval_ms);
+    }
+
+    /**
+     * Releases the threads of the simulator, see {@link Simulator#close()}.
+     */
+    @Override
+    public void close() {
+        _sim.close();
+    }
+
     public void addObserver(EcoSysObserver o) {
         _sim.addObserver(o);
     }
@@ -156,8 +451,7 @@ public class Controller {
 
     public List<String> getAnimalSpecies() {
         List<String> species = new ArrayList<>();
-        List<Animal> animals = _sim.getAnimals();
-        for (AnimalInfo animal : animals) {
+        for (AnimalInfo animal : _sim.get_animals()) {
             String speciesName = animal.get_genetic_code();
             if (!species.contains(speciesName)) {
                 species.add(speciesName);
@@ -0,0 +1,180 @@
+package simulator.control;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs many independent simulations of the same scenario, one per seed, concurrently on a
+ * thread pool of the current JVM, and aggregates their population curves.
+ */
+public class EnsembleRunner {
+
+    /**
+     * Creates the controller of one run, with its own simulator, factories and loaded data.
+     * It is called from the pool threads, so runs must not share mutable objects.
+     */
+    public interface RunFactory {
+        Controller create(long seed) throws Exception;
+    }
+
+    private static final double[] PERCENTILES = {5, 50, 95};
+
+    private final RunFactory _factory;
+    private final int _runs;
+    private final int _threads;
+
+    /**
+     * Creates an ensemble runner.
+     *
+     * @param factory Creates the controller of each run
+     * @param runs    Number of runs
+     * @param threads Number of runs executed at the same time
+     * @throws IllegalArgumentException If runs or threads are not positive
+     */
+    public EnsembleRunner(RunFactory factory, int runs, int threads) {
+        if (runs <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("The number of runs and threads must be positive");
+        }
+        _factory = factory;
+        _runs = runs;
+        _threads = threads;
+    }
+
+    /**
+     * Executes the runs with the seeds base_seed, base_seed + 1, ... and writes the output of
+     * each run next to the given output file, as out_run0.json, out_run1.json, ...
+     *
+     * @param base_seed Seed of the first run
+     * @param t         Duration of each simulation
+     * @param dt        Time step of each simulation
+     * @param out       Path of the output file, or null to skip the per-run outputs
+     * @return JSON object with the seeds, the sample times and the mean and percentile curves per species
+     * @throws Exception If a run fails
+     */
+    public JSONObject run(long base_seed, double t, double dt, String out) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        try {
+            List<Future<PopulationSampler>> futures = new ArrayList<>();
+            for (int k = 0; k < _runs; k++) {
+                final int run = k;
+                futures.add(pool.submit(() -> run_one(base_seed + run, t, dt, run_output(out, run))));
+            }
+            List<PopulationSampler> samples = new ArrayList<>();
+            for (Future<PopulationSampler> f : futures) {
+                try {
+                    samples.add(f.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ex ? ex : e;
+                }
+            }
+            return aggregate(base_seed, samples);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private PopulationSampler run_one(long seed, double t, double dt, String out) throws Exception {
+        PopulationSampler sampler = new PopulationSampler();
+        try (Controller ctrl = _factory.create(seed)) {
+            ctrl.addObserver(sampler);
+            if (out == null) {
+                ctrl.run(t, dt, false, OutputStream.nullOutputStream());
+            } else {
+                try (OutputStream os = new FileOutputStream(out)) {
+                    ctrl.run(t, dt, false, os);
+                }
+            }
+            ctrl.removeObserver(sampler);
+        }
+        return sampler;
+    }
+
+    /**
+     * Returns the output file of a run, inserting _run&lt;k&gt; before the extension of the given file.
+     */
+    static String run_output(String out, int run) {
+        if (out == null) {
+            return null;
+        }
+        int dot = out.lastIndexOf('.');
+        int sep = Math.max(out.lastIndexOf('/'), out.lastIndexOf('\\'));
+        if (dot > sep) {
+            return out.substring(0, dot) + "_run" + run + out.substring(dot);
+        }
+        return out + "_run" + run;
+    }
+
+    private JSONObject aggregate(long base_seed, List<PopulationSampler> samples) {
+        Set<String> species = new TreeSet<>();
+        int points = Integer.MAX_VALUE;
+        for (PopulationSampler s : samples) {
+            species.addAll(s.get_counts().keySet());
+            points = Math.min(points, s.get_times().size());
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("runs", samples.size());
+        JSONArray seeds = new JSONArray();
+        for (int k = 0; k < samples.size(); k++) {
+            seeds.put(base_seed + k);
+        }
+        result.put("seeds", seeds);
+        result.put("time", new JSONArray(samples.get(0).get_times().subList(0, points)));
+
+        JSONObject curves = new JSONObject();
+        for (String sp : species) {
+            JSONArray mean = new JSONArray();
+            JSONArray[] pct = new JSONArray[PERCENTILES.length];
+            for (int p = 0; p < pct.length; p++) {
+                pct[p] = new JSONArray();
+            }
+            double[] values = new double[samples.size()];
+            for (int i = 0; i < points; i++) {
+                double sum = 0;
+                for (int k = 0; k < samples.size(); k++) {
+                    List<Integer> curve = samples.get(k).get_counts().get(sp);
+                    values[k] = curve == null ? 0 : curve.get(i);
+                    sum += values[k];
+                }
+                Arrays.sort(values);
+                mean.put(sum / values.length);
+                for (int p = 0; p < pct.length; p++) {
+                    pct[p].put(percentile(values, PERCENTILES[p]));
+                }
+            }
+            JSONObject curve = new JSONObject();
+            curve.put("mean", mean);
+            for (int p = 0; p < pct.length; p++) {
+                curve.put(String.format("p%02d", (int) PERCENTILES[p]), pct[p]);
+            }
+            curves.put(sp, curve);
+        }
+        result.put("species", curves);
+        return result;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values.
+     */
+    private static double percentile(double[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Writes the aggregated statistics to the given stream.
+     *
+     * @param stats The statistics returned by run
+     * @param os    The stream to write to
+     * @throws IOException If the stream cannot be written
+     */
+    public static void write(JSONObject stats, OutputStream os) throws IOException {
+        os.write(stats.toString(2).getBytes());
+    }
+}
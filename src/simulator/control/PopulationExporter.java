@@ -0,0 +1,234 @@
+package simulator.control;
+
+import simulator.model.*;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Writes the population counters of a simulation, one record every time {@link #write()} is
+ * called, and flushes every record so that the file can be followed while the simulation runs.
+ * The counts are read from {@link Simulator#get_counters()}, not counted from the animals.
+ * <p>
+ * In CSV there is one row per species with its diet and its number of animals in every state
+ * and in total, after a header line. In NDJSON there is one object per line, with the time, the
+ * same counts by species and the number of animals of every diet in every region, row by row:
+ * <pre>
+ * {"time":0.03,"species":[{"gcode":"Sheep","diet":"HERBIVORE","states":{"NORMAL":4,...},"total":5}],
+ *  "regions":{"CARNIVORE":[0,1,...],"HERBIVORE":[3,0,...]}}
+ * </pre>
+ */
+public class PopulationExporter implements Closeable {
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private static final Animal.State[] STATES = Animal.State.values();
+    private static final Diet[] DIETS = Diet.values();
+
+    private final Simulator _sim;
+    private final Format _format;
+    private final OutputStream _os;
+    private final Writer _csv;
+    private final JSONStream _json;
+
+    /**
+     * Creates an exporter of the counters of a simulator, writing the CSV header if needed.
+     *
+     * @param sim    The simulator
+     * @param out    The output, closed with the exporter
+     * @param format The format of the records
+     * @throws IOException If the output cannot be written
+     */
+    public PopulationExporter(Simulator sim, OutputStream out, Format format) throws IOException {
+        _sim = sim;
+        _format = format;
+        _os = out;
+        if (format == Format.CSV) {
+            _csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            _json = null;
+            try {
+                _csv.write("time,species,diet");
+                for (Animal.State s : STATES) {
+                    _csv.write(',');
+                    _csv.write(s.name());
+                }
+                _csv.write(",total\n");
+                _csv.flush();
+            } catch (IOException e) {
+                out.close();
+                throw e;
+            }
+        } else {
+            _csv = null;
+            _json = new JSONStream(out, false);
+        }
+    }
+
+    /**
+     * Returns the format of a file from its extension: NDJSON for .ndjson and .jsonl, CSV
+     * otherwise.
+     *
+     * @param file The file
+     * @return The format
+     */
+    public static Format format_of(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? Format.NDJSON : Format.CSV;
+    }
+
+    /**
+     * Writes the counters of the current state of the simulation.
+     *
+     * @throws IOException If the output cannot be written
+     */
+    public void write() throws IOException {
+        write(capture());
+    }
+
+    /**
+     * Copies the counters of the current state of the simulation, to be written later by
+     * {@link #write(Sample)}, possibly from another thread.
+     *
+     * @return The copy
+     */
+    public Sample capture() {
+        PopulationCounters c = _sim.get_counters();
+        int species = c.get_species();
+        String[] codes = new String[species];
+        Diet[] diets = new Diet[species];
+        int[] counts = new int[species * STATES.length];
+        for (int s = 0; s < species; s++) {
+            codes[s] = c.get_genetic_code(s);
+            diets[s] = c.get_diet(s);
+            for (Animal.State state : STATES) {
+                counts[s * STATES.length + state.ordinal()] = c.get_count(s, state);
+            }
+        }
+        int[][] regions = null;
+        if (_format == Format.NDJSON) {
+            regions = new int[DIETS.length][];
+            for (Diet d : DIETS) {
+                regions[d.ordinal()] = _sim.count_by_region(d);
+            }
+        }
+        return new Sample(_sim.get_time(), codes, diets, counts, regions);
+    }
+
+    /**
+     * Writes counters copied by {@link #capture()}. Must not be called from two threads at once.
+     *
+     * @param sample The counters
+     * @throws IOException If the output cannot be written
+     */
+    public void write(Sample sample) throws IOException {
+        if (_format == Format.CSV) {
+            write_csv(sample);
+        } else {
+            write_json(sample);
+        }
+    }
+
+    private void write_csv(Sample c) throws IOException {
+        String time = Double.toString(c._time);
+        for (int s = 0; s < c._codes.length; s++) {
+            _csv.write(time);
+            _csv.write(',');
+            _csv.write(c._codes[s]);
+            _csv.write(',');
+            _csv.write(c._diets[s].name());
+            int total = 0;
+            for (Animal.State state : STATES) {
+                int n = c.get_count(s, state);
+                _csv.write(',');
+                _csv.write(Integer.toString(n));
+                total += n;
+            }
+            _csv.write(',');
+            _csv.write(Integer.toString(total));
+            _csv.write('\n');
+        }
+        _csv.flush();
+    }
+
+    private void write_json(Sample c) throws IOException {
+        _json.begin_object(3);
+        _json.key("time").value(c._time);
+        _json.key("species").begin_array(c._codes.length);
+        for (int s = 0; s < c._codes.length; s++) {
+            _json.begin_object(4);
+            _json.key("gcode").value(c._codes[s]);
+            _json.key("diet").value(c._diets[s].name());
+            _json.key("states").begin_object(STATES.length);
+            int total = 0;
+            for (Animal.State state : STATES) {
+                int n = c.get_count(s, state);
+                _json.key(state.name()).value(n);
+                total += n;
+            }
+            _json.end_object();
+            _json.key("total").value(total);
+            _json.end_object();
+        }
+        _json.end_array();
+        _json.key("regions").begin_object(DIETS.length);
+        for (Diet d : DIETS) {
+            int[] counts = c._regions[d.ordinal()];
+            _json.key(d.name()).begin_array(counts.length);
+            for (int n : counts) {
+                _json.value(n);
+            }
+            _json.end_array();
+        }
+        _json.end_object();
+        _json.end_object();
+        _json.line_break();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (_csv != null) {
+                _csv.flush();
+            } else {
+                _json.flush();
+            }
+        } finally {
+            _os.close();
+        }
+    }
+
+    /**
+     * The counters of one state of the simulation, copied so that they can be written while
+     * the simulation goes on.
+     */
+    public static final class Sample {
+        private final double _time;
+        private final String[] _codes;
+        private final Diet[] _diets;
+        private final int[] _counts;
+        private final int[][] _regions;
+
+        private Sample(double time, String[] codes, Diet[] diets, int[] counts, int[][] regions) {
+            _time = time;
+            _codes = codes;
+            _diets = diets;
+            _counts = counts;
+            _regions = regions;
+        }
+
+        public double get_time() {
+            return _time;
+        }
+
+        private int get_count(int species, Animal.State state) {
+            return _counts[species * STATES.length + state.ordinal()];
+        }
+    }
+}
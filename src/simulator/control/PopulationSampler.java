@@ -0,0 +1,98 @@
+package simulator.control;
+
+import simulator.model.*;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Observer that records the number of animals of each species after every step.
+ */
+public class PopulationSampler implements EcoSysObserver {
+    private final List<Double> _times;
+    private final Map<String, List<Integer>> _counts;
+
+    public PopulationSampler() {
+        _times = new ArrayList<>();
+        _counts = new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the times at which the populations were sampled.
+     *
+     * @return The sample times
+     */
+    public List<Double> get_times() {
+        return _times;
+    }
+
+    /**
+     * Returns the population curve of every species seen, one count per sample time.
+     *
+     * @return The curves by species
+     */
+    public Map<String, List<Integer>> get_counts() {
+        return _counts;
+    }
+
+    private void sample(double time, List<AnimalInfo> animals) {
+        Map<String, Integer> counts;
+        if (animals instanceof AnimalSnapshot snapshot) {
+            counts = snapshot.count_by_species();
+        } else {
+            counts = new LinkedHashMap<>();
+            for (AnimalInfo a : animals) {
+                counts.merge(a.get_genetic_code(), 1, Integer::sum);
+            }
+        }
+        for (String species : counts.keySet()) {
+            if (!_counts.containsKey(species)) {
+                List<Integer> curve = new ArrayList<>();
+                for (int i = 0; i < _times.size(); i++) {
+                    curve.add(0);
+                }
+                _counts.put(species, curve);
+            }
+        }
+        _times.add(time);
+        for (Map.Entry<String, List<Integer>> e : _counts.entrySet()) {
+            e.getValue().add(counts.getOrDefault(e.getKey(), 0));
+        }
+    }
+
+    @Override
+    public void onRegister(double time, MapInfo map, List<AnimalInfo> animals) {
+        sample(time, animals);
+    }
+
+    @Override
+    public void onReset(double time, MapInfo map, List<AnimalInfo> animals) {
+        _times.clear();
+        _counts.clear();
+        sample(time, animals);
+    }
+
+    @Override
+    public void onAnimalAdded(double time, MapInfo map, List<AnimalInfo> animals, AnimalInfo a) {
+    }
+
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+    }
+
+    @Override
+    public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
+    }
+
+    @Override
+    public void open(Component parent) {
+    }
+
+    @Override
+    public void onAdvanced(double currentTime, MapInfo mapInfo, List<AnimalInfo> animals, double dt) {
+        sample(currentTime, animals);
+    }
+}
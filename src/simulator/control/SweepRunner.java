@@ -0,0 +1,204 @@
+package simulator.control;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import simulator.model.Parameters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs a scenario over a grid of {@link Parameters}, with several seeds per grid point,
+ * concurrently on a thread pool of the current JVM. Every finished run is written at once
+ * as one JSON line of the output, so the output grows while the sweep runs.
+ * <p>
+ * The sweep spec has the form
+ * <pre>
+ * { "base": { "_createBaby": 0.8 },
+ *   "parameters": { "_wolfAge": { "values": [10, 14, 18] },
+ *                   "_speedFactorWolf": { "from": 2.0, "to": 4.0, "steps": 5 } },
+ *   "runs": 3 }
+ * </pre>
+ * where "base" and "runs" are optional.
+ */
+public class SweepRunner {
+
+    /**
+     * Creates the controller of one run, with its own simulator, factories and loaded data,
+     * using the given parameters. It is called from the pool threads, so runs must not share
+     * mutable objects.
+     */
+    public interface RunFactory {
+        Controller create(long seed, Parameters params) throws Exception;
+    }
+
+    private final RunFactory _factory;
+    private final List<Parameters> _points;
+    private final List<Map<String, Double>> _swept;
+    private final int _runs;
+    private final int _threads;
+
+    /**
+     * Creates a sweep runner from a sweep spec.
+     *
+     * @param factory Creates the controller of each run
+     * @param spec    The sweep spec
+     * @param threads Number of runs executed at the same time
+     * @throws IllegalArgumentException If the spec is not valid or threads is not positive
+     */
+    public SweepRunner(RunFactory factory, JSONObject spec, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        _factory = factory;
+        _runs = spec.optInt("runs", 1);
+        if (_runs <= 0) {
+            throw new IllegalArgumentException("The number of runs must be positive");
+        }
+        _threads = threads;
+
+        Parameters base = spec.has("base") ? Parameters.from_JSON(spec.getJSONObject("base")) : Parameters.DEFAULT;
+        JSONObject axes = spec.has("parameters") ? spec.getJSONObject("parameters") : new JSONObject();
+        _swept = grid(axes);
+        _points = new ArrayList<>();
+        for (Map<String, Double> point : _swept) {
+            _points.add(base.with(point));
+        }
+    }
+
+    /**
+     * Returns the cartesian product of the values of every axis of the spec, in the order of the
+     * axes sorted by parameter name, the last axis varying fastest.
+     */
+    private static List<Map<String, Double>> grid(JSONObject axes) {
+        List<Map<String, Double>> points = new ArrayList<>();
+        points.add(new LinkedHashMap<>());
+        for (String name : new TreeSet<>(axes.keySet())) {
+            double[] values = axis_values(name, axes.getJSONObject(name));
+            List<Map<String, Double>> next = new ArrayList<>();
+            for (Map<String, Double> p : points) {
+                for (double v : values) {
+                    Map<String, Double> q = new LinkedHashMap<>(p);
+                    q.put(name, v);
+                    next.add(q);
+                }
+            }
+            points = next;
+        }
+        return points;
+    }
+
+    private static double[] axis_values(String name, JSONObject axis) {
+        if (!Parameters.get_names().contains(name)) {
+            throw new IllegalArgumentException("Unknown parameter: " + name);
+        }
+        if (axis.has("values")) {
+            JSONArray values = axis.getJSONArray("values");
+            double[] result = new double[values.length()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = values.getDouble(i);
+            }
+            return result;
+        }
+        if (axis.has("from") && axis.has("to")) {
+            double from = axis.getDouble("from");
+            double to = axis.getDouble("to");
+            int steps = axis.optInt("steps", 2);
+            if (steps < 1) {
+                throw new IllegalArgumentException("Invalid number of steps for " + name);
+            }
+            double[] result = new double[steps];
+            for (int i = 0; i < steps; i++) {
+                result[i] = steps == 1 ? from : from + (to - from) * i / (steps - 1);
+            }
+            return result;
+        }
+        throw new IllegalArgumentException("The axis " + name + " needs 'values' or 'from' and 'to'");
+    }
+
+    /**
+     * Returns the number of grid points of the sweep.
+     *
+     * @return The number of points
+     */
+    public int get_points() {
+        return _points.size();
+    }
+
+    /**
+     * Executes every grid point with the seeds base_seed, base_seed + 1, ... and writes one JSON
+     * line per run to the given stream, in the order in which the runs finish. Each line has the
+     * point index, the seed, the swept values, and the final and mean population of every species.
+     *
+     * @param base_seed Seed of the first run of every point
+     * @param t         Duration of each simulation
+     * @param dt        Time step of each simulation
+     * @param os        The stream to write to
+     * @throws Exception If a run fails or the stream cannot be written
+     */
+    public void run(long base_seed, double t, double dt, OutputStream os) throws Exception {
+        Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        try {
+            CompletionService<JSONObject> done = new ExecutorCompletionService<>(pool);
+            int submitted = 0;
+            for (int p = 0; p < _points.size(); p++) {
+                for (int k = 0; k < _runs; k++) {
+                    final int point = p;
+                    final long seed = base_seed + k;
+                    done.submit(() -> run_one(point, seed, t, dt));
+                    submitted++;
+                }
+            }
+            for (int i = 0; i < submitted; i++) {
+                try {
+                    write_line(out, done.take().get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ex ? ex : e;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            out.flush();
+        }
+    }
+
+    private JSONObject run_one(int point, long seed, double t, double dt) throws Exception {
+        PopulationSampler sampler = new PopulationSampler();
+        try (Controller ctrl = _factory.create(seed, _points.get(point))) {
+            ctrl.addObserver(sampler);
+            ctrl.run(t, dt, false, OutputStream.nullOutputStream());
+            ctrl.removeObserver(sampler);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("point", point);
+        result.put("seed", seed);
+        result.put("parameters", new JSONObject(_swept.get(point)));
+        JSONObject last = new JSONObject();
+        JSONObject mean = new JSONObject();
+        for (Map.Entry<String, List<Integer>> e : sampler.get_counts().entrySet()) {
+            List<Integer> curve = e.getValue();
+            double sum = 0;
+            for (int c : curve) {
+                sum += c;
+            }
+            last.put(e.getKey(), curve.get(curve.size() - 1));
+            mean.put(e.getKey(), sum / curve.size());
+        }
+        result.put("final", last);
+        result.put("mean", mean);
+        return result;
+    }
+
+    private static void write_line(Writer out, JSONObject line) throws IOException {
+        out.write(line.toString());
+        out.write('\n');
+        out.flush();
+    }
+}
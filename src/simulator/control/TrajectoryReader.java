@@ -0,0 +1,210 @@
+package simulator.control;
+
+import simulator.model.Animal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the file written by a {@link TrajectoryRecorder}. The tick headers are indexed when the
+ * file is opened, and every tick is mapped when it is read, so the file may be larger than the
+ * memory.
+ */
+public class TrajectoryReader implements Closeable {
+    private static final Animal.State[] STATES = Animal.State.values();
+
+    private final FileChannel _channel;
+    private final long[] _offsets;
+    private final double[] _times;
+    private final int[] _sizes;
+
+    /**
+     * Opens a trajectory file and indexes its ticks.
+     *
+     * @param file The file to read
+     * @throws IOException If the file cannot be read or is not a trajectory
+     */
+    public TrajectoryReader(Path file) throws IOException {
+        _channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, TrajectoryRecorder.HEADER_SIZE);
+            if (header.getInt(0) != TrajectoryRecorder.MAGIC) {
+                throw new IOException("Not a trajectory: " + file);
+            }
+            if (header.getInt(4) != TrajectoryRecorder.VERSION) {
+                throw new IOException("Unsupported trajectory version " + header.getInt(4));
+            }
+            int ticks = header.getInt(8);
+            long end = header.getLong(16);
+            if (ticks < 0 || end < TrajectoryRecorder.HEADER_SIZE || end > _channel.size()) {
+                throw new IOException("Invalid trajectory: bad header");
+            }
+            _offsets = new long[ticks];
+            _times = new double[ticks];
+            _sizes = new int[ticks];
+            long offset = TrajectoryRecorder.HEADER_SIZE;
+            for (int t = 0; t < ticks; t++) {
+                if (offset + TrajectoryRecorder.TICK_HEADER_SIZE > end) {
+                    throw new IOException("Invalid trajectory: tick " + t + " out of the file");
+                }
+                ByteBuffer tick = read(offset, TrajectoryRecorder.TICK_HEADER_SIZE);
+                int n = tick.getInt(8);
+                if (n < 0 || offset + TrajectoryRecorder.tick_size(n) > end) {
+                    throw new IOException("Invalid trajectory: tick " + t + " out of the file");
+                }
+                _offsets[t] = offset;
+                _times[t] = tick.getDouble(0);
+                _sizes[t] = n;
+                offset += TrajectoryRecorder.tick_size(n);
+            }
+        } catch (IOException | RuntimeException e) {
+            _channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (_channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Invalid trajectory: truncated file");
+            }
+        }
+        return buf;
+    }
+
+    public int get_ticks() {
+        return _offsets.length;
+    }
+
+    public double get_time(int tick) {
+        return _times[tick];
+    }
+
+    /**
+     * Returns the number of animals of a tick, from the index.
+     *
+     * @param tick The position of the tick in the file
+     * @return The number of animals
+     */
+    public int get_size(int tick) {
+        return _sizes[tick];
+    }
+
+    /**
+     * Maps the animals of a tick. The tick stays readable after the reader is closed.
+     *
+     * @param tick The position of the tick in the file
+     * @return The tick
+     * @throws IOException If the tick cannot be mapped
+     */
+    public Tick read_tick(int tick) throws IOException {
+        int n = _sizes[tick];
+        ByteBuffer buf = _channel.map(FileChannel.MapMode.READ_ONLY, _offsets[tick], TrajectoryRecorder.tick_size(n));
+        return new Tick(_times[tick], n, buf.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    /**
+     * The animals of one tick, read from the columns of the mapped file.
+     */
+    public static final class Tick {
+        private final double _time;
+        private final int _size;
+        private final DoubleBuffer _x;
+        private final DoubleBuffer _y;
+        private final DoubleBuffer _energy;
+        private final IntBuffer _id;
+        private final ByteBuffer _state;
+
+        Tick(double time, int n, ByteBuffer buf) {
+            _time = time;
+            _size = n;
+            int x = TrajectoryRecorder.TICK_HEADER_SIZE;
+            int y = x + n * Double.BYTES;
+            int energy = y + n * Double.BYTES;
+            int id = energy + n * Double.BYTES;
+            int state = id + n * Integer.BYTES;
+            _x = buf.slice(x, n * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            _y = buf.slice(y, n * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            _energy = buf.slice(energy, n * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            _id = buf.slice(id, n * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            _state = buf.slice(state, n);
+        }
+
+        public double get_time() {
+            return _time;
+        }
+
+        public int size() {
+            return _size;
+        }
+
+        public int get_id(int i) {
+            return _id.get(i);
+        }
+
+        public double get_x(int i) {
+            return _x.get(i);
+        }
+
+        public double get_y(int i) {
+            return _y.get(i);
+        }
+
+        public double get_energy(int i) {
+            return _energy.get(i);
+        }
+
+        /**
+         * Returns the state of an animal of the tick.
+         *
+         * @param i The position of the animal in the tick
+         * @return The state
+         * @throws IllegalStateException If the file holds an unknown state
+         */
+        public Animal.State get_state(int i) {
+            int s = _state.get(i);
+            if (s < 0 || s >= STATES.length) {
+                throw new IllegalStateException("Invalid trajectory: unknown state " + s);
+            }
+            return STATES[s];
+        }
+
+        /**
+         * Returns the ids of the animals of the tick as a read-only buffer, for bulk copies.
+         *
+         * @return The ids, one per animal
+         */
+        public IntBuffer id_column() {
+            return _id.asReadOnlyBuffer();
+        }
+
+        public DoubleBuffer x_column() {
+            return _x.asReadOnlyBuffer();
+        }
+
+        public DoubleBuffer y_column() {
+            return _y.asReadOnlyBuffer();
+        }
+
+        public DoubleBuffer energy_column() {
+            return _energy.asReadOnlyBuffer();
+        }
+
+        public ByteBuffer state_column() {
+            return _state.asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package simulator.control;
+
+import simulator.misc.Vector2D;
+import simulator.model.*;
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Observer that appends the animals of every notified step to a file, one column per
+ * attribute, to be read back (memory-mapped) with {@link TrajectoryReader}. All values are
+ * little-endian, and every block starts at a multiple of 8 bytes:
+ * <pre>
+ * header (32 bytes): magic, version, ticks (ints), reserved int, end offset (long), reserved long
+ * tick:              time (double), n (int), reserved int,
+ *                    x[n], y[n], energy[n] (doubles), id[n] (ints), state[n] (bytes), padding
+ * </pre>
+ * The state is the ordinal of {@link Animal.State} and the id the one of
+ * {@link AnimalInfo#get_id()}. The header is updated after every tick, so a file whose writer
+ * stopped abruptly holds the ticks completed before. Every tick is laid out in a direct buffer,
+ * reused from tick to tick, and written through the channel at the end of the file. The file is
+ * never mapped for writing, so it is always exactly as long as the ticks it holds and needs no
+ * truncation when it is closed, which a live mapping would prevent on some platforms.
+ * <p>
+ * A tick is recorded when the recorder is registered, when the simulation is reset and when it
+ * advances, as sampled by Simulator.set_observer_sampling.
+ */
+public class TrajectoryRecorder implements EcoSysObserver, Closeable {
+    static final int MAGIC = 0x45434f54;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int TICK_HEADER_SIZE = 16;
+
+    private final FileChannel _channel;
+    private final ByteBuffer _header;
+    private ByteBuffer _tick;
+    private long _end;
+    private int _ticks;
+
+    /**
+     * Creates a recorder writing to the given file, replacing it if it exists.
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be created
+     */
+    public TrajectoryRecorder(Path file) throws IOException {
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        _header = ByteBuffer.allocateDirect(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        _header.putInt(0, MAGIC);
+        _header.putInt(4, VERSION);
+        _tick = ByteBuffer.allocateDirect(0);
+        _end = HEADER_SIZE;
+        _ticks = 0;
+        try {
+            write_header();
+        } catch (IOException e) {
+            _channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the block of a tick with the given number of animals.
+     *
+     * @param n The number of animals
+     * @return The size in bytes, a multiple of 8
+     */
+    static long tick_size(int n) {
+        return TICK_HEADER_SIZE + (((long) n * (3 * Double.BYTES + Integer.BYTES + 1) + 7) & ~7L);
+    }
+
+    public int get_ticks() {
+        return _ticks;
+    }
+
+    /**
+     * Appends the animals of a tick to the file.
+     *
+     * @param time    The time of the simulation
+     * @param animals The animals
+     * @throws IOException If the file cannot be written
+     */
+    public void record(double time, List<AnimalInfo> animals) throws IOException {
+        if (!_channel.isOpen()) {
+            throw new IOException("The trajectory recorder is closed");
+        }
+        int n = animals.size();
+        long size = tick_size(n);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too many animals for a trajectory tick: " + n);
+        }
+        if (_tick.capacity() < size) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(size, 2L * _tick.capacity()));
+            _tick = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        _tick.putDouble(0, time);
+        _tick.putInt(8, n);
+        _tick.putInt(12, 0);
+        int x = TICK_HEADER_SIZE;
+        int y = x + n * Double.BYTES;
+        int energy = y + n * Double.BYTES;
+        int id = energy + n * Double.BYTES;
+        int state = id + n * Integer.BYTES;
+        if (animals instanceof AnimalSnapshot s) {
+            _tick.slice(x, n * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(s.x_column());
+            _tick.slice(y, n * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(s.y_column());
+            _tick.slice(energy, n * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(s.energy_column());
+            _tick.slice(id, n * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(s.id_column());
+            _tick.put(state, s.state_column(), 0, n);
+        } else {
+            for (int i = 0; i < n; i++) {
+                AnimalInfo a = animals.get(i);
+                Vector2D pos = a.get_position();
+                _tick.putDouble(x + i * Double.BYTES, pos.getX());
+                _tick.putDouble(y + i * Double.BYTES, pos.getY());
+                _tick.putDouble(energy + i * Double.BYTES, a.get_energy());
+                _tick.putInt(id + i * Integer.BYTES, a.get_id());
+                _tick.put(state + i, (byte) a.get_state().ordinal());
+            }
+        }
+        // the padding of the state column
+        for (int i = state + n; i < size; i++) {
+            _tick.put(i, (byte) 0);
+        }
+        write_fully(_tick.limit((int) size).position(0), _end);
+        _tick.clear();
+        _end += size;
+        _ticks++;
+        write_header();
+    }
+
+    private void write_header() throws IOException {
+        _header.putInt(8, _ticks);
+        _header.putInt(12, 0);
+        _header.putLong(16, _end);
+        _header.putLong(24, 0);
+        write_fully(_header.clear(), 0);
+    }
+
+    private void write_fully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            _channel.write(buf, position + buf.position());
+        }
+    }
+
+    private void record_or_fail(double time, List<AnimalInfo> animals) {
+        try {
+            record(time, animals);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces the ticks written to the storage device and closes the file.
+     *
+     * @throws IOException If the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (!_channel.isOpen()) {
+            return;
+        }
+        try {
+            _channel.force(false);
+        } finally {
+            _channel.close();
+        }
+    }
+
+    @Override
+    public void onRegister(double time, MapInfo map, List<AnimalInfo> animals) {
+        record_or_fail(time, animals);
+    }
+
+    @Override
+    public void onReset(double time, MapInfo map, List<AnimalInfo> animals) {
+        record_or_fail(time, animals);
+    }
+
+    @Override
+    public void onAnimalAdded(double time, MapInfo map, List<AnimalInfo> animals, AnimalInfo a) {
+    }
+
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+    }
+
+    @Override
+    public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
+    }
+
+    @Override
+    public void open(Component parent) {
+    }
+
+    @Override
+    public void onAdvanced(double currentTime, MapInfo mapInfo, List<AnimalInfo> animals, double dt) {
+        record_or_fail(currentTime, animals);
+    }
+}
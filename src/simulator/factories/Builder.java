@@ -2,6 +2,8 @@ package simulator.factories;
 
 import org.json.JSONObject;
 
+import java.util.random.RandomGenerator;
+
 /**
  * Abstract class for creating instances of a specific type.
  *
@@ -65,4 +67,29 @@ public abstract class Builder<T> {
      * @throws IllegalArgumentException If the provided JSON data is invalid
      */
     protected abstract T create_instance(JSONObject data) throws IllegalArgumentException;
+
+    /**
+     * Creates an instance based on the provided JSON data, drawing any random attribute from the given stream.
+     * Builders of objects without random attributes do not need to override it.
+     *
+     * @param data JSON object containing data for the instance creation
+     * @param rand The random stream to use
+     * @return Instance of type T
+     * @throws IllegalArgumentException If the provided JSON data is invalid
+     */
+    protected T create_instance(JSONObject data, RandomGenerator rand) throws IllegalArgumentException {
+        return create_instance(data);
+    }
+
+    /**
+     * Compiles the data of a spec into a creator. Builders whose instances are costly to make from
+     * the JSON data override it to read the data once.
+     *
+     * @param data JSON object containing data for the instance creation
+     * @return The creator
+     * @throws IllegalArgumentException If the provided JSON data is invalid
+     */
+    protected Creator<T> compile(JSONObject data) throws IllegalArgumentException {
+        return rand -> create_instance(data, rand);
+    }
 }
\ No newline at end of file
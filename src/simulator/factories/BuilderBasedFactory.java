@@ -1,8 +1,10 @@
 package simulator.factories;
 
 import org.json.JSONObject;
+import simulator.misc.Utils;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 /**
  * Factory class for creating instances of a specific type.
@@ -52,6 +54,19 @@ public class BuilderBasedFactory<T> implements Factory<T> {
      */
     @Override
     public T createInstance(JSONObject info) throws IllegalArgumentException {
+        return createInstance(info, Utils._rand);
+    }
+
+    /**
+     * Creates an instance of the specified type using the provided info and random stream.
+     *
+     * @param info JSON object containing the type and data for the instance creation
+     * @param rand The random stream passed to the builder
+     * @return Instance of type T
+     * @throws IllegalArgumentException
+     */
+    @Override
+    public T createInstance(JSONObject info, RandomGenerator rand) throws IllegalArgumentException {
         if (info == null)
             throw new IllegalArgumentException("'info' cannot be null");
 
@@ -66,7 +81,7 @@ public class BuilderBasedFactory<T> implements Factory<T> {
             JSONObject data = info.has("data") ? info.getJSONObject("data") : new JSONObject();
 
             // Create an instance using the builder and return it
-            T instance = builder.create_instance(data);
+            T instance = builder.create_instance(data, rand);
             if (instance != null) {
                 return instance;
             }
@@ -76,6 +91,27 @@ public class BuilderBasedFactory<T> implements Factory<T> {
         throw new IllegalArgumentException("Unrecognized 'info':" + info);
     }
 
+    /**
+     * Compiles the spec with the builder of its type, so that creating instances from it does
+     * not look up the builder nor read the JSON data again.
+     *
+     * @param info JSON object containing the type and data for the instance creation
+     * @return The creator
+     * @throws IllegalArgumentException If the info is null or its type has no builder
+     */
+    @Override
+    public Creator<T> compile(JSONObject info) throws IllegalArgumentException {
+        if (info == null)
+            throw new IllegalArgumentException("'info' cannot be null");
+
+        Builder<T> builder = _builders.get(info.getString("type"));
+        if (builder == null) {
+            throw new IllegalArgumentException("Unrecognized 'info':" + info);
+        }
+        JSONObject data = info.has("data") ? info.getJSONObject("data") : new JSONObject();
+        return builder.compile(data);
+    }
+
     /**
      * Retrieves information about the builders in this factory.
      *
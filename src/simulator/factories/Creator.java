@@ -0,0 +1,20 @@
+package simulator.factories;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Creator of instances compiled from a JSON spec by a {@link Factory}. The spec is read once,
+ * when compiling, so creating an instance only draws its random attributes.
+ *
+ * @param <T> Type of object to create
+ */
+@FunctionalInterface
+public interface Creator<T> {
+    /**
+     * Creates an instance drawing its random attributes from the given stream.
+     *
+     * @param rand The random stream of the simulator creating the instance
+     * @return Instance of type T
+     */
+    T create(RandomGenerator rand);
+}
@@ -3,6 +3,7 @@ package simulator.factories;
 import org.json.JSONObject;
 
 import java.util.List;
+import java.util.random.RandomGenerator;
 
 /**
  * Factory class for creating instances of a specific type.
@@ -13,4 +14,28 @@ public interface Factory<T> {
     List<JSONObject> get_info();
 
     T createInstance(JSONObject info) throws IllegalArgumentException;
+
+    /**
+     * Creates an instance drawing its random attributes from the given stream.
+     *
+     * @param info JSON object containing the type and data for the instance creation
+     * @param rand The random stream of the simulator creating the instance
+     * @return Instance of type T
+     * @throws IllegalArgumentException If the info is invalid
+     */
+    default T createInstance(JSONObject info, RandomGenerator rand) throws IllegalArgumentException {
+        return createInstance(info);
+    }
+
+    /**
+     * Compiles a spec into a creator that makes the same instances as createInstance with this
+     * spec, without reading it again. The creator does not see later changes to the spec.
+     *
+     * @param info JSON object containing the type and data for the instance creation
+     * @return The creator
+     * @throws IllegalArgumentException If the info is invalid
+     */
+    default Creator<T> compile(JSONObject info) throws IllegalArgumentException {
+        return rand -> createInstance(info, rand);
+    }
 }
\ No newline at end of file
@@ -14,6 +14,6 @@ public class SelectClosestBuilder extends Builder<SelectionStrategy> {
 
     @Override
     protected SelectionStrategy create_instance(JSONObject data) throws IllegalArgumentException {
-        return new SelectClosest();
+        return SelectClosest.INSTANCE;
     }
 }
@@ -14,7 +14,7 @@ public class SelectFirstBuilder extends Builder<SelectionStrategy> {
 
     @Override
     protected SelectionStrategy create_instance(JSONObject data) throws IllegalArgumentException {
-        return new SelectFirst();
+        return SelectFirst.INSTANCE;
     }
 
 
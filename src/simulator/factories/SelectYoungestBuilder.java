@@ -14,6 +14,6 @@ public class SelectYoungestBuilder extends Builder<SelectionStrategy> {
 
     @Override
     protected SelectionStrategy create_instance(JSONObject data) throws IllegalArgumentException {
-        return new SelectYoungest();
+        return SelectYoungest.INSTANCE;
     }
 }
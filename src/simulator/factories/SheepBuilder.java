@@ -1,16 +1,17 @@
 package simulator.factories;
 
 import org.json.JSONObject;
+import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 import simulator.model.*;
 
+import java.util.random.RandomGenerator;
+
 /**
  * Builder for the Sheep class object.
  */
 public class SheepBuilder extends Builder<Animal> {
     private final Factory<SelectionStrategy> _strategy;
-    private SelectionStrategy mateStrategy;
-    private SelectionStrategy dangerStrategy;
 
     public SheepBuilder(Factory<SelectionStrategy> strategy) {
         super("sheep", "Creates a Sheep instance.");
@@ -26,52 +27,52 @@ public class SheepBuilder extends Builder<Animal> {
      */
     @Override
     protected Animal create_instance(JSONObject data) throws IllegalArgumentException {
-        JSONObject posData = data.optJSONObject("pos");
-        Vector2D pos = posData != null ? new Vector2D(
-                Vector2D.get_random_vector(
-                        posData.getJSONArray("x_range").getDouble(0),
-                        posData.getJSONArray("x_range").getDouble(1),
-                        posData.getJSONArray("y_range").getDouble(0),
-                        posData.getJSONArray("y_range").getDouble(1))) : null;
-        fill_in_data(data);
-
-        return new Sheep(mateStrategy, dangerStrategy, pos);
+        return create_instance(data, Utils._rand);
     }
 
     /**
-     * Fills in additional data into the provided JSON object.
+     * Creates a new Sheep instance drawing its position and attributes from the given stream.
      *
-     * @param o JSON object to fill in data
+     * @param data JSON object containing data for the instance creation
+     * @param rand The random stream to use
+     * @return a new Sheep instance
+     * @throws IllegalArgumentException if the data is invalid
      */
     @Override
-    protected void fill_in_data(JSONObject o) {
-        //For mate strategy
-        JSONObject mateStrategyData = o.optJSONObject("mate_strategy");
-        if(mateStrategyData == null) {
-        	mateStrategy = _strategy.createInstance(new SelectFirstBuilder().get_info());
-        }
-        else{
-            String mateType = mateStrategyData.getString("type");
-            switch (mateType) {
-                case "closest" -> mateStrategy =_strategy.createInstance(new SelectClosestBuilder().get_info());
-                case "first" -> mateStrategy = _strategy.createInstance(new SelectFirstBuilder().get_info());
-                case "youngest" -> mateStrategy = _strategy.createInstance(new SelectYoungestBuilder().get_info());
-            }
-        }
+    protected Animal create_instance(JSONObject data, RandomGenerator rand) throws IllegalArgumentException {
+        return compile(data).create(rand);
+    }
 
-        //For danger strategy
-        JSONObject dangerStrategyData = o.optJSONObject("danger_strategy");
-        if(dangerStrategyData == null) {
-        	dangerStrategy = _strategy.createInstance(new SelectFirstBuilder().get_info());
-        }
-        else{
-            String dangerType = dangerStrategyData.getString("type");
-            switch (dangerType) {
-                case "closest" -> dangerStrategy = _strategy.createInstance(new SelectClosestBuilder().get_info());
-                case "first" -> dangerStrategy = _strategy.createInstance(new SelectFirstBuilder().get_info());
-                case "youngest" -> dangerStrategy = _strategy.createInstance(new SelectYoungestBuilder().get_info());
-            }
+    /**
+     * Reads the position ranges and the strategies of the data once; the creator only draws the
+     * position, if there are ranges, and the attributes of every sheep.
+     *
+     * @param data JSON object containing data for the instance creation
+     * @return The creator
+     * @throws IllegalArgumentException if the data is invalid
+     */
+    @Override
+    protected Creator<Animal> compile(JSONObject data) throws IllegalArgumentException {
+        SelectionStrategy mateStrategy = strategy(data, "mate_strategy");
+        SelectionStrategy dangerStrategy = strategy(data, "danger_strategy");
+        JSONObject posData = data.optJSONObject("pos");
+        if (posData == null) {
+            return rand -> new Sheep(mateStrategy, dangerStrategy, null, rand);
         }
+        double x_min = posData.getJSONArray("x_range").getDouble(0);
+        double x_max = posData.getJSONArray("x_range").getDouble(1);
+        double y_min = posData.getJSONArray("y_range").getDouble(0);
+        double y_max = posData.getJSONArray("y_range").getDouble(1);
+        return rand -> new Sheep(mateStrategy, dangerStrategy,
+                new Vector2D(Vector2D.get_random_vector(rand, x_min, x_max, y_min, y_max)), rand);
+    }
 
+    /**
+     * Creates the strategy of the given key of the data, SelectFirst if there is none. The
+     * built-in strategies are shared instances.
+     */
+    private SelectionStrategy strategy(JSONObject data, String key) {
+        JSONObject strategyData = data.optJSONObject(key);
+        return _strategy.createInstance(strategyData != null ? strategyData : new SelectFirstBuilder().get_info());
     }
 }
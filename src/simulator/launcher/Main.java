@@ -8,14 +8,21 @@ package simulator.launcher;
 import org.apache.commons.cli.*;
 import org.json.JSONObject;
 import org.json.JSONTokener;
+import simulator.control.AsyncObserver;
+import simulator.control.AsyncSink;
 import simulator.control.Controller;
+import simulator.control.EnsembleRunner;
+import simulator.control.SweepRunner;
+import simulator.control.TrajectoryRecorder;
 import simulator.factories.*;
+import simulator.misc.RandomSource;
 import simulator.misc.Utils;
 import simulator.model.*;
 import simulator.view.MainWindow;
 
 import javax.swing.*;
 import java.io.*;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,7 +30,7 @@ import java.util.List;
  * Main class to launch the simulator
  */
 public class Main {
-    private static final String _out_file = null;
+    private static String _out_file = null;
     private static ExecMode _mode = ExecMode.GUI;
     public static Factory<Animal> animal_factory;
     public static Factory<Region> region_factory;
@@ -33,6 +40,23 @@ public class Main {
     public static Double _dt = 0.03;
     private static String _in_file = null;
     private static boolean _sv = false;
+    private static int _parallelism = 0;
+    private static boolean _store = false;
+    private static boolean _batch_kernel = false;
+    private static boolean _pretty = true;
+    private static boolean _compact = false;
+    private static Long _seed = null;
+    private static int _runs = 10;
+    private static int _threads = Runtime.getRuntime().availableProcessors();
+    private static String _sweep_file = null;
+    private static String _checkpoint_file = null;
+    private static Double _checkpoint_interval = null;
+    private static String _restore_file = null;
+    private static String _trajectory_file = null;
+    private static String _population_file = null;
+    private static int _population_interval = 1;
+    private static int _output_queue = 0;
+    private static AsyncSink.Backpressure _backpressure = AsyncSink.Backpressure.BLOCK;
 
     /**
      * Parse the command-line arguments
@@ -54,6 +78,18 @@ public class Main {
             parse_dtime_option(line);
             parse_sv_option(line, cmdLineOptions);
             parse_out_file_option(line);
+            parse_parallelism_option(line);
+            _store = line.hasOption("st");
+            parse_batch_kernel_option(line);
+            _pretty = !line.hasOption("ni");
+            parse_output_format_option(line);
+            _trajectory_file = line.getOptionValue("tr");
+            parse_seed_option(line);
+            parse_ensemble_options(line);
+            parse_sweep_option(line);
+            parse_checkpoint_options(line);
+            parse_population_export_options(line);
+            parse_output_queue_options(line);
 
             String[] remaining = line.getArgs();
             if (remaining.length > 0) {
@@ -87,7 +123,7 @@ public class Main {
         cmdLineOptions.addOption(Option.builder("i").longOpt("input").hasArg().desc("A configuration file.").build());
 
         // Excecution mode
-        cmdLineOptions.addOption(Option.builder("m").longOpt("mode").hasArg().desc("Execution Mode. Possible values: 'batch' (Batch mode), 'gui' (Graphical User Interface mode). Default value: " + _mode + ".").build());
+        cmdLineOptions.addOption(Option.builder("m").longOpt("mode").hasArg().desc("Execution Mode. Possible values: 'batch' (Batch mode), 'ensemble' (Ensemble mode), 'sweep' (Parameter sweep mode), 'gui' (Graphical User Interface mode). Default value: " + _mode + ".").build());
 
         // steps
         cmdLineOptions.addOption(Option.builder("t").longOpt("time").hasArg()
@@ -103,6 +139,62 @@ public class Main {
         cmdLineOptions.addOption(Option.builder("sv").longOpt("simple-viewer").desc("Show the viewer window in console mode.").build());
 
         cmdLineOptions.addOption(Option.builder("o").longOpt("output").hasArg().desc("Output file. where output is written").build());
+
+        cmdLineOptions.addOption(Option.builder("p").longOpt("parallelism").hasArg()
+                .desc("Number of threads of the two-phase parallel tick, 0 for the sequential in-place tick. Default value: "
+                        + _parallelism + ".")
+                .build());
+
+        cmdLineOptions.addOption(Option.builder("s").longOpt("seed").hasArg()
+                .desc("Seed of the simulation. Default value: the 'seed' of the input file, or "
+                        + RandomSource.DEFAULT_SEED + ".")
+                .build());
+
+        cmdLineOptions.addOption(Option.builder("r").longOpt("runs").hasArg()
+                .desc("Number of runs of the ensemble mode, with consecutive seeds. Default value: " + _runs + ".")
+                .build());
+
+        cmdLineOptions.addOption(Option.builder("th").longOpt("threads").hasArg()
+                .desc("Number of runs executed at the same time in ensemble and sweep modes. Default value: the number of processors.")
+                .build());
+
+        cmdLineOptions.addOption(Option.builder("sw").longOpt("sweep").hasArg()
+                .desc("Sweep spec of the sweep mode, with the grid of parameters and the runs per point.")
+                .build());
+
+        cmdLineOptions.addOption(Option.builder("st").longOpt("store").desc("Keep the animals in the structure-of-arrays population store. Gives the same results as the default in-place update.").build());
+        cmdLineOptions.addOption(Option.builder("ck").longOpt("checkpoint").hasArg()
+                .desc("Checkpoint file written in batch mode, every -ci simulated seconds.")
+                .build());
+
+        cmdLineOptions.addOption(Option.builder("ci").longOpt("checkpoint-interval").hasArg()
+                .desc("Simulated seconds between two checkpoints. Requires -ck.")
+                .build());
+
+        cmdLineOptions.addOption(Option.builder("rs").longOpt("restore").hasArg()
+                .desc("Checkpoint file to resume from in batch mode, instead of the animals of the input file. The simulation then runs until the time given by -t.")
+                .build());
+
+        cmdLineOptions.addOption(Option.builder("bk").longOpt("batch-kernel").desc("Compute the NORMAL motion of the animals of the population store in one batch per step, with the same results. The batch uses the Vector API when the JVM runs with --add-modules jdk.incubator.vector. Requires -st.").build());
+        cmdLineOptions.addOption(Option.builder("ni").longOpt("no-indent").desc("Write the output of the batch and ensemble runs on one line, without indentation.").build());
+        cmdLineOptions.addOption(Option.builder("pe").longOpt("population-export").hasArg()
+                .desc("File where the batch mode exports the number of animals of every species in every state, as NDJSON (with the counts by region) if its extension is .ndjson or .jsonl, as CSV otherwise.")
+                .build());
+        cmdLineOptions.addOption(Option.builder("pi").longOpt("population-interval").hasArg()
+                .desc("Number of steps between two records of the population export. Default value: " + _population_interval + ".")
+                .build());
+        cmdLineOptions.addOption(Option.builder("tr").longOpt("trajectory").hasArg()
+                .desc("Binary file where the batch mode records the position, state and energy of every animal after every step.")
+                .build());
+        cmdLineOptions.addOption(Option.builder("oq").longOpt("output-queue").hasArg()
+                .desc("Number of records the trajectory and the population export of the batch mode can each queue for their own writer thread; 0 writes them on the simulation thread. Default value: " + _output_queue + ".")
+                .build());
+        cmdLineOptions.addOption(Option.builder("bp").longOpt("backpressure").hasArg()
+                .desc("What to do when an output queue is full. Possible values: 'block' (wait for the writer), 'drop-oldest' (discard the oldest record), 'sample' (keep fewer records while the queue is full). Requires -oq. Default value: block.")
+                .build());
+        cmdLineOptions.addOption(Option.builder("of").longOpt("output-format").hasArg()
+                .desc("Schema of the states in the output of the batch and ensemble runs. Possible values: 'classic' (regions with their animals), 'compact' (every animal once, with numeric coordinates and codes). Default value: classic.")
+                .build());
         return cmdLineOptions;
     }
 
@@ -157,8 +249,8 @@ public class Main {
      */
     private static void parse_in_file_option(CommandLine line) throws ParseException {
         _in_file = line.getOptionValue("i");
-        if (_mode == ExecMode.BATCH && _in_file == null) {
-            throw new ParseException("In batch mode an input configuration file is required");
+        if ((_mode == ExecMode.BATCH || _mode == ExecMode.ENSEMBLE || _mode == ExecMode.SWEEP) && _in_file == null) {
+            throw new ParseException("In " + _mode.get_tag() + " mode an input configuration file (-i) is required");
         }
     }
 
@@ -170,9 +262,9 @@ public class Main {
      * @throws IOException    If an I/O error occurs
      */
     private static void parse_out_file_option(CommandLine line) throws ParseException, IOException {
-        String _out_file = line.getOptionValue("o");
-        if (_mode == ExecMode.BATCH && _out_file == null) {
-            throw new ParseException("In batch mode an input configuration file is required");
+        _out_file = line.getOptionValue("o");
+        if ((_mode == ExecMode.BATCH || _mode == ExecMode.ENSEMBLE || _mode == ExecMode.SWEEP) && _out_file == null) {
+            throw new ParseException("In " + _mode.get_tag() + " mode an output file (-o) is required");
         }
     }
 
@@ -194,6 +286,199 @@ public class Main {
             throw new ParseException("Invalid value for time: " + t);
         }
     }
+    /**
+     * Parses the parallelism option from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the provided value for the parallelism is invalid
+     */
+    private static void parse_parallelism_option(CommandLine line) throws ParseException {
+        String p = line.getOptionValue("p", String.valueOf(_parallelism));
+        try {
+            _parallelism = Integer.parseInt(p);
+            if (_parallelism < 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid value for parallelism: " + p);
+        }
+    }
+
+    /**
+     * Parses the batch kernel option from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the batch kernel is selected without the population store
+     */
+    private static void parse_batch_kernel_option(CommandLine line) throws ParseException {
+        _batch_kernel = line.hasOption("bk");
+        if (_batch_kernel && !_store) {
+            throw new ParseException("The batch kernel (-bk) requires the population store (-st)");
+        }
+    }
+
+    /**
+     * Parses the output format option from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the format is not 'classic' nor 'compact'
+     */
+    private static void parse_output_format_option(CommandLine line) throws ParseException {
+        String f = line.getOptionValue("of", "classic");
+        if (!f.equals("classic") && !f.equals("compact")) {
+            throw new ParseException("Invalid output format: " + f);
+        }
+        _compact = f.equals("compact");
+    }
+
+    /**
+     * Parses the seed option from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the provided value for the seed is invalid
+     */
+    private static void parse_seed_option(CommandLine line) throws ParseException {
+        String s = line.getOptionValue("s");
+        if (s == null) {
+            return;
+        }
+        try {
+            _seed = Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid value for seed: " + s);
+        }
+    }
+
+    /**
+     * Parses the number of runs and threads of the ensemble mode from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the provided values are invalid
+     */
+    private static void parse_ensemble_options(CommandLine line) throws ParseException {
+        String r = line.getOptionValue("r", String.valueOf(_runs));
+        String th = line.getOptionValue("th", String.valueOf(_threads));
+        try {
+            _runs = Integer.parseInt(r);
+            _threads = Integer.parseInt(th);
+            if (_runs <= 0 || _threads <= 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid value for runs or threads: " + r + ", " + th);
+        }
+    }
+
+    /**
+     * Parses the sweep spec option from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the sweep spec is missing in sweep mode
+     */
+    private static void parse_sweep_option(CommandLine line) throws ParseException {
+        _sweep_file = line.getOptionValue("sw");
+        if (_mode == ExecMode.SWEEP && _sweep_file == null) {
+            throw new ParseException("In sweep mode a sweep spec file is required");
+        }
+    }
+
+    /**
+     * Parses the checkpoint options from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the interval is invalid or given without a checkpoint file
+     */
+    private static void parse_checkpoint_options(CommandLine line) throws ParseException {
+        _checkpoint_file = line.getOptionValue("ck");
+        _restore_file = line.getOptionValue("rs");
+        String ci = line.getOptionValue("ci");
+        if (ci != null) {
+            if (_checkpoint_file == null) {
+                throw new ParseException("The checkpoint interval (-ci) requires a checkpoint file (-ck)");
+            }
+            try {
+                _checkpoint_interval = Double.parseDouble(ci);
+                if (!(_checkpoint_interval > 0)) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid value for the checkpoint interval: " + ci);
+            }
+        } else if (_checkpoint_file != null) {
+            throw new ParseException("A checkpoint file (-ck) requires a checkpoint interval (-ci)");
+        }
+    }
+
+    /**
+     * Parses the population export options from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the interval is invalid or given without an export file
+     */
+    private static void parse_population_export_options(CommandLine line) throws ParseException {
+        _population_file = line.getOptionValue("pe");
+        String pi = line.getOptionValue("pi");
+        if (pi != null) {
+            if (_population_file == null) {
+                throw new ParseException("The population interval (-pi) requires an export file (-pe)");
+            }
+            try {
+                _population_interval = Integer.parseInt(pi);
+                if (_population_interval < 1) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid value for the population interval: " + pi);
+            }
+        }
+    }
+
+    /**
+     * Parses the output queue options from the command line.
+     *
+     * @param line CommandLine object containing parsed command-line options
+     * @throws ParseException If the capacity or the policy is invalid, or the policy is given
+     *                        without a queue
+     */
+    private static void parse_output_queue_options(CommandLine line) throws ParseException {
+        String oq = line.getOptionValue("oq");
+        if (oq != null) {
+            try {
+                _output_queue = Integer.parseInt(oq);
+                if (_output_queue < 0) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid value for the output queue: " + oq);
+            }
+        }
+        String bp = line.getOptionValue("bp");
+        if (bp != null) {
+            if (_output_queue == 0) {
+                throw new ParseException("The backpressure policy (-bp) requires an output queue (-oq)");
+            }
+            switch (bp) {
+                case "block" -> _backpressure = AsyncSink.Backpressure.BLOCK;
+                case "drop-oldest" -> _backpressure = AsyncSink.Backpressure.DROP_OLDEST;
+                case "sample" -> _backpressure = AsyncSink.Backpressure.SAMPLE;
+                default -> throw new ParseException("Invalid backpressure policy: " + bp);
+            }
+        }
+    }
+
+    /**
+     * Returns the seed of a run: the one given in the command line, else the one of the input file, else the default one.
+     *
+     * @param inputJson The input file, or null if there is none
+     * @return The seed
+     */
+    private static long seed_of(JSONObject inputJson) {
+        if (_seed != null) {
+            return _seed;
+        }
+        return inputJson == null ? RandomSource.DEFAULT_SEED : inputJson.optLong("seed", RandomSource.DEFAULT_SEED);
+    }
+
     private static void parse_mode_option(CommandLine line) throws ParseException {
         String m = line.getOptionValue("m");
         try {
@@ -208,30 +493,42 @@ public class Main {
      */
     private static void init_factories() {
         //strategies factory
-        List<Builder<SelectionStrategy>> selection_strategy_builders = new ArrayList<>();
-        selection_strategy_builders.add(new SelectFirstBuilder());
-        selection_strategy_builders.add(new SelectClosestBuilder());
-        selection_strategy_builders.add(new SelectYoungestBuilder());
-        selection_factory = new BuilderBasedFactory<>(selection_strategy_builders);
+        selection_factory = build_selection_factory();
 
         try {
             //animal factory
-            List<Builder<Animal>> animal_builders = new ArrayList<>();
-            animal_builders.add(new SheepBuilder(selection_factory));
-            animal_builders.add(new WolfBuilder(selection_factory));
-            animal_factory = new BuilderBasedFactory<>(animal_builders);
+            animal_factory = build_animal_factory(selection_factory);
 
             //region factory
-            List<Builder<Region>> region_builders = new ArrayList<>();
-            region_builders.add(new DefaultRegionBuilder());
-            region_builders.add(new DynamicSupplyRegionBuilder());
-            region_factory = new BuilderBasedFactory<>(region_builders);
+            region_factory = build_region_factory();
         } catch (Exception e) {
             System.err.println("Error while loading the input file: " + e.getLocalizedMessage());
 
         }
     }
 
+    private static Factory<SelectionStrategy> build_selection_factory() {
+        List<Builder<SelectionStrategy>> selection_strategy_builders = new ArrayList<>();
+        selection_strategy_builders.add(new SelectFirstBuilder());
+        selection_strategy_builders.add(new SelectClosestBuilder());
+        selection_strategy_builders.add(new SelectYoungestBuilder());
+        return new BuilderBasedFactory<>(selection_strategy_builders);
+    }
+
+    private static Factory<Animal> build_animal_factory(Factory<SelectionStrategy> selection_factory) {
+        List<Builder<Animal>> animal_builders = new ArrayList<>();
+        animal_builders.add(new SheepBuilder(selection_factory));
+        animal_builders.add(new WolfBuilder(selection_factory));
+        return new BuilderBasedFactory<>(animal_builders);
+    }
+
+    private static Factory<Region> build_region_factory() {
+        List<Builder<Region>> region_builders = new ArrayList<>();
+        region_builders.add(new DefaultRegionBuilder());
+        region_builders.add(new DynamicSupplyRegionBuilder());
+        return new BuilderBasedFactory<>(region_builders);
+    }
+
     /**
      * Load a JSON file into a JSONObject
      *
@@ -257,16 +554,47 @@ public class Main {
             OutputStream outputFile = (_out_file != null) ? new FileOutputStream(_out_file) : System.out;
 
             // (3) Create an instance of Simulator passing the appropriate information to its constructor
-            Simulator simulator = new Simulator(inputJson.getInt("width"), inputJson.getInt("height"), inputJson.getInt("cols"), inputJson.getInt("rows"), animal_factory, region_factory);
-
-            // (4) Create an instance of Controller, passing it the simulator
-            Controller controller = new Controller(simulator);
-
-            // (5) Call load_data by passing it the input JSONObject
-            controller.load_data(inputJson);
+            Simulator simulator = new Simulator(inputJson.getInt("width"), inputJson.getInt("height"), inputJson.getInt("cols"), inputJson.getInt("rows"), animal_factory, region_factory, seed_of(inputJson));
+            simulator.set_parallelism(_parallelism);
+            simulator.set_population_store(_store);
+            if (_batch_kernel) {
+                simulator.set_batch_kernel(true);
+            }
 
-            // (6) Call the run method with the corresponding parameters
-            controller.run(_time, _dt, _sv, outputFile);
+            // (4) Create an instance of Controller, passing it the simulator; it and the recorder
+            // are closed even if the run fails
+            try (Controller controller = new Controller(simulator)) {
+                controller.set_pretty_output(_pretty);
+                controller.set_compact_output(_compact);
+
+                // (5) Call load_data by passing it the input JSONObject, or resume from a checkpoint
+                if (_restore_file != null) {
+                    controller.restore_checkpoint(Path.of(_restore_file));
+                } else {
+                    controller.load_data(inputJson);
+                }
+                if (_checkpoint_file != null) {
+                    controller.set_checkpoint(Path.of(_checkpoint_file), _checkpoint_interval);
+                }
+                if (_population_file != null) {
+                    controller.set_population_export(Path.of(_population_file), _population_interval);
+                }
+                controller.set_output_queue(_output_queue, _backpressure);
+
+                // (6) Call the run method with the corresponding parameters, recording the steps if asked
+                TrajectoryRecorder recorder = null;
+                try {
+                    if (_trajectory_file != null) {
+                        recorder = new TrajectoryRecorder(Path.of(_trajectory_file));
+                        controller.add_sink(recorder, AsyncObserver.STATES);
+                    }
+                    controller.run(_time, _dt, _sv, outputFile);
+                } finally {
+                    if (recorder != null) {
+                        recorder.close();
+                    }
+                }
+            }
 
             // (7) Close the output file
             outputFile.close();
@@ -278,6 +606,79 @@ public class Main {
 
     }
 
+    /**
+     * Starts the simulator in ensemble mode: runs the input file with consecutive seeds on a
+     * thread pool, writes the output of every run next to the output file and the aggregated
+     * population curves to the output file.
+     *
+     * @throws Exception If an error occurs while running the ensemble
+     */
+    private static void start_ensemble_mode() throws Exception {
+        String input;
+        try (InputStream is = new FileInputStream(_in_file)) {
+            input = new String(is.readAllBytes());
+        }
+        long base_seed = seed_of(new JSONObject(input));
+
+        // the factories are not modified once built, so the concurrent runs share them; every run parses its own copy of the input
+        EnsembleRunner runner = new EnsembleRunner(seed -> {
+            JSONObject inputJson = new JSONObject(input);
+            Simulator simulator = new Simulator(inputJson.getInt("width"), inputJson.getInt("height"), inputJson.getInt("cols"), inputJson.getInt("rows"), animal_factory, region_factory, seed);
+            simulator.set_parallelism(_parallelism);
+            simulator.set_population_store(_store);
+            if (_batch_kernel) {
+                simulator.set_batch_kernel(true);
+            }
+            Controller controller = new Controller(simulator);
+            controller.set_pretty_output(_pretty);
+            controller.set_compact_output(_compact);
+            controller.load_data(inputJson);
+            return controller;
+        }, _runs, _threads);
+
+        JSONObject stats = runner.run(base_seed, _time, _dt, _out_file);
+        try (OutputStream os = new FileOutputStream(_out_file)) {
+            EnsembleRunner.write(stats, os);
+        }
+    }
+
+    /**
+     * Starts the simulator in sweep mode: runs the input file for every point of the parameter
+     * grid of the sweep spec, with consecutive seeds, and writes one JSON line per run to the
+     * output file as the runs finish.
+     *
+     * @throws Exception If an error occurs while running the sweep
+     */
+    private static void start_sweep_mode() throws Exception {
+        String input;
+        try (InputStream is = new FileInputStream(_in_file)) {
+            input = new String(is.readAllBytes());
+        }
+        JSONObject spec;
+        try (InputStream is = new FileInputStream(_sweep_file)) {
+            spec = load_JSON_file(is);
+        }
+        long base_seed = seed_of(new JSONObject(input));
+
+        SweepRunner runner = new SweepRunner((seed, params) -> {
+            JSONObject inputJson = new JSONObject(input);
+            Simulator simulator = new Simulator(inputJson.getInt("width"), inputJson.getInt("height"), inputJson.getInt("cols"), inputJson.getInt("rows"), animal_factory, region_factory, seed);
+            simulator.set_parallelism(_parallelism);
+            simulator.set_population_store(_store);
+            if (_batch_kernel) {
+                simulator.set_batch_kernel(true);
+            }
+            simulator.set_parameters(params);
+            Controller controller = new Controller(simulator);
+            controller.load_data(inputJson);
+            return controller;
+        }, spec, _threads);
+
+        try (OutputStream os = new FileOutputStream(_out_file)) {
+            runner.run(base_seed, _time, _dt, os);
+        }
+    }
+
     /**
      * Starts the simulator in GUI mode
      *
@@ -290,12 +691,22 @@ public class Main {
             InputStream is = new FileInputStream(_in_file);
             JSONObject inputJson = load_JSON_file(is);
             is.close();
-            Simulator simulator = new Simulator(inputJson.getInt("width"), inputJson.getInt("height"), inputJson.getInt("cols"), inputJson.getInt("rows"), animal_factory, region_factory);
+            Simulator simulator = new Simulator(inputJson.getInt("width"), inputJson.getInt("height"), inputJson.getInt("cols"), inputJson.getInt("rows"), animal_factory, region_factory, seed_of(inputJson));
+            simulator.set_parallelism(_parallelism);
+            simulator.set_population_store(_store);
+            if (_batch_kernel) {
+                simulator.set_batch_kernel(true);
+            }
             Controller controller = new Controller(simulator);
             controller.load_data(inputJson);
             SwingUtilities.invokeAndWait(() -> new MainWindow(controller));
         } else {
-            sim = new Simulator(800, 600, 15, 20, animal_factory, region_factory);
+            sim = new Simulator(800, 600, 15, 20, animal_factory, region_factory, seed_of(null));
+            sim.set_parallelism(_parallelism);
+            sim.set_population_store(_store);
+            if (_batch_kernel) {
+                sim.set_batch_kernel(true);
+            }
             ctrl = new Controller(sim);
             SwingUtilities.invokeAndWait(() -> new MainWindow(ctrl));
 
@@ -316,6 +727,12 @@ public class Main {
             case BATCH:
                 start_batch_mode();
                 break;
+            case ENSEMBLE:
+                start_ensemble_mode();
+                break;
+            case SWEEP:
+                start_sweep_mode();
+                break;
             case GUI:
                 start_GUI_mode();
                 break;
@@ -334,7 +751,7 @@ public class Main {
     }
 
     private enum ExecMode {
-        BATCH("batch", "Batch mode"), GUI("gui", "Graphical User Interface mode");
+        BATCH("batch", "Batch mode"), ENSEMBLE("ensemble", "Ensemble mode"), SWEEP("sweep", "Parameter sweep mode"), GUI("gui", "Graphical User Interface mode");
 
         private final String _tag;
         private final String _desc;
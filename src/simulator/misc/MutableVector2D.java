@@ -0,0 +1,103 @@
+package simulator.misc;
+
+/**
+ * Mutable counterpart of {@link Vector2D} for the per-step movement of the animals: every
+ * operation works on doubles and changes the vector in place. The immutable vector returned by
+ * {@link #toVector2D()} is kept until the next change, so readers that only look at a vector
+ * between two moves share one object.
+ */
+public class MutableVector2D {
+
+    private double _x;
+    private double _y;
+    private Vector2D _view;
+
+    // create the zero vector
+    public MutableVector2D() {
+        _x = _y = 0.0;
+    }
+
+    public MutableVector2D(double x, double y) {
+        _x = x;
+        _y = y;
+    }
+
+    public MutableVector2D(Vector2D v) {
+        _x = v._x;
+        _y = v._y;
+    }
+
+    public double getX() {
+        return _x;
+    }
+
+    public double getY() {
+        return _y;
+    }
+
+    public void set(double x, double y) {
+        _x = x;
+        _y = y;
+        _view = null;
+    }
+
+    public void set(MutableVector2D v) {
+        set(v._x, v._y);
+    }
+
+    // this = this + (dx, dy)
+    public void add(double dx, double dy) {
+        set(_x + dx, _y + dy);
+    }
+
+    // this = this * factor
+    public void scale(double factor) {
+        set(_x * factor, _y * factor);
+    }
+
+    // return the squared distance between this and (x, y)
+    public double distanceSquaredTo(double x, double y) {
+        double dx = _x - x;
+        double dy = _y - y;
+        return dx * dx + dy * dy;
+    }
+
+    public double distanceSquaredTo(MutableVector2D v) {
+        return distanceSquaredTo(v._x, v._y);
+    }
+
+    /**
+     * Moves this vector the given distance towards (x, y), or away from it when the distance is
+     * negative. It computes the same value as plus(to.minus(this).direction().scale(step)) on
+     * {@link Vector2D}, and does not move when both points are equal.
+     *
+     * @param x    The x coordinate of the target
+     * @param y    The y coordinate of the target
+     * @param step The distance to move
+     */
+    public void moveTowards(double x, double y, double step) {
+        double dx = x - _x;
+        double dy = y - _y;
+        double magnitude = Math.sqrt(dx * dx + dy * dy);
+        if (magnitude > 0.0) {
+            double inv = 1.0 / magnitude;
+            set(_x + dx * inv * step, _y + dy * inv * step);
+        }
+    }
+
+    /**
+     * Returns an immutable copy of the vector, reusing the same copy until the vector changes.
+     *
+     * @return The immutable vector
+     */
+    public Vector2D toVector2D() {
+        if (_view == null) {
+            _view = new Vector2D(_x, _y);
+        }
+        return _view;
+    }
+
+    public String toString() {
+        return "[" + _x + "," + _y + "]";
+    }
+}
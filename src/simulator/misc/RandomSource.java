@@ -0,0 +1,72 @@
+package simulator.misc;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Source of randomness owned by one simulator. It has a main stream, used by the simulator
+ * thread, and splits independent streams for the entities and threads that need their own,
+ * so that runs are reproducible from the seed whatever the other simulators in the JVM do.
+ */
+public class RandomSource {
+    public static final long DEFAULT_SEED = 2147483647L;
+
+    private long _seed;
+    private final SplitMixRandom _main;
+    private final SplitMixRandom _streams;
+
+    public RandomSource(long seed) {
+        _seed = seed;
+        SplitMixRandom root = new SplitMixRandom(seed);
+        _main = root.split();
+        _streams = root.split();
+    }
+
+    public long get_seed() {
+        return _seed;
+    }
+
+    /**
+     * Returns the main stream. It is not thread-safe and must only be used by the simulator thread.
+     *
+     * @return The main stream
+     */
+    public RandomGenerator main() {
+        return _main;
+    }
+
+    /**
+     * Splits a new independent stream. The streams are split in a fixed sequence, independent
+     * of the main stream, so the n-th stream is always the same for a given seed.
+     *
+     * @return A new stream
+     */
+    public RandomGenerator split() {
+        return _streams.split();
+    }
+
+    /**
+     * Returns the state of the source: the seed, then the seed and gamma of the main stream and
+     * of the stream the other streams are split from.
+     *
+     * @return The state, to be given back to {@link #set_state(long[])}
+     */
+    public long[] get_state() {
+        return new long[]{_seed, _main.getSeed(), _main.getGamma(), _streams.getSeed(), _streams.getGamma()};
+    }
+
+    /**
+     * Restores a state returned by {@link #get_state()}. The main stream keeps its identity, so
+     * the objects using it see the restored state.
+     *
+     * @param state The state
+     * @throws IllegalArgumentException If the state does not have the expected length
+     */
+    public void set_state(long[] state) {
+        if (state.length != 5) {
+            throw new IllegalArgumentException("Invalid random source state");
+        }
+        _seed = state[0];
+        _main.setState(state[1], state[2]);
+        _streams.setState(state[3], state[4]);
+    }
+}
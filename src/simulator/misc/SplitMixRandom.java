@@ -0,0 +1,76 @@
+package simulator.misc;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * SplitMix64 generator producing the same values as {@link java.util.SplittableRandom} for the
+ * same seed and the same calls, including split(), but whose state (seed and gamma) can be read
+ * and set, so that a running simulation can be checkpointed and resumed.
+ */
+public final class SplitMixRandom implements RandomGenerator {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long _seed;
+    private long _gamma;
+
+    public SplitMixRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    public SplitMixRandom(long seed, long gamma) {
+        _seed = seed;
+        _gamma = gamma;
+    }
+
+    public long getSeed() {
+        return _seed;
+    }
+
+    public long getGamma() {
+        return _gamma;
+    }
+
+    // restores a state read with getSeed() and getGamma()
+    public void setState(long seed, long gamma) {
+        _seed = seed;
+        _gamma = gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+
+    private long nextSeed() {
+        return _seed += _gamma;
+    }
+
+    // return a new generator split from this one, as SplittableRandom.split()
+    public SplitMixRandom split() {
+        return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    @Override
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+}
@@ -1,6 +1,7 @@
 package simulator.misc;
 
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class Utils {
     public static final Random _rand = new Random();
@@ -12,8 +13,12 @@ public class Utils {
     }
 
     public static double get_randomized_parameter(double value, double tolerance) {
+        return get_randomized_parameter(_rand, value, tolerance);
+    }
+
+    public static double get_randomized_parameter(RandomGenerator rand, double value, double tolerance) {
         assert (tolerance > 0 && tolerance <= 1);
-        double t = (_rand.nextDouble() - 0.5) * 2 * tolerance;
+        double t = (rand.nextDouble() - 0.5) * 2 * tolerance;
         return value * (1 + t);
     }
 
@@ -2,6 +2,8 @@ package simulator.misc;
 
 import org.json.JSONArray;
 
+import java.util.random.RandomGenerator;
+
 public class Vector2D {
 
     double _x;
@@ -25,20 +27,28 @@ public class Vector2D {
     }
 
     public static Vector2D get_random_vector(double min, double max) {
+        return get_random_vector(Utils._rand, min, max);
+    }
+
+    public static Vector2D get_random_vector(RandomGenerator rand, double min, double max) {
         assert (max >= min);
-        double x = min + Utils._rand.nextDouble(max - min);
-        double y = min + Utils._rand.nextDouble(max - min);
+        double x = min + rand.nextDouble(max - min);
+        double y = min + rand.nextDouble(max - min);
         assert (x >= min && x <= max);
         assert (y >= min && y <= max);
         return new Vector2D(x, y);
     }
 
     public static Vector2D get_random_vector(double minX, double maxX, double minY, double maxY) {
+        return get_random_vector(Utils._rand, minX, maxX, minY, maxY);
+    }
+
+    public static Vector2D get_random_vector(RandomGenerator rand, double minX, double maxX, double minY, double maxY) {
         assert (maxX >= minX);
         assert (maxY >= minY);
 
-        double x = minX + Utils._rand.nextDouble() * (maxX - minX);
-        double y = minY + Utils._rand.nextDouble() * (maxY - minY);
+        double x = minX + rand.nextDouble() * (maxX - minX);
+        double y = minY + rand.nextDouble() * (maxY - minY);
 
         assert (x >= minX && x <= maxX);
         assert (y >= minY && y <= maxY);
@@ -58,7 +68,14 @@ public class Vector2D {
 
     // return the distance between this and that
     public double distanceTo(Vector2D that) {
-        return minus(that).magnitude();
+        return Math.sqrt(distanceSquaredTo(that));
+    }
+
+    // return the squared distance between this and that, without creating any vector
+    public double distanceSquaredTo(Vector2D that) {
+        double dx = _x - that._x;
+        double dy = _y - that._y;
+        return dx * dx + dy * dy;
     }
 
     // create and return a new object whose value is (this + that)
@@ -1,27 +1,70 @@
 package simulator.model;
 
 import org.json.JSONObject;
+import simulator.misc.MutableVector2D;
 import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 
-import java.util.List;
-import java.util.function.Predicate;
+import java.io.IOException;
+import java.util.function.BiPredicate;
+import java.util.random.RandomGenerator;
 
-public abstract class Animal implements Entity, AnimalInfo, Constants {
+public abstract class Animal implements Entity, AnimalInfo {
     protected String _genetic_code;
     protected Diet _diet;
     protected State _state;
-    protected Vector2D _pos;
-    protected Vector2D _dest;
+    protected MutableVector2D _pos;
+    protected MutableVector2D _dest;
     protected double _energy;
     protected double _speed;
     protected double _age;
     protected double _desire;
     protected double _sight_range;
-    protected Animal _mate_target;
+    // handle of the mate target in the pool of the animal
+    protected long _mate_target;
     protected Animal _baby;
     protected AnimalMapView _region_mngr;
     protected SelectionStrategy _mate_strategy;
+    protected RandomGenerator _rand;
+    // set when the animal joins a simulation, or inherited from the parents: not final, so
+    // its values are loaded on every use
+    protected Parameters _params;
+    protected double _init_speed;
+
+    // id given by the simulator when the animal is added to it
+    int _id;
+
+    // species and state the animal is counted in by the population counters of the simulator,
+    // and the animal it killed since the simulator last looked
+    int _counted_species = -1;
+    State _counted_state;
+    private Animal _victim;
+
+    // species id, bucket and slot of the animal in the neighbour index of its map, bucket -1 when not indexed
+    int _index_species;
+    int _index_bucket = -1;
+    int _index_slot;
+
+    // pool of the simulator of the animal, slot in the pool (-1 until adopted) and current life
+    AnimalPool _pool;
+    int _pool_slot = -1;
+    int _generation;
+
+    // region cell (row * cols + col) of the animal in its map and slot in the list of that region, cell -1 when not registered
+    int _region_cell = -1;
+    int _region_slot;
+
+    // two-phase tick: what other animals see of this one, and effects deferred to the commit phase
+    private boolean _two_phase;
+    private double _seen_x;
+    private double _seen_y;
+    private State _seen_state;
+    private double _seen_energy;
+    private double _seen_age;
+    private boolean _seen_pregnant;
+    private Animal _pending_kill;
+    private Animal _pending_mate;
+    private boolean _pending_food;
 
     public enum State {
         NORMAL, MATE, HUNGER, DANGER, DEAD
@@ -35,9 +78,10 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
      * @param init_speed    The initial speed of the animal
      * @param mate_strategy The mate strategy of the animal
      * @param pos           The position of the animal
+     * @param rand          The random stream of the animal
      * @throws IllegalArgumentException If the genetic code is null or empty, sight range is not positive, initial speed is not positive, or mate strategy is null
      */
-    protected Animal(String genetic_code, Diet diet, double sight_range, double init_speed, SelectionStrategy mate_strategy, Vector2D pos) {
+    protected Animal(String genetic_code, Diet diet, double sight_range, double init_speed, SelectionStrategy mate_strategy, Vector2D pos, RandomGenerator rand) {
         // Check for null or empty genetic_code, sight_range and init_speed are positive, and mate_strategy is not null
         if (genetic_code == null || genetic_code.isEmpty() || sight_range <= 0 || init_speed <= 0 || mate_strategy == null) {
             throw new IllegalArgumentException("Invalid parameters");
@@ -47,14 +91,17 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
         _genetic_code = genetic_code;
         _diet = diet;
         _state = State.NORMAL;
-        _pos = pos;
+        _pos = pos == null ? null : new MutableVector2D(pos);
         _dest = null;
-        _energy = _maxenergy;
-        _speed = Utils.get_randomized_parameter(init_speed, _toleranceSpeed);
+        _energy = Constants._maxenergy;
+        _rand = rand;
+        _params = null;
+        _init_speed = init_speed;
+        _speed = init_speed;
         _age = 0;
-        _desire = _lowestdesire;
+        _desire = Constants._lowestdesire;
         _sight_range = sight_range;
-        _mate_target = null;
+        _mate_target = AnimalPool.NONE;
         _baby = null;
         _region_mngr = null;
         _mate_strategy = mate_strategy;
@@ -66,17 +113,35 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
      * @param p2 The second parent animal
      */
     protected Animal(Animal p1, Animal p2) {
+        born_of(p1, p2);
+    }
+    /**
+     * Sets the attributes of a baby of the given parents, on a new animal or on one reused from
+     * the pool of the parents. A reused animal keeps its position and destination vectors.
+     *
+     * @param p1 The first parent animal
+     * @param p2 The second parent animal
+     */
+    protected final void born_of(Animal p1, Animal p2) {
         _genetic_code = p1.get_genetic_code();
         _diet = p1.get_diet();
         _state = State.NORMAL;
-        _pos = p1.get_position().plus(Vector2D.get_random_vector(-1, 1).scale(_multiplicativeFactor * (Utils._rand.nextGaussian() + 1)));
-        _dest = null;
-        _energy = (p1.get_energy() + p2.get_energy()) / 2.0;
-        _speed = Utils.get_randomized_parameter((p1.get_speed() + p2.get_speed()) / 2, _tolerance);
+        _rand = p1._rand;
+        _params = p1._params;
+        _pool = p1._pool;
+        _init_speed = p1._init_speed;
+        Vector2D pos = p1.get_position().plus(Vector2D.get_random_vector(_rand, -1, 1).scale(_params._multiplicativeFactor * (_rand.nextGaussian() + 1)));
+        if (_pos == null) {
+            _pos = new MutableVector2D(pos);
+        } else {
+            _pos.set(pos.getX(), pos.getY());
+        }
+        _energy = (p1.get_energy() + p2.observed_energy()) / 2.0;
+        _speed = Utils.get_randomized_parameter(_rand, (p1.get_speed() + p2.get_speed()) / 2, _params._tolerance);
         _age = 0;
-        _desire = _lowestdesire;
-        _sight_range = Utils.get_randomized_parameter((p1.get_sight_range() + p2.get_sight_range()) / 2, _tolerance);
-        _mate_target = null;
+        _desire = _params._lowestdesire;
+        _sight_range = Utils.get_randomized_parameter(_rand, (p1.get_sight_range() + p2.get_sight_range()) / 2, _params._tolerance);
+        _mate_target = AnimalPool.NONE;
         _baby = null;
         _region_mngr = null;
         _mate_strategy = p2.get_mate_strategy();
@@ -88,41 +153,273 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
      */
     void init(AnimalMapView reg_mngr) {
         _region_mngr = reg_mngr;
+        if (_params == null) {
+            _params = reg_mngr.get_parameters();
+            init_attributes();
+        }
         if (this._pos == null) {
-            _pos = Vector2D.get_random_vector(0, _region_mngr.get_width() - 1, 0, _region_mngr.get_height() - 1);
+            _pos = new MutableVector2D(Vector2D.get_random_vector(_rand, 0, _region_mngr.get_width() - 1, 0, _region_mngr.get_height() - 1));
         } else {
             if (IsOutOfMap()) {
-                _pos = adjust_position(_pos);
+                adjust_position();
+            }
+        }
+        Vector2D dest = Vector2D.get_random_vector(_rand, 0, _region_mngr.get_width() - 1, 0, _region_mngr.get_height() - 1);
+        if (_dest == null) {
+            _dest = new MutableVector2D(dest);
+        } else {
+            _dest.set(dest.getX(), dest.getY());
+        }
+    }
+    /**
+     * Drops the references of a dead animal to other objects when its pool recycles it.
+     * Subclasses clear their own targets too.
+     */
+    protected void release() {
+        _mate_target = AnimalPool.NONE;
+        _baby = null;
+        _region_mngr = null;
+        _pending_kill = null;
+        _pending_mate = null;
+        _pending_food = false;
+    }
+
+    /**
+     * Returns the animal a handle refers to.
+     *
+     * @param handle The handle
+     * @return The animal, or null if there is none or it is gone
+     */
+    protected Animal resolve(long handle) {
+        return _pool == null ? null : _pool.resolve(handle);
+    }
+
+    /**
+     * Returns the current mate target.
+     *
+     * @return The mate target, or null if there is none or it is gone
+     */
+    protected Animal get_mate_target() {
+        return resolve(_mate_target);
+    }
+
+    protected void set_mate_target(Animal a) {
+        _mate_target = AnimalPool.handle(a);
+    }
+
+    /**
+     * Returns the handle of the second target of the animal (danger source, hunt target).
+     *
+     * @return The handle, {@link AnimalPool#NONE} for species without a second target
+     */
+    long get_aux_target() {
+        return AnimalPool.NONE;
+    }
+
+    void set_aux_target(long handle) {
+    }
+    /**
+     * Sets the attributes that depend on the parameters of the simulation the animal joins.
+     * Babies inherit the parameters of their parents and skip it.
+     */
+    protected void init_attributes() {
+        _energy = _params._maxenergy;
+        _desire = _params._lowestdesire;
+        _speed = Utils.get_randomized_parameter(_rand, _init_speed, _params._toleranceSpeed);
+    }
+    /**
+     * Switches the animal between the in-place tick and the two-phase (decide/commit) tick.
+     * In two-phase mode every read of another animal goes through the snapshot taken by
+     * {@link #snapshot()}, and effects on other animals or on the regions are deferred to {@link #commit(double)}.
+     *
+     * @param two_phase Whether the animal is updated by the two-phase tick
+     * @param rand      The random stream owned by this animal
+     */
+    void set_two_phase(boolean two_phase, RandomGenerator rand) {
+        _two_phase = two_phase;
+        _rand = rand;
+        snapshot();
+    }
+
+    /**
+     * Records the state other animals observe during the next decide phase.
+     */
+    void snapshot() {
+        if (_pos != null) {
+            _seen_x = _pos.getX();
+            _seen_y = _pos.getY();
+        }
+        _seen_state = _state;
+        _seen_energy = _energy;
+        _seen_age = _age;
+        _seen_pregnant = _baby != null;
+    }
+
+    /**
+     * Applies the effects recorded during the decide phase: kills, mate desire resets and feeding.
+     * A kill is granted only if the prey is still alive, since another animal may have killed it
+     * earlier in the commit phase; the prey then drops the effects it has not committed yet.
+     *
+     * @param dt The time interval of the tick
+     */
+    void commit(double dt) {
+        if (_pending_kill != null) {
+            Animal prey = _pending_kill;
+            _pending_kill = null;
+            if (prey._state != State.DEAD) {
+                prey.setState(State.DEAD);
+                prey.drop_pending();
+                _victim = prey;
+                on_kill(prey);
             }
         }
-        this._dest = Vector2D.get_random_vector(0, _region_mngr.get_width() - 1, 0, _region_mngr.get_height() - 1);
+        if (_pending_mate != null) {
+            _pending_mate.setDesire(0);
+            _pending_mate = null;
+        }
+        if (_pending_food) {
+            _pending_food = false;
+            _energy += _region_mngr.get_food(this, dt);
+            checkEnergy();
+        }
+    }
+
+    // forgets the effects of the decide phase of an animal killed before its commit, and its baby
+    private void drop_pending() {
+        _pending_kill = null;
+        _pending_mate = null;
+        _pending_food = false;
+        if (_baby != null) {
+            if (_pool != null) {
+                _pool.recycle(_baby);
+            }
+            _baby = null;
+        }
+    }
+
+    Vector2D observed_position() {
+        return _two_phase ? new Vector2D(_seen_x, _seen_y) : _pos.toVector2D();
+    }
+
+    double observed_x() {
+        return _two_phase ? _seen_x : _pos.getX();
+    }
+
+    double observed_y() {
+        return _two_phase ? _seen_y : _pos.getY();
+    }
+
+    State observed_state() {
+        return _two_phase ? _seen_state : _state;
+    }
+
+    double observed_energy() {
+        return _two_phase ? _seen_energy : _energy;
+    }
+
+    double observed_age() {
+        return _two_phase ? _seen_age : _age;
+    }
+
+    boolean observed_pregnant() {
+        return _two_phase ? _seen_pregnant : _baby != null;
+    }
+
+    /**
+     * Returns the squared distance from this animal to the observed position of another one.
+     *
+     * @param a The other animal
+     * @return The squared distance
+     */
+    protected double distance2_to(Animal a) {
+        return _pos.distanceSquaredTo(a.observed_x(), a.observed_y());
+    }
+
+    /**
+     * Kills the given animal, immediately or at commit time in two-phase mode, and then calls
+     * {@link #on_kill(Animal)}.
+     *
+     * @param a The animal to kill
+     */
+    protected void kill(Animal a) {
+        if (_two_phase) {
+            _pending_kill = a;
+        } else {
+            a.setState(State.DEAD);
+            _victim = a;
+            on_kill(a);
+        }
+    }
+
+    /**
+     * Called when a kill of this animal is applied, i.e. at commit time in two-phase mode.
+     *
+     * @param prey The killed animal
+     */
+    protected void on_kill(Animal prey) {
+    }
+
+    /**
+     * Returns the animal killed by this one since the last call, if any, and forgets it.
+     *
+     * @return The killed animal, or null
+     */
+    Animal take_victim() {
+        Animal v = _victim;
+        _victim = null;
+        return v;
+    }
+
+    /**
+     * Resets the desire of the given mate, immediately or at commit time in two-phase mode.
+     *
+     * @param a The mate whose desire is reset
+     */
+    protected void reset_mate_desire(Animal a) {
+        if (_two_phase) {
+            _pending_mate = a;
+        } else {
+            a.setDesire(0);
+        }
     }
+
     /**
-     * Adjusts the position of the animal to ensure it remains within the bounds of the map.
+     * Takes food from the current region, immediately or at commit time in two-phase mode.
      *
-     * @param pos The current position of the animal
-     * @return The adjusted position of the animal
+     * @param dt The time interval of the tick
      */
-    public Vector2D adjust_position(Vector2D pos) {
-        double cols = pos.getX();
-        double rows = pos.getY();
+    protected void feed(double dt) {
+        if (_two_phase) {
+            _pending_food = true;
+        } else {
+            _energy += _region_mngr.get_food(this, dt);
+            checkEnergy();
+        }
+    }
+
+    /**
+     * Wraps the position of the animal around the map bounds, in place.
+     */
+    protected void adjust_position() {
+        double x = _pos.getX();
+        double y = _pos.getY();
 
         double width = _region_mngr.get_width();
         double height = _region_mngr.get_height();
 
-        while (cols >= width)
-            cols = (cols - width);
+        while (x >= width)
+            x = (x - width);
 
-        while (cols < 0)
-            cols = (cols + width);
+        while (x < 0)
+            x = (x + width);
 
-        while (rows >= height)
-            rows = (rows - height);
+        while (y >= height)
+            y = (y - height);
 
-        while (rows < 0)
-            rows = (rows + height);
+        while (y < 0)
+            y = (y + height);
 
-        return new Vector2D(cols, rows);
+        _pos.set(x, y);
     }
     /**
      * Checks if the animal is out of the map bounds.
@@ -151,7 +448,24 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
      * @param speed The speed with which the animal moves
      */
     protected void move(double speed) {
-        _pos = _pos.plus(_dest.minus(_pos).direction().scale(speed));
+        _pos.moveTowards(_dest.getX(), _dest.getY(), speed);
+    }
+    /**
+     * Sets the destination of the animal to the observed position of another one.
+     *
+     * @param a The other animal
+     */
+    protected void set_dest_to(Animal a) {
+        _dest.set(a.observed_x(), a.observed_y());
+    }
+    /**
+     * Sets the destination of the animal one unit away from the observed position of another one.
+     *
+     * @param a The other animal
+     */
+    protected void set_dest_away_from(Animal a) {
+        _dest.set(_pos);
+        _dest.moveTowards(a.observed_x(), a.observed_y(), -1.0);
     }
     /**
      * Converts the animal's attributes to a JSONObject.
@@ -169,6 +483,17 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
 
         return json;
     }
+
+    // same members as as_JSON, in the order org.json writes them
+    @Override
+    public void write_JSON(JSONStream out) throws IOException {
+        out.begin_object(4);
+        out.key("pos").value(_pos.toString());
+        out.key("diet").value(_diet.toString());
+        out.key("state").value(_diet.toString());
+        out.key("gcode").value(_genetic_code);
+        out.end_object();
+    }
     /**
      * Updates the animal's state based on the specified time interval.
      *
@@ -177,6 +502,11 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
     public void update(double dt) {
     }
 
+    @Override
+    public int get_id() {
+        return this._id;
+    }
+
     @Override
     public State get_state() {
         return this._state;
@@ -184,7 +514,7 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
 
     @Override
     public Vector2D get_position() {
-        return this._pos;
+        return this._pos == null ? null : this._pos.toVector2D();
     }
 
     @Override
@@ -225,6 +555,11 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
     public SelectionStrategy get_mate_strategy() {
         return this._mate_strategy;
     }
+    // filters of the searches, on the searching animal and a candidate
+    private static final BiPredicate<Animal, Animal> MATE_FILTER = (a, b) -> b.get_genetic_code().equals(a._genetic_code) && !b.observed_pregnant() && b.observed_state() == State.MATE && b != a;
+    private static final BiPredicate<Animal, Animal> DANGER_FILTER = (a, b) -> b.get_diet() == Diet.CARNIVORE;
+    private static final BiPredicate<Animal, Animal> HUNT_FILTER = (a, b) -> b.get_diet() == Diet.HERBIVORE;
+
     /**
      * Searches for a mate animal within the specified animal map view using the given selection strategy.
      *
@@ -233,11 +568,7 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
      * @return The selected mate animal, or null if no mate is found
      */
     public Animal searchForMate(AnimalMapView reg_mngr, SelectionStrategy strategy) {
-        Predicate<Animal> filter = a -> a.get_genetic_code().equals(this._genetic_code) && !a.is_pregnant() && a.get_state() == State.MATE && a != this;
-
-        List<Animal> animalsInRange = reg_mngr.get_animals_in_range(this, filter);
-
-        return strategy.select(this, animalsInRange);
+        return reg_mngr.select_mate_in_range(this, MATE_FILTER, strategy);
     }
     /**
      * Searches for a dangerous animal within the specified animal map view using the given selection strategy.
@@ -247,13 +578,7 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
      * @return The selected dangerous animal, or null if none is found
      */
     public Animal searchForDanger(AnimalMapView reg_mngr, SelectionStrategy strategy) {
-
-        Predicate<Animal> filter = a -> a.get_diet() == Diet.CARNIVORE;
-
-        List<Animal> animalsInRange = reg_mngr.get_animals_in_range(this, filter);
-
-
-        return strategy.select(this, animalsInRange);
+        return reg_mngr.select_in_range(this, Diet.CARNIVORE, DANGER_FILTER, strategy);
     }
     /**
      * Searches for a hunt target animal within the specified animal map view using the given selection strategy.
@@ -263,31 +588,26 @@ public abstract class Animal implements Entity, AnimalInfo, Constants {
      * @return The selected hunt target animal, or null if none is found
      */
     public Animal searchForHuntTarget(AnimalMapView reg_mngr, SelectionStrategy strategy) {
-        Predicate<Animal> filter = a -> a.get_diet() == Diet.HERBIVORE;
-
-        List<Animal> animalsInRange = reg_mngr.get_animals_in_range(this, filter);
-
-
-        return strategy.select(this, animalsInRange);
+        return reg_mngr.select_in_range(this, Diet.HERBIVORE, HUNT_FILTER, strategy);
     }
     /**
      * Checks and adjusts the energy level of the animal if it exceeds the maximum or falls below the lowest energy level.
      */
     protected void checkEnergy() {
-        if (_energy > _maxenergy) {
-            _energy = _maxenergy;
-        } else if (_energy < _lowestenergy) {
-            _energy = _lowestenergy;
+        if (_energy > _params._maxenergy) {
+            _energy = _params._maxenergy;
+        } else if (_energy < _params._lowestenergy) {
+            _energy = _params._lowestenergy;
         }
     }
     /**
      * Checks and adjusts the desire level of the animal if it exceeds the maximum or falls below the lowest desire level.
      */
     protected void checkDesire() {
-        if (_desire > _maxdesire) {
-            _desire = _maxdesire;
-        } else if (_desire < _lowestdesire) {
-            _desire = _lowestdesire;
+        if (_desire > _params._maxdesire) {
+            _desire = _params._maxdesire;
+        } else if (_desire < _params._lowestdesire) {
+            _desire = _params._lowestdesire;
         }
     }
     protected void setState(State state) {
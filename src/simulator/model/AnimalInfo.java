@@ -6,6 +6,14 @@ import simulator.misc.Vector2D;
  * Interface representing information about an animal.
  */
 public interface AnimalInfo extends JSONable {
+    /**
+     * Returns the id of the animal in its simulation: animals are numbered from 0 in the order
+     * they are added or born, and keep their number for their whole life.
+     *
+     * @return The id
+     */
+    int get_id();
+
     Animal.State get_state();
 
     Vector2D get_position();
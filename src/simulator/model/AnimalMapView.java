@@ -1,10 +1,60 @@
 package simulator.model;
 
 import java.util.List;
+import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 
 public interface AnimalMapView extends MapInfo, FoodSupplier {
 
     List<Animal> get_animals_in_range(Animal a, Predicate<Animal> filter);
 
+    /**
+     * Adds to the result the animals within the sight range of the given animal that satisfy
+     * the filter, together with their squared distances to it.
+     *
+     * @param a      The animal that searches
+     * @param filter The condition the animals must satisfy
+     * @param result The neighbours the animals are added to
+     */
+    void get_animals_in_range(Animal a, Predicate<Animal> filter, Neighbours result);
+
+    /**
+     * Selects one of the animals in range of the given animal that satisfy the filter. The
+     * candidates of a {@link StreamingSelectionStrategy} are ranked as they are found instead of
+     * being collected in a list.
+     *
+     * @param a        The animal that searches
+     * @param filter   The condition on the searching animal and a candidate
+     * @param strategy The selection strategy
+     * @return The selected animal, or null if there is none
+     */
+    default Animal select_in_range(Animal a, BiPredicate<Animal, Animal> filter, SelectionStrategy strategy) {
+        return select_in_range(a, null, filter, strategy);
+    }
+
+    /**
+     * Selects one of the animals of the given diet in range of the given animal that satisfy
+     * the filter, only looking at the animals of that diet.
+     *
+     * @param a        The animal that searches
+     * @param diet     The diet of the candidates, or null for any diet
+     * @param filter   The condition on the searching animal and a candidate
+     * @param strategy The selection strategy
+     * @return The selected animal, or null if there is none
+     */
+    Animal select_in_range(Animal a, Diet diet, BiPredicate<Animal, Animal> filter, SelectionStrategy strategy);
+
+    /**
+     * Selects one of the animals of the species of the given animal in the MATE state and in
+     * range that satisfy the filter, only looking at the animals of that species in that state.
+     *
+     * @param a        The animal that searches
+     * @param filter   The condition on the searching animal and a candidate
+     * @param strategy The selection strategy
+     * @return The selected animal, or null if there is none
+     */
+    Animal select_mate_in_range(Animal a, BiPredicate<Animal, Animal> filter, SelectionStrategy strategy);
+
+    Parameters get_parameters();
+
 }
@@ -0,0 +1,108 @@
+package simulator.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of the animals of a simulator. Every animal that joins the simulator takes a slot of the
+ * pool for good, and the animals swept out when dead are kept in a free list of their class, to
+ * be reused for the next babies instead of allocating new ones.
+ * <p>
+ * Animals refer to other animals (mate, danger source, hunt target) through generational
+ * handles: the slot of the target and its generation, packed in a long. Recycling an animal
+ * increases its generation, so the handles to its previous life resolve to null, as if the
+ * target was gone, and never to the baby that reuses it.
+ */
+final class AnimalPool {
+    // handle that resolves to no animal
+    static final long NONE = -1L;
+
+    private Animal[] _slots;
+    private int _size;
+    private final Map<Class<? extends Animal>, ArrayDeque<Animal>> _free;
+
+    AnimalPool() {
+        _slots = new Animal[64];
+        _size = 0;
+        _free = new HashMap<>();
+    }
+
+    /**
+     * Gives a slot of the pool to an animal joining the simulator, unless it already has one.
+     *
+     * @param a The animal
+     */
+    void adopt(Animal a) {
+        a._pool = this;
+        if (a._pool_slot >= 0) {
+            return;
+        }
+        if (_size == _slots.length) {
+            _slots = Arrays.copyOf(_slots, _size * 2);
+        }
+        a._pool_slot = _size;
+        _slots[_size++] = a;
+    }
+
+    /**
+     * Returns the handle of an animal in its current life.
+     *
+     * @param a The animal, or null
+     * @return The handle, or {@link #NONE} if the animal is null or has no slot yet
+     */
+    static long handle(Animal a) {
+        if (a == null || a._pool_slot < 0) {
+            return NONE;
+        }
+        return ((long) a._generation << 32) | a._pool_slot;
+    }
+
+    /**
+     * Returns the animal a handle refers to, if it was not recycled since the handle was taken.
+     *
+     * @param handle The handle
+     * @return The animal, or null if the handle is {@link #NONE} or its animal is gone
+     */
+    Animal resolve(long handle) {
+        if (handle == NONE) {
+            return null;
+        }
+        Animal a = _slots[(int) handle];
+        return a._generation == (int) (handle >>> 32) ? a : null;
+    }
+
+    /**
+     * Returns the number of slots given, i.e. the largest number of animals the simulator had.
+     *
+     * @return The number of slots
+     */
+    int get_slots() {
+        return _size;
+    }
+
+    /**
+     * Takes a recycled animal of the given class. It is called while animals are updated,
+     * from the decide threads in two-phase mode.
+     *
+     * @param type The class of the animal
+     * @return The animal, to be reinitialized by the caller, or null if there is none
+     */
+    synchronized <T extends Animal> T take(Class<T> type) {
+        ArrayDeque<Animal> free = _free.get(type);
+        return free == null ? null : type.cast(free.poll());
+    }
+
+    /**
+     * Recycles an animal that left the simulator: its handles stop resolving and it drops its
+     * references to other objects.
+     *
+     * @param a The animal, already unregistered from its map
+     */
+    synchronized void recycle(Animal a) {
+        a._generation++;
+        a.release();
+        _free.computeIfAbsent(a.getClass(), k -> new ArrayDeque<>()).push(a);
+    }
+}
@@ -0,0 +1,295 @@
+package simulator.model;
+
+import org.json.JSONObject;
+import simulator.misc.MutableVector2D;
+import simulator.misc.Vector2D;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Immutable copy of the animals of a {@link Simulator} at one point of the simulation, handed to
+ * every observer. The attributes are kept in one array per field, with the genetic code and the
+ * diet stored once per species; the {@link AnimalInfo} elements are built when accessed and read
+ * from these arrays.
+ * <p>
+ * The arrays are filled before the snapshot is published and never written again, so a snapshot
+ * can be kept and read from any thread while the simulation goes on. The simulator builds a new
+ * snapshot only when its animals changed since the last one, the epoch, so all the notifications
+ * of the same state share it.
+ */
+public final class AnimalSnapshot extends AbstractList<AnimalInfo> implements RandomAccess {
+    private static final Animal.State[] STATES = Animal.State.values();
+
+    private final long _epoch;
+    private final double _time;
+    private final int _size;
+    private final int[] _id;
+    private final double[] _x;
+    private final double[] _y;
+    private final double[] _speed;
+    private final double[] _sight_range;
+    private final double[] _energy;
+    private final double[] _age;
+    private final byte[] _state;
+    private final boolean[] _pregnant;
+    private final short[] _species;
+    private final String[] _codes;
+    private final Diet[] _diets;
+
+    AnimalSnapshot(long epoch, double time, int size, int[] id, double[] x, double[] y, double[] speed, double[] sight_range,
+                   double[] energy, double[] age, byte[] state, boolean[] pregnant, short[] species,
+                   String[] codes, Diet[] diets) {
+        _epoch = epoch;
+        _time = time;
+        _size = size;
+        _id = id;
+        _x = x;
+        _y = y;
+        _speed = speed;
+        _sight_range = sight_range;
+        _energy = energy;
+        _age = age;
+        _state = state;
+        _pregnant = pregnant;
+        _species = species;
+        _codes = codes;
+        _diets = diets;
+    }
+
+    /**
+     * Copies the given animals.
+     *
+     * @param animals The animals, in the order of the simulator
+     * @param epoch   The epoch of the simulator
+     * @param time    The time of the simulator
+     * @return The snapshot
+     */
+    static AnimalSnapshot of(List<Animal> animals, long epoch, double time) {
+        int n = animals.size();
+        int[] id = new int[n];
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] speed = new double[n];
+        double[] sight_range = new double[n];
+        double[] energy = new double[n];
+        double[] age = new double[n];
+        byte[] state = new byte[n];
+        boolean[] pregnant = new boolean[n];
+        short[] species = new short[n];
+        List<String> codes = new ArrayList<>();
+        List<Diet> diets = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Animal a = animals.get(i);
+            MutableVector2D pos = a._pos;
+            id[i] = a._id;
+            x[i] = pos.getX();
+            y[i] = pos.getY();
+            speed[i] = a._speed;
+            sight_range[i] = a._sight_range;
+            energy[i] = a._energy;
+            age[i] = a._age;
+            state[i] = (byte) a._state.ordinal();
+            pregnant[i] = a._baby != null;
+            species[i] = (short) species_of(codes, diets, a._genetic_code, a._diet);
+        }
+        return new AnimalSnapshot(epoch, time, n, id, x, y, speed, sight_range, energy, age, state, pregnant, species,
+                codes.toArray(new String[0]), diets.toArray(new Diet[0]));
+    }
+
+    // position of the code in the codes seen, adding it with its diet if it is new
+    private static int species_of(List<String> codes, List<Diet> diets, String code, Diet diet) {
+        // few species: a linear search, by reference first
+        for (int s = 0; s < codes.size(); s++) {
+            if (codes.get(s) == code) {
+                return s;
+            }
+        }
+        int s = codes.indexOf(code);
+        if (s < 0) {
+            s = codes.size();
+            codes.add(code);
+            diets.add(diet);
+        }
+        return s;
+    }
+
+    /**
+     * Returns the position of the first animal whose id is at least the given one, or the size
+     * if there is none. The ids must grow in the order of the animals, as in the simulator.
+     *
+     * @param id The id
+     * @return The position
+     */
+    int index_of_id_from(int id) {
+        int lo = 0;
+        int hi = _size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_id[mid] < id) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the epoch of the simulator the snapshot was taken at. Two snapshots of the same
+     * simulator with the same epoch hold the same animals.
+     *
+     * @return The epoch
+     */
+    public long get_epoch() {
+        return _epoch;
+    }
+
+    public double get_time() {
+        return _time;
+    }
+
+    /**
+     * Counts the animals of every species, without building the elements.
+     *
+     * @return The number of animals by genetic code, in order of first appearance in the list
+     */
+    public Map<String, Integer> count_by_species() {
+        int[] counts = new int[_codes.length];
+        int[] order = new int[_codes.length];
+        int seen = 0;
+        for (int i = 0; i < _size; i++) {
+            if (counts[_species[i]]++ == 0) {
+                order[seen++] = _species[i];
+            }
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int k = 0; k < seen; k++) {
+            result.put(_codes[order[k]], counts[order[k]]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids of the animals as a read-only buffer over the snapshot, for bulk copies
+     * without building the elements.
+     *
+     * @return The ids, one per animal in list order
+     */
+    public IntBuffer id_column() {
+        return IntBuffer.wrap(_id, 0, _size).asReadOnlyBuffer();
+    }
+
+    public DoubleBuffer x_column() {
+        return DoubleBuffer.wrap(_x, 0, _size).asReadOnlyBuffer();
+    }
+
+    public DoubleBuffer y_column() {
+        return DoubleBuffer.wrap(_y, 0, _size).asReadOnlyBuffer();
+    }
+
+    public DoubleBuffer energy_column() {
+        return DoubleBuffer.wrap(_energy, 0, _size).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the states of the animals as a read-only buffer of their ordinals in
+     * {@link Animal.State}.
+     *
+     * @return The states, one per animal in list order
+     */
+    public ByteBuffer state_column() {
+        return ByteBuffer.wrap(_state, 0, _size).asReadOnlyBuffer();
+    }
+
+    @Override
+    public AnimalInfo get(int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new Entry(index);
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Flyweight exposing one animal of the snapshot as an AnimalInfo.
+     */
+    private final class Entry implements AnimalInfo {
+        private final int _i;
+
+        Entry(int i) {
+            _i = i;
+        }
+
+        @Override
+        public int get_id() {
+            return _id[_i];
+        }
+
+        @Override
+        public Animal.State get_state() {
+            return STATES[_state[_i]];
+        }
+
+        @Override
+        public Vector2D get_position() {
+            return new Vector2D(_x[_i], _y[_i]);
+        }
+
+        @Override
+        public String get_genetic_code() {
+            return _codes[_species[_i]];
+        }
+
+        @Override
+        public Diet get_diet() {
+            return _diets[_species[_i]];
+        }
+
+        @Override
+        public double get_speed() {
+            return _speed[_i];
+        }
+
+        @Override
+        public double get_sight_range() {
+            return _sight_range[_i];
+        }
+
+        @Override
+        public double get_energy() {
+            return _energy[_i];
+        }
+
+        @Override
+        public double get_age() {
+            return _age[_i];
+        }
+
+        @Override
+        public boolean is_pregnant() {
+            return _pregnant[_i];
+        }
+
+        @Override
+        public JSONObject as_JSON() {
+            JSONObject json = new JSONObject();
+            json.put("pos", get_position().toString());
+            json.put("gcode", get_genetic_code());
+            json.put("diet", get_diet().toString());
+            json.put("state", get_diet().toString());
+            return json;
+        }
+    }
+}
@@ -0,0 +1,1032 @@
+package simulator.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import simulator.misc.Utils;
+import simulator.misc.Vector2D;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Population store that keeps the state of every animal in parallel primitive arrays indexed by
+ * the animal id, instead of one Animal object per animal. The behaviour of each species runs as a
+ * {@link SpeciesKernel} over these arrays, and the observers get immutable {@link AnimalSnapshot}s
+ * copied from them.
+ */
+public final class AnimalStore {
+    static final byte SELECT_FIRST = 0;
+    static final byte SELECT_CLOSEST = 1;
+    static final byte SELECT_YOUNGEST = 2;
+
+    static final byte NORMAL = (byte) Animal.State.NORMAL.ordinal();
+    static final byte MATE = (byte) Animal.State.MATE.ordinal();
+    static final byte HUNGER = (byte) Animal.State.HUNGER.ordinal();
+    static final byte DANGER = (byte) Animal.State.DANGER.ordinal();
+    static final byte DEAD = (byte) Animal.State.DEAD.ordinal();
+
+    // target of an animal that left the store, told apart from no target (-1) like a handle
+    // of a recycled animal in the simulator
+    static final int GONE = -2;
+
+    static final int SEARCH_MATE = 0;
+    static final int SEARCH_CARNIVORE = 1;
+    static final int SEARCH_HERBIVORE = 2;
+
+    private static final Animal.State[] STATES = Animal.State.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final List<SpeciesKernel> _kernels;
+    private final RandomGenerator _rand;
+    private final Parameters _params;
+    private RegionManager _map;
+    private int _size;
+    private int _next_id;
+    // population counters, the number of every kernel in them (-1 until counted) and the
+    // state every animal is counted in
+    private final PopulationCounters _counters;
+    private final int[] _counted_species;
+    byte[] _counted_state;
+
+    int[] _id;
+    double[] _x;
+    double[] _y;
+    double[] _dest_x;
+    double[] _dest_y;
+    double[] _energy;
+    double[] _desire;
+    double[] _age;
+    double[] _speed;
+    double[] _sight_range;
+    byte[] _state;
+    byte[] _species;
+    byte[] _mate_strategy;
+    byte[] _aux_strategy;
+    int[] _mate_target;
+    int[] _aux_target;
+    private NormalBatch _batch;
+
+    // animals of every region cell, in the order of the animal lists of the regions, and
+    // herbivores of every region cell, for the food
+    private IndexBuckets _regions;
+    private int[] _region_herbivores;
+
+    // neighbour index with the layout and the order of SpatialIndex, so that the searches visit
+    // the candidates in the same order: a grid whose cell size grows with the largest sight
+    // range inserted and, in every cell, two buckets per species numbered in order of first
+    // insertion, for the animals in the MATE state when last indexed and for the others
+    private NeighbourGrid _grid;
+    private double _max_sight_range;
+    private final byte[] _index_species;
+    private final List<SpeciesKernel> _index_kernels;
+    private int _stride;
+    private IndexBuckets _buckets;
+
+    /**
+     * Creates an empty store with the sheep and wolf kernels.
+     *
+     * @param rand   The random stream used by the kernels
+     * @param params The parameters of the simulation
+     */
+    public AnimalStore(RandomGenerator rand, Parameters params) {
+        _kernels = new ArrayList<>();
+        _kernels.add(new SheepKernel(params));
+        _kernels.add(new WolfKernel(params));
+        _rand = rand;
+        _params = params;
+        _counters = new PopulationCounters();
+        _counted_species = new int[_kernels.size()];
+        Arrays.fill(_counted_species, -1);
+        _index_species = new byte[_kernels.size()];
+        _index_kernels = new ArrayList<>();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        _id = new int[capacity];
+        _x = new double[capacity];
+        _y = new double[capacity];
+        _dest_x = new double[capacity];
+        _dest_y = new double[capacity];
+        _energy = new double[capacity];
+        _desire = new double[capacity];
+        _age = new double[capacity];
+        _speed = new double[capacity];
+        _sight_range = new double[capacity];
+        _state = new byte[capacity];
+        _counted_state = new byte[capacity];
+        _species = new byte[capacity];
+        _mate_strategy = new byte[capacity];
+        _aux_strategy = new byte[capacity];
+        _mate_target = new int[capacity];
+        _aux_target = new int[capacity];
+    }
+
+    private void ensure_capacity(int capacity) {
+        if (capacity <= _x.length) {
+            return;
+        }
+        int n = Math.max(capacity, _x.length * 2);
+        _id = Arrays.copyOf(_id, n);
+        _x = Arrays.copyOf(_x, n);
+        _y = Arrays.copyOf(_y, n);
+        _dest_x = Arrays.copyOf(_dest_x, n);
+        _dest_y = Arrays.copyOf(_dest_y, n);
+        _energy = Arrays.copyOf(_energy, n);
+        _desire = Arrays.copyOf(_desire, n);
+        _age = Arrays.copyOf(_age, n);
+        _speed = Arrays.copyOf(_speed, n);
+        _sight_range = Arrays.copyOf(_sight_range, n);
+        _state = Arrays.copyOf(_state, n);
+        _counted_state = Arrays.copyOf(_counted_state, n);
+        _species = Arrays.copyOf(_species, n);
+        _mate_strategy = Arrays.copyOf(_mate_strategy, n);
+        _aux_strategy = Arrays.copyOf(_aux_strategy, n);
+        _mate_target = Arrays.copyOf(_mate_target, n);
+        _aux_target = Arrays.copyOf(_aux_target, n);
+        if (_grid != null) {
+            _regions.ensure_capacity(n);
+            _buckets.ensure_capacity(n);
+        }
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    int next_id() {
+        return _next_id;
+    }
+
+    /**
+     * Removes every animal from the store.
+     */
+    public void clear() {
+        _size = 0;
+        _next_id = 0;
+        _counters.clear();
+        _grid = null;
+    }
+
+    /**
+     * Copies an animal into the store. The animal is placed on the map first, as
+     * RegionManager.register_animal would do, and is not used afterwards. The copy is added to
+     * its region and to the neighbour index.
+     *
+     * @param a   The animal to copy
+     * @param map The map the animal lives in
+     * @return The index of the animal in the store
+     * @throws IllegalArgumentException If no kernel handles the species of the animal
+     */
+    public int add(Animal a, RegionManager map) {
+        byte species = species_of(a.get_genetic_code());
+        SpeciesKernel kernel = _kernels.get(species);
+        a.init(map);
+        _map = map;
+
+        int i = _size;
+        ensure_capacity(i + 1);
+        _id[i] = _next_id++;
+        _x[i] = a._pos.getX();
+        _y[i] = a._pos.getY();
+        _dest_x[i] = a._dest.getX();
+        _dest_y[i] = a._dest.getY();
+        _energy[i] = a._energy;
+        _desire[i] = a._desire;
+        _age[i] = a._age;
+        _speed[i] = a._speed;
+        _sight_range[i] = a._sight_range;
+        _state[i] = (byte) a._state.ordinal();
+        _species[i] = species;
+        _mate_strategy[i] = strategy_code(a.get_mate_strategy());
+        _aux_strategy[i] = strategy_code(kernel.get_aux_strategy(a));
+        _mate_target[i] = -1;
+        _aux_target[i] = -1;
+        _size++;
+        count(i);
+        insert(i);
+        return i;
+    }
+
+    private void init_index() {
+        int regions = _map.get_rows() * _map.get_cols();
+        _regions = new IndexBuckets(regions, _x.length);
+        _region_herbivores = new int[regions];
+        _grid = new NeighbourGrid(_map.get_width(), _map.get_height());
+        _max_sight_range = 0;
+        Arrays.fill(_index_species, (byte) -1);
+        _index_kernels.clear();
+        _stride = 0;
+        _buckets = new IndexBuckets(0, _x.length);
+    }
+
+    private int bucket_of(int i) {
+        int mate = _state[i] == MATE ? 1 : 0;
+        return _grid.cell_of(_x[i], _y[i]) * _stride + _index_species[_species[i]] * SpatialIndex.BUCKETS_PER_SPECIES + mate;
+    }
+
+    /**
+     * Adds an animal to its region and to the neighbour index, as RegionManager.register_animal
+     * does, growing the grid like {@link SpatialIndex#insert}.
+     *
+     * @param i The index of the animal
+     */
+    private void insert(int i) {
+        if (_grid == null) {
+            init_index();
+        }
+        int r = region_of(_x[i], _y[i]);
+        _regions.put(i, r);
+        if (diet(i) == Diet.HERBIVORE) {
+            _region_herbivores[r]++;
+        }
+
+        boolean rebuild = false;
+        int k = _species[i];
+        if (_index_species[k] < 0) {
+            _index_species[k] = (byte) _index_kernels.size();
+            _index_kernels.add(_kernels.get(k));
+            rebuild = true;
+        }
+        double s = _sight_range[i];
+        if (s > _max_sight_range) {
+            _max_sight_range = s;
+            if (s > _grid.get_cell_size() || _grid.cells() == 1) {
+                _grid.set_cell_size(s * SpatialIndex.GROWTH);
+                rebuild = true;
+            }
+        }
+        if (rebuild) {
+            rebuild_index();
+        }
+        _buckets.put(i, bucket_of(i));
+    }
+
+    /**
+     * Lays out the buckets for the current grid and species and reinserts the animals,
+     * visiting the old buckets in order.
+     */
+    private void rebuild_index() {
+        IndexBuckets old = _buckets;
+        _stride = _index_kernels.size() * SpatialIndex.BUCKETS_PER_SPECIES;
+        _buckets = new IndexBuckets(_grid.cells() * _stride, _x.length);
+        for (int b = 0; b < old.buckets(); b++) {
+            int[] items = old.items(b);
+            for (int k = 0, n = old.size(b); k < n; k++) {
+                _buckets.put(items[k], bucket_of(items[k]));
+            }
+        }
+    }
+
+    private void count(int i) {
+        int k = _species[i];
+        if (_counted_species[k] < 0) {
+            _counted_species[k] = _counters.species_of(_kernels.get(k).get_genetic_code(), _kernels.get(k).get_diet());
+        }
+        _counted_state[i] = _state[i];
+        _counters.add(_counted_species[k], _state[i]);
+    }
+
+    /**
+     * Moves an animal to the counter of its current state. Called after its update, and by
+     * the kernels for the animals they change the state of.
+     *
+     * @param i The index of the animal
+     */
+    void recount(int i) {
+        if (_state[i] != _counted_state[i]) {
+            _counters.move(_counted_species[_species[i]], _counted_state[i], _state[i]);
+            _counted_state[i] = _state[i];
+        }
+    }
+
+    PopulationCounters get_counters() {
+        return _counters;
+    }
+
+    /**
+     * Counts the animals of a diet in every region cell, from their positions.
+     *
+     * @param map  The map the animals live in
+     * @param diet The diet
+     * @return The number of animals of the diet in every region cell, row by row
+     */
+    int[] count_by_region(RegionManager map, Diet diet) {
+        _map = map;
+        int[] counts = new int[map.get_rows() * map.get_cols()];
+        for (int i = 0; i < _size; i++) {
+            if (diet(i) == diet) {
+                counts[region_of(_x[i], _y[i])]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Writes every animal of the store to a checkpoint, one array after the other.
+     *
+     * @param out The checkpoint
+     * @throws IOException If the checkpoint cannot be written
+     */
+    void write_state(CheckpointWriter out) throws IOException {
+        int n = _size;
+        out.put_int(n);
+        out.put_int(_next_id);
+        out.put_ints(_id, n);
+        for (double[] values : new double[][]{_x, _y, _dest_x, _dest_y, _energy, _desire, _age, _speed, _sight_range}) {
+            out.put_doubles(values, n);
+        }
+        for (byte[] values : new byte[][]{_state, _species, _mate_strategy, _aux_strategy}) {
+            out.put_bytes(values, n);
+        }
+        out.put_ints(_mate_target, n);
+        out.put_ints(_aux_target, n);
+
+        out.put_byte(_grid == null ? 0 : 1);
+        if (_grid != null) {
+            out.put_double(_grid.get_cell_size());
+            out.put_double(_max_sight_range);
+            out.put_int(_index_kernels.size());
+            for (SpeciesKernel kernel : _index_kernels) {
+                out.put_byte(_kernels.indexOf(kernel));
+            }
+            _buckets.write_state(out);
+            _regions.write_state(out);
+        }
+    }
+
+    /**
+     * Replaces the animals of the store with the ones written by {@link #write_state}, with the
+     * order of their regions and of the neighbour index.
+     *
+     * @param in  The checkpoint
+     * @param map The map the animals live in
+     * @throws IOException If the checkpoint is not valid
+     */
+    void read_state(CheckpointReader in, RegionManager map) throws IOException {
+        int n = in.get_count();
+        ensure_capacity(n);
+        _next_id = in.get_int();
+        in.get_ints(_id, n);
+        for (double[] values : new double[][]{_x, _y, _dest_x, _dest_y, _energy, _desire, _age, _speed, _sight_range}) {
+            in.get_doubles(values, n);
+        }
+        for (byte[] values : new byte[][]{_state, _species, _mate_strategy, _aux_strategy}) {
+            in.get_bytes(values, n);
+        }
+        in.get_ints(_mate_target, n);
+        in.get_ints(_aux_target, n);
+        _counters.clear();
+        for (int i = 0; i < n; i++) {
+            if (_id[i] < 0 || _id[i] >= _next_id || _species[i] < 0 || _species[i] >= _kernels.size() || _state[i] < 0 || _state[i] >= STATES.length
+                    || _mate_target[i] >= n || _aux_target[i] >= n) {
+                throw new IOException("Invalid checkpoint: bad animal " + i + " in the population store");
+            }
+            count(i);
+        }
+        _size = n;
+
+        _map = map;
+        _grid = null;
+        if (in.get_byte() != 0) {
+            init_index();
+            _grid.set_cell_size(in.get_double());
+            _max_sight_range = in.get_double();
+            int species = in.get_count();
+            if (species > _kernels.size()) {
+                throw new IOException("Invalid checkpoint: too many species in the population store");
+            }
+            for (int s = 0; s < species; s++) {
+                int k = in.get_byte();
+                if (k < 0 || k >= _kernels.size() || _index_species[k] >= 0) {
+                    throw new IOException("Invalid checkpoint: bad species " + k + " in the population store");
+                }
+                _index_species[k] = (byte) s;
+                _index_kernels.add(_kernels.get(k));
+            }
+            _stride = species * SpatialIndex.BUCKETS_PER_SPECIES;
+            _buckets = new IndexBuckets(_grid.cells() * _stride, _x.length);
+            _buckets.read_state(in, n);
+            _regions.read_state(in, n);
+            for (int i = 0; i < n; i++) {
+                if (_index_species[_species[i]] < 0) {
+                    throw new IOException("Invalid checkpoint: animal " + i + " is not in the neighbour index of the population store");
+                }
+                if (diet(i) == Diet.HERBIVORE) {
+                    _region_herbivores[_regions.bucket_of(i)]++;
+                }
+            }
+        } else if (n > 0) {
+            throw new IOException("Invalid checkpoint: the population store has no neighbour index");
+        }
+    }
+
+    private byte species_of(String genetic_code) {
+        for (int k = 0; k < _kernels.size(); k++) {
+            if (_kernels.get(k).get_genetic_code().equals(genetic_code)) {
+                return (byte) k;
+            }
+        }
+        throw new IllegalArgumentException("No kernel for the species " + genetic_code);
+    }
+
+    static byte strategy_code(SelectionStrategy s) {
+        if (s instanceof SelectClosest) {
+            return SELECT_CLOSEST;
+        } else if (s instanceof SelectYoungest) {
+            return SELECT_YOUNGEST;
+        }
+        return SELECT_FIRST;
+    }
+
+    /**
+     * Removes the dead animals, keeping the order of the others, and renumbers the targets; the
+     * targets that were removed become {@link #GONE}. The
+     * dead animals leave their regions and the neighbour index in order, as
+     * RegionManager.unregister_animals does.
+     */
+    public void sweep_dead() {
+        int[] remap = new int[_size];
+        int alive = 0;
+        for (int i = 0; i < _size; i++) {
+            if (_state[i] == DEAD) {
+                _counters.remove(_counted_species[_species[i]], _counted_state[i]);
+                int r = _regions.bucket_of(i);
+                if (diet(i) == Diet.HERBIVORE) {
+                    _region_herbivores[r]--;
+                }
+                _regions.remove(i);
+                _buckets.remove(i);
+                remap[i] = GONE;
+            } else {
+                remap[i] = alive;
+                move_slot(i, alive++);
+            }
+        }
+        if (alive == _size) {
+            return;
+        }
+        _regions.renumber(remap, _size);
+        _buckets.renumber(remap, _size);
+        _size = alive;
+        for (int i = 0; i < _size; i++) {
+            _mate_target[i] = _mate_target[i] < 0 ? _mate_target[i] : remap[_mate_target[i]];
+            _aux_target[i] = _aux_target[i] < 0 ? _aux_target[i] : remap[_aux_target[i]];
+        }
+    }
+
+    private void move_slot(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        _id[to] = _id[from];
+        _x[to] = _x[from];
+        _y[to] = _y[from];
+        _dest_x[to] = _dest_x[from];
+        _dest_y[to] = _dest_y[from];
+        _energy[to] = _energy[from];
+        _desire[to] = _desire[from];
+        _age[to] = _age[from];
+        _speed[to] = _speed[from];
+        _sight_range[to] = _sight_range[from];
+        _state[to] = _state[from];
+        _counted_state[to] = _counted_state[from];
+        _species[to] = _species[from];
+        _mate_strategy[to] = _mate_strategy[from];
+        _aux_strategy[to] = _aux_strategy[from];
+        _mate_target[to] = _mate_target[from];
+        _aux_target[to] = _aux_target[from];
+    }
+
+    /**
+     * Updates every animal that is alive at the start of the step. Babies born during the
+     * step are appended to the arrays, added to their regions and to the neighbour index at the
+     * end of the step, and updated from the next step on. After its update an animal moves to
+     * the region cell and the bucket of its new position and state, like
+     * {@link RegionManager#update_animal_region}, so the food and the searches of the next
+     * animals see the step so far.
+     *
+     * @param dt  The time interval for the update
+     * @param map The map the animals live in
+     */
+    public void advance(double dt, RegionManager map) {
+        _map = map;
+        NormalBatch batch = _batch;
+        if (batch != null) {
+            batch.run(this, dt);
+        }
+        int n = _size;
+        for (int i = 0; i < n; i++) {
+            if (_state[i] != DEAD) {
+                _kernels.get(_species[i]).update(this, i, dt);
+                recount(i);
+                relocate(i);
+            }
+        }
+        if (batch != null && !batch.finish()) {
+            _batch = null;
+        }
+        for (int i = n; i < _size; i++) {
+            place_baby(i);
+        }
+    }
+
+    /**
+     * Selects how the motion, age, energy and desire of the animals in the NORMAL state are
+     * computed. With the batch kernel enabled they are computed for all of them at the start of
+     * every step by a {@link NormalBatch}, and every animal takes its result at its turn, with
+     * the same outcome as the per-animal update. The batch kernel is dropped if one of its checks
+     * against the per-animal update fails.
+     *
+     * @param enabled Whether the batch kernel is used
+     */
+    public void set_batch_kernel(boolean enabled) {
+        _batch = enabled ? new NormalBatch(_params) : null;
+    }
+
+    public boolean is_batch_kernel() {
+        return _batch != null;
+    }
+
+    private int region_of(double x, double y) {
+        int row = (int) Utils.constrain_value_in_range(y / _map.get_region_height(), 0, _map.get_rows() - 1);
+        int col = (int) Utils.constrain_value_in_range(x / _map.get_region_width(), 0, _map.get_cols() - 1);
+        return row * _map.get_cols() + col;
+    }
+
+    private void relocate(int i) {
+        int r = region_of(_x[i], _y[i]);
+        int old = _regions.bucket_of(i);
+        if (r != old) {
+            if (diet(i) == Diet.HERBIVORE) {
+                _region_herbivores[old]--;
+                _region_herbivores[r]++;
+            }
+            _regions.move(i, r);
+        }
+        _buckets.move(i, bucket_of(i));
+    }
+
+    SpeciesKernel kernel(int i) {
+        return _kernels.get(_species[i]);
+    }
+
+    Diet diet(int i) {
+        return _kernels.get(_species[i]).get_diet();
+    }
+
+    RandomGenerator random() {
+        return _rand;
+    }
+
+    Animal.State state(int i) {
+        return STATES[_state[i]];
+    }
+
+    void set_state(int i, Animal.State state) {
+        _state[i] = (byte) state.ordinal();
+    }
+
+    double distance2(int i, int j) {
+        double dx = _x[i] - _x[j];
+        double dy = _y[i] - _y[j];
+        return dx * dx + dy * dy;
+    }
+
+    double distance2_to_dest(int i) {
+        double dx = _x[i] - _dest_x[i];
+        double dy = _y[i] - _dest_y[i];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Moves the animal towards its destination.
+     *
+     * @param i     The index of the animal
+     * @param speed The distance to move
+     */
+    void move(int i, double speed) {
+        double dx = _dest_x[i] - _x[i];
+        double dy = _dest_y[i] - _y[i];
+        double m = Math.sqrt(dx * dx + dy * dy);
+        if (m > 0.0) {
+            double inv = 1.0 / m;
+            _x[i] += dx * inv * speed;
+            _y[i] += dy * inv * speed;
+        }
+    }
+
+    /**
+     * Picks a new random destination if the animal is close to the current one.
+     */
+    void refresh_dest(int i) {
+        if (distance2_to_dest(i) < _params.distanceDest * _params.distanceDest) {
+            random_dest(i);
+        }
+    }
+
+    /**
+     * Moves the animal towards its destination with the speed factor of its energy and updates
+     * its age, energy and desire, as in the NORMAL state.
+     *
+     * @param i           The index of the animal
+     * @param dt          The time interval for the update
+     * @param energy_rate The energy lost per time unit
+     * @param desire_rate The desire gained per time unit
+     */
+    void normal_motion(int i, double dt, double energy_rate, double desire_rate) {
+        move(i, _speed[i] * dt * SpeciesRules.normal_pace(_params, _energy[i]));
+        _age[i] += dt;
+        _energy[i] -= dt * energy_rate;
+        check_energy(i);
+        _desire[i] += desire_rate * dt;
+        check_desire(i);
+    }
+
+    /**
+     * Refreshes the destination of the animal and does its NORMAL motion, taking the result of
+     * the batch kernel when it has a valid one for it.
+     *
+     * @param i           The index of the animal
+     * @param dt          The time interval for the update
+     * @param energy_rate The energy lost per time unit
+     * @param desire_rate The desire gained per time unit
+     */
+    void normal_update(int i, double dt, double energy_rate, double desire_rate) {
+        NormalBatch batch = _batch;
+        if (batch != null && batch.apply(this, i)) {
+            return;
+        }
+        refresh_dest(i);
+        normal_motion(i, dt, energy_rate, desire_rate);
+        if (batch != null) {
+            batch.verify(this, i);
+        }
+    }
+
+    void random_dest(int i) {
+        _dest_x[i] = _rand.nextDouble() * _map.get_width();
+        _dest_y[i] = _rand.nextDouble() * _map.get_height();
+    }
+
+    void dest_to(int i, int j) {
+        _dest_x[i] = _x[j];
+        _dest_y[i] = _y[j];
+    }
+
+    /**
+     * Sets the destination of the animal one unit away from the given one.
+     */
+    void dest_away_from(int i, int j) {
+        double dx = _x[j] - _x[i];
+        double dy = _y[j] - _y[i];
+        double m = Math.sqrt(dx * dx + dy * dy);
+        _dest_x[i] = _x[i];
+        _dest_y[i] = _y[i];
+        if (m > 0.0) {
+            double inv = 1.0 / m;
+            _dest_x[i] -= dx * inv;
+            _dest_y[i] -= dy * inv;
+        }
+    }
+
+    void check_energy(int i) {
+        if (_energy[i] > _params._maxenergy) {
+            _energy[i] = _params._maxenergy;
+        } else if (_energy[i] < _params._lowestenergy) {
+            _energy[i] = _params._lowestenergy;
+        }
+    }
+
+    void check_desire(int i) {
+        if (_desire[i] > _params._maxdesire) {
+            _desire[i] = _params._maxdesire;
+        } else if (_desire[i] < _params._lowestdesire) {
+            _desire[i] = _params._lowestdesire;
+        }
+    }
+
+    /**
+     * Wraps the animal back into the map if it left it.
+     *
+     * @return true if the animal was out of the map
+     */
+    boolean adjust_if_out(int i) {
+        double width = _map.get_width();
+        double height = _map.get_height();
+        if (_x[i] >= 0 && _x[i] <= width && _y[i] >= 0 && _y[i] <= height) {
+            return false;
+        }
+        _x[i] = wrap(_x[i], width);
+        _y[i] = wrap(_y[i], height);
+        return true;
+    }
+
+    private static double wrap(double v, double size) {
+        while (v >= size)
+            v = v - size;
+        while (v < 0)
+            v = v + size;
+        return v;
+    }
+
+    /**
+     * Gets the food of the region the animal was in before its update.
+     */
+    double food(int i, double dt) {
+        int r = _regions.bucket_of(i);
+        int cols = _map.get_cols();
+        return _map.region_at(r / cols, r % cols).food_for(diet(i), _region_herbivores[r], dt);
+    }
+
+    /**
+     * Searches the neighbour cells covered by the sight range of an animal and selects one of the
+     * animals matching the search kind inside the disk of the sight range, without
+     * building any candidate list. Only the buckets of the species that can match, and for
+     * mates only the MATE buckets, are visited, in the order of {@link SpatialIndex#select}.
+     *
+     * @param i        The index of the searching animal
+     * @param kind     SEARCH_MATE, SEARCH_CARNIVORE or SEARCH_HERBIVORE
+     * @param strategy SELECT_FIRST, SELECT_CLOSEST or SELECT_YOUNGEST
+     * @return The index of the selected animal, or -1 if there is none
+     */
+    int search(int i, int kind, byte strategy) {
+        double r = _sight_range[i];
+        double r2 = r * r;
+        double x = _x[i];
+        double y = _y[i];
+        int col_mn = _grid.col_of(x - r);
+        int col_mx = _grid.col_of(x + r);
+        int row_mn = _grid.row_of(y - r);
+        int row_mx = _grid.row_of(y + r);
+        int cols = _grid.get_cols();
+        int species_count = _index_kernels.size();
+
+        int best = -1;
+        double best_key = 0;
+        for (int row = row_mn; row <= row_mx; row++) {
+            for (int col = col_mn; col <= col_mx; col++) {
+                int first = (row * cols + col) * _stride;
+                for (int s = 0; s < species_count; s++) {
+                    if (!searched(i, s, kind)) {
+                        continue;
+                    }
+                    for (int m = kind == SEARCH_MATE ? 1 : 0; m < SpatialIndex.BUCKETS_PER_SPECIES; m++) {
+                        int bucket = first + s * SpatialIndex.BUCKETS_PER_SPECIES + m;
+                        int[] items = _buckets.items(bucket);
+                        for (int k = 0, n = _buckets.size(bucket); k < n; k++) {
+                            int j = items[k];
+                            double dx = _x[j] - x;
+                            double dy = _y[j] - y;
+                            double d2 = dx * dx + dy * dy;
+                            if (d2 > r2 || (kind == SEARCH_MATE && (j == i || _state[j] != MATE))) {
+                                continue;
+                            }
+                            if (strategy == SELECT_FIRST) {
+                                return j;
+                            }
+                            double key = strategy == SELECT_CLOSEST ? d2 : _age[j];
+                            if (best < 0 || key < best_key) {
+                                best = j;
+                                best_key = key;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // whether the species of the given number in the neighbour index can match the search
+    private boolean searched(int i, int species, int kind) {
+        SpeciesKernel kernel = _index_kernels.get(species);
+        return switch (kind) {
+            case SEARCH_MATE -> kernel == _kernels.get(_species[i]);
+            case SEARCH_CARNIVORE -> kernel.get_diet() == Diet.CARNIVORE;
+            default -> kernel.get_diet() == Diet.HERBIVORE;
+        };
+    }
+
+    /**
+     * Appends the baby of two animals, inheriting the species and the second strategy of the
+     * first parent and the mate strategy of the second one. It gets its destination at the end
+     * of the step.
+     *
+     * @param p1 The index of the first parent
+     * @param p2 The index of the second parent
+     */
+    void give_birth(int p1, int p2) {
+        int i = _size;
+        ensure_capacity(i + 1);
+        _id[i] = _next_id++;
+        Vector2D offset = Vector2D.get_random_vector(_rand, -1, 1).scale(_params._multiplicativeFactor * (_rand.nextGaussian() + 1));
+        _x[i] = _x[p1] + offset.getX();
+        _y[i] = _y[p1] + offset.getY();
+        _energy[i] = (_energy[p1] + _energy[p2]) / 2.0;
+        _speed[i] = Utils.get_randomized_parameter(_rand, (_speed[p1] + _speed[p2]) / 2, _params._tolerance);
+        _sight_range[i] = Utils.get_randomized_parameter(_rand, (_sight_range[p1] + _sight_range[p2]) / 2, _params._tolerance);
+        _age[i] = 0;
+        _desire[i] = _params._lowestdesire;
+        _state[i] = NORMAL;
+        _species[i] = _species[p1];
+        _mate_strategy[i] = _mate_strategy[p2];
+        _aux_strategy[i] = _aux_strategy[p1];
+        _mate_target[i] = -1;
+        _aux_target[i] = -1;
+        _size++;
+        count(i);
+        adjust_if_out(i);
+    }
+
+    /**
+     * Gives a baby its destination and adds it to its region and to the neighbour index, at
+     * the end of the step, as Animal.init and RegionManager.register_animal do for the babies
+     * of the simulator.
+     *
+     * @param i The index of the baby
+     */
+    private void place_baby(int i) {
+        _dest_x[i] = _rand.nextDouble() * (_map.get_width() - 1);
+        _dest_y[i] = _rand.nextDouble() * (_map.get_height() - 1);
+        insert(i);
+    }
+
+    /**
+     * Copies the animals of the store into an immutable snapshot, one array copy per field.
+     * No animal of the store is pregnant between steps, since its babies are born at once.
+     *
+     * @param epoch The epoch of the simulator
+     * @param time  The time of the simulator
+     * @return The snapshot
+     */
+    AnimalSnapshot snapshot(long epoch, double time) {
+        int n = _size;
+        short[] species = new short[n];
+        for (int i = 0; i < n; i++) {
+            species[i] = _species[i];
+        }
+        String[] codes = new String[_kernels.size()];
+        Diet[] diets = new Diet[_kernels.size()];
+        for (int k = 0; k < codes.length; k++) {
+            codes[k] = _kernels.get(k).get_genetic_code();
+            diets[k] = _kernels.get(k).get_diet();
+        }
+        return new AnimalSnapshot(epoch, time, n, Arrays.copyOf(_id, n), Arrays.copyOf(_x, n), Arrays.copyOf(_y, n), Arrays.copyOf(_speed, n),
+                Arrays.copyOf(_sight_range, n), Arrays.copyOf(_energy, n), Arrays.copyOf(_age, n),
+                Arrays.copyOf(_state, n), new boolean[n], species, codes, diets);
+    }
+
+    /**
+     * Generates the same JSON as RegionManager.as_JSON, grouping the animals by region cell.
+     *
+     * @param map The map the animals live in
+     * @return A JSON object with the regions and their animals
+     */
+    public JSONObject as_JSON(RegionManager map) {
+        _map = map;
+        int cols = map.get_cols();
+        int[] start = new int[map.get_rows() * cols + 1];
+        int[] order = order_by_region(map, start);
+        JSONArray[] cells = new JSONArray[map.get_rows() * cols];
+        for (int c = 0; c < cells.length; c++) {
+            cells[c] = new JSONArray();
+            for (int k = start[c]; k < start[c + 1]; k++) {
+                cells[c].put(animal_JSON(order[k]));
+            }
+        }
+        JSONArray regions = new JSONArray();
+        for (int i = 0; i < map.get_rows(); i++) {
+            for (int j = 0; j < cols; j++) {
+                JSONObject regionJson = new JSONObject();
+                regionJson.put("animals", cells[i * cols + j]);
+                regionJson.put("row", j);
+                regionJson.put("col", i);
+                regionJson.put("data", new JSONObject().put("animals", cells[i * cols + j]));
+                regions.put(regionJson);
+            }
+        }
+        JSONObject json = new JSONObject();
+        json.put("regions", regions);
+        return json;
+    }
+
+    // same fields as Animal.as_JSON
+    private JSONObject animal_JSON(int i) {
+        JSONObject json = new JSONObject();
+        json.put("pos", new Vector2D(_x[i], _y[i]).toString());
+        json.put("gcode", _kernels.get(_species[i]).get_genetic_code());
+        json.put("diet", diet(i).toString());
+        json.put("state", diet(i).toString());
+        return json;
+    }
+
+    /**
+     * Writes the same JSON as {@link #as_JSON(RegionManager)} to a stream, without building
+     * JSON arrays.
+     *
+     * @param out The stream
+     * @param map The map the animals live in
+     * @throws IOException If the stream cannot be written
+     */
+    void write_JSON(JSONStream out, RegionManager map) throws IOException {
+        int rows = map.get_rows();
+        int cols = map.get_cols();
+        int[] start = new int[rows * cols + 1];
+        int[] order = order_by_region(map, start);
+
+        out.begin_object(1).key("regions").begin_array(rows * cols);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                int c = i * cols + j;
+                out.begin_object(4);
+                out.key("col").value(i);
+                out.key("data").begin_object(1).key("animals");
+                write_animals_JSON(out, order, start[c], start[c + 1]);
+                out.end_object();
+                out.key("animals");
+                write_animals_JSON(out, order, start[c], start[c + 1]);
+                out.key("row").value(j);
+                out.end_object();
+            }
+        }
+        out.end_array().end_object();
+    }
+
+    /**
+     * Writes the animals in the compact schema of {@link CompactJSON}, grouped by region cell
+     * as {@link #write_JSON}.
+     *
+     * @param out The stream
+     * @param map The map the animals live in
+     * @throws IOException If the stream cannot be written
+     */
+    void write_compact_JSON(JSONStream out, RegionManager map) throws IOException {
+        int rows = map.get_rows();
+        int cols = map.get_cols();
+        int[] start = new int[rows * cols + 1];
+        int[] order = order_by_region(map, start);
+        CompactJSON compact = new CompactJSON();
+        // kernel of every species number, numbered in order of first appearance
+        int[] species = new int[_kernels.size()];
+        for (int k = 0; k < _size; k++) {
+            SpeciesKernel kernel = _kernels.get(_species[order[k]]);
+            species[_species[order[k]]] = compact.species_of(kernel.get_genetic_code(), kernel.get_diet());
+        }
+        int[] counts = new int[rows * cols];
+        for (int c = 0; c < counts.length; c++) {
+            counts[c] = start[c + 1] - start[c];
+        }
+        compact.begin(out, rows, cols, counts, _size);
+        for (int k = 0; k < _size; k++) {
+            int i = order[k];
+            compact.animal(out, _x[i], _y[i], species[_species[i]], _state[i]);
+        }
+        compact.end(out);
+    }
+
+    /**
+     * Lists the indexes of the animals region cell after region cell, in the order of the
+     * animal lists of the regions.
+     *
+     * @param map   The map the animals live in
+     * @param start Filled with the position in the result of the first animal of every cell,
+     *              and the number of animals at the end
+     * @return The indexes of the animals, cell after cell
+     */
+    private int[] order_by_region(RegionManager map, int[] start) {
+        _map = map;
+        int cells = start.length - 1;
+        int[] order = new int[_size];
+        int k = 0;
+        for (int c = 0; c < cells; c++) {
+            start[c] = k;
+            if (_regions != null) {
+                int[] items = _regions.items(c);
+                for (int s = 0, n = _regions.size(c); s < n; s++) {
+                    order[k++] = items[s];
+                }
+            }
+        }
+        start[cells] = k;
+        return order;
+    }
+
+    private void write_animals_JSON(JSONStream out, int[] order, int from, int to) throws IOException {
+        out.begin_array(to - from);
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            String diet = diet(i).toString();
+            out.begin_object(4);
+            out.key("pos").value("[" + _x[i] + "," + _y[i] + "]");
+            out.key("diet").value(diet);
+            out.key("state").value(diet);
+            out.key("gcode").value(_kernels.get(_species[i]).get_genetic_code());
+            out.end_object();
+        }
+        out.end_array();
+    }
+}
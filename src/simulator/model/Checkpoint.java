@@ -0,0 +1,205 @@
+package simulator.model;
+
+import simulator.misc.MutableVector2D;
+import simulator.misc.SplitMixRandom;
+
+import java.io.IOException;
+import java.util.random.RandomGenerator;
+
+/**
+ * Layout of the binary checkpoint of a {@link Simulator} and encoding of its animals and random
+ * streams. A checkpoint holds, in this order:
+ * <ul>
+ * <li>the magic number, the version, the time and the parameters of the simulation,</li>
+ * <li>the state of the random source and the update mode (in place, two-phase or store),</li>
+ * <li>the map: its size and every region with its food and stream,</li>
+ * <li>the animals: in the population store the next animal id, its arrays and the order of the
+ * animals in the regions and in its neighbour index; otherwise the
+ * next animal id, every animal with its id, attributes, strategies and stream, the targets as positions in the animal list, and the order
+ * of the animals in the regions and in the neighbour index.</li>
+ * </ul>
+ */
+final class Checkpoint {
+    static final int MAGIC = 0x45434f53;
+    static final int VERSION = 3;
+
+    static final int MODE_IN_PLACE = 0;
+    static final int MODE_TWO_PHASE = 1;
+    static final int MODE_STORE = 2;
+
+    private static final int STREAM_MAIN = 0;
+    private static final int STREAM_OWN = 1;
+
+    private static final int SHEEP = 0;
+    private static final int WOLF = 1;
+
+    private static final Animal.State[] STATES = Animal.State.values();
+    private static final SelectionStrategy[] STRATEGIES = {SelectFirst.INSTANCE, SelectClosest.INSTANCE, SelectYoungest.INSTANCE};
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Writes a random stream: a reference to the main stream of the simulation, or the state
+     * of a stream of its own.
+     *
+     * @throws IllegalArgumentException If the stream is not the main one nor a {@link SplitMixRandom}
+     */
+    static void write_random(CheckpointWriter out, RandomGenerator rand, RandomGenerator main) throws IOException {
+        if (rand == main) {
+            out.put_byte(STREAM_MAIN);
+        } else if (rand instanceof SplitMixRandom r) {
+            out.put_byte(STREAM_OWN);
+            out.put_long(r.getSeed());
+            out.put_long(r.getGamma());
+        } else {
+            throw new IllegalArgumentException("Random streams of type " + rand.getClass().getSimpleName() + " cannot be checkpointed");
+        }
+    }
+
+    static RandomGenerator read_random(CheckpointReader in, RandomGenerator main) throws IOException {
+        int kind = in.get_byte();
+        if (kind == STREAM_MAIN) {
+            return main;
+        } else if (kind == STREAM_OWN) {
+            long seed = in.get_long();
+            long gamma = in.get_long();
+            return new SplitMixRandom(seed, gamma);
+        }
+        throw new IOException("Invalid checkpoint: unknown stream kind " + kind);
+    }
+
+    /**
+     * Returns the animal at a position of the animal list read from a checkpoint.
+     *
+     * @throws IOException If the position is out of the list
+     */
+    static Animal animal_at(Animal[] animals, int id) throws IOException {
+        if (id < 0 || id >= animals.length) {
+            throw new IOException("Invalid checkpoint: animal " + id + " out of range");
+        }
+        return animals[id];
+    }
+
+    private static int strategy_code(SelectionStrategy s) {
+        if (s == null) {
+            return -1;
+        }
+        if (s.getClass() != SelectFirst.class && s.getClass() != SelectClosest.class && s.getClass() != SelectYoungest.class) {
+            throw new IllegalArgumentException("Strategies of type " + s.getClass().getSimpleName() + " cannot be checkpointed");
+        }
+        return AnimalStore.strategy_code(s);
+    }
+
+    private static SelectionStrategy strategy_of(int code) throws IOException {
+        if (code == -1) {
+            return null;
+        }
+        if (code < 0 || code >= STRATEGIES.length) {
+            throw new IOException("Invalid checkpoint: unknown strategy " + code);
+        }
+        return STRATEGIES[code];
+    }
+
+    /**
+     * Writes the attributes, strategies and stream of an animal. Its targets are written apart
+     * by {@link #write_targets}, once every animal has a position in the list.
+     *
+     * @throws IllegalArgumentException If the animal is not a sheep or a wolf
+     */
+    static void write_animal(CheckpointWriter out, Animal a, RandomGenerator main) throws IOException {
+        SelectionStrategy aux;
+        if (a.getClass() == Sheep.class) {
+            out.put_byte(SHEEP);
+            aux = ((Sheep) a).get_danger_strategy();
+        } else if (a.getClass() == Wolf.class) {
+            out.put_byte(WOLF);
+            aux = ((Wolf) a).get_hunting_strategy();
+        } else {
+            throw new IllegalArgumentException("Animals of type " + a.getClass().getSimpleName() + " cannot be checkpointed");
+        }
+        out.put_int(a._id);
+        out.put_byte(a._state.ordinal());
+        out.put_double(a._pos.getX());
+        out.put_double(a._pos.getY());
+        out.put_double(a._dest.getX());
+        out.put_double(a._dest.getY());
+        out.put_double(a._energy);
+        out.put_double(a._speed);
+        out.put_double(a._age);
+        out.put_double(a._desire);
+        out.put_double(a._sight_range);
+        out.put_double(a._init_speed);
+        out.put_byte(strategy_code(a._mate_strategy));
+        out.put_byte(strategy_code(aux));
+        write_random(out, a._rand, main);
+    }
+
+    /**
+     * Creates an animal from its record, with the given parameters and update mode. It is not
+     * registered in any map yet, and has no targets.
+     */
+    static Animal read_animal(CheckpointReader in, Parameters params, boolean two_phase, RandomGenerator main) throws IOException {
+        int type = in.get_byte();
+        int id = in.get_int();
+        int state = in.get_byte();
+        if (state < 0 || state >= STATES.length) {
+            throw new IOException("Invalid checkpoint: unknown animal state " + state);
+        }
+        MutableVector2D pos = new MutableVector2D(in.get_double(), in.get_double());
+        MutableVector2D dest = new MutableVector2D(in.get_double(), in.get_double());
+        double energy = in.get_double();
+        double speed = in.get_double();
+        double age = in.get_double();
+        double desire = in.get_double();
+        double sight_range = in.get_double();
+        double init_speed = in.get_double();
+        SelectionStrategy mate = strategy_of(in.get_byte());
+        SelectionStrategy aux = strategy_of(in.get_byte());
+        RandomGenerator rand = read_random(in, main);
+
+        Animal a = switch (type) {
+            case SHEEP -> new Sheep(mate, aux, null, rand);
+            case WOLF -> new Wolf(mate, aux, null, rand);
+            default -> throw new IOException("Invalid checkpoint: unknown animal type " + type);
+        };
+        a._id = id;
+        a._state = STATES[state];
+        a._pos = pos;
+        a._dest = dest;
+        a._energy = energy;
+        a._speed = speed;
+        a._age = age;
+        a._desire = desire;
+        a._sight_range = sight_range;
+        a._init_speed = init_speed;
+        a._params = params;
+        a.set_two_phase(two_phase, rand);
+        return a;
+    }
+
+    /**
+     * Writes the mate and second target of an animal as positions in the animal list, -1 for none.
+     *
+     * @param ids The position in the animal list of every pool slot
+     */
+    static void write_targets(CheckpointWriter out, Animal a, int[] ids) throws IOException {
+        out.put_int(id_of(a.get_mate_target(), ids));
+        out.put_int(id_of(a.resolve(a.get_aux_target()), ids));
+    }
+
+    private static int id_of(Animal target, int[] ids) {
+        return target == null ? -1 : ids[target._pool_slot];
+    }
+
+    /**
+     * Reads the targets of an animal written by {@link #write_targets}, once every animal of the
+     * list is in the pool.
+     */
+    static void read_targets(CheckpointReader in, Animal a, Animal[] animals) throws IOException {
+        int mate = in.get_int();
+        int aux = in.get_int();
+        a._mate_target = mate < 0 ? AnimalPool.NONE : AnimalPool.handle(animal_at(animals, mate));
+        a.set_aux_target(aux < 0 ? AnimalPool.NONE : AnimalPool.handle(animal_at(animals, aux)));
+    }
+}
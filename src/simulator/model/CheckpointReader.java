@@ -0,0 +1,103 @@
+package simulator.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a checkpoint written by {@link CheckpointWriter}, mapping the whole file in memory.
+ * Reading past the end of the file fails with an IOException.
+ */
+final class CheckpointReader {
+    private final MappedByteBuffer _buf;
+
+    CheckpointReader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Checkpoint too large: " + size + " bytes");
+            }
+            _buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private IOException truncated() {
+        return new IOException("Truncated checkpoint");
+    }
+
+    int get_byte() throws IOException {
+        try {
+            return _buf.get();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    int get_int() throws IOException {
+        try {
+            return _buf.getInt();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    long get_long() throws IOException {
+        try {
+            return _buf.getLong();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    double get_double() throws IOException {
+        try {
+            return _buf.getDouble();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    String get_string() throws IOException {
+        byte[] bytes = new byte[get_count()];
+        get_bytes(bytes, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a number of elements, checking that it is not negative.
+     */
+    int get_count() throws IOException {
+        int n = get_int();
+        if (n < 0) {
+            throw new IOException("Invalid checkpoint: negative count");
+        }
+        return n;
+    }
+
+    void get_bytes(byte[] values, int n) throws IOException {
+        if (_buf.remaining() < n) {
+            throw truncated();
+        }
+        _buf.get(values, 0, n);
+    }
+
+    void get_ints(int[] values, int n) throws IOException {
+        if (_buf.remaining() / Integer.BYTES < n) {
+            throw truncated();
+        }
+        _buf.asIntBuffer().get(values, 0, n);
+        _buf.position(_buf.position() + n * Integer.BYTES);
+    }
+
+    void get_doubles(double[] values, int n) throws IOException {
+        if (_buf.remaining() / Double.BYTES < n) {
+            throw truncated();
+        }
+        _buf.asDoubleBuffer().get(values, 0, n);
+        _buf.position(_buf.position() + n * Double.BYTES);
+    }
+}
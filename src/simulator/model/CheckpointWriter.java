@@ -0,0 +1,107 @@
+package simulator.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the binary checkpoint of a simulation to a file channel through a direct buffer.
+ * Values are big-endian; arrays are copied into the buffer in bulk.
+ */
+final class CheckpointWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel _channel;
+    private final ByteBuffer _buf;
+
+    CheckpointWriter(Path file) throws IOException {
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        _buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (_buf.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        _buf.flip();
+        while (_buf.hasRemaining()) {
+            _channel.write(_buf);
+        }
+        _buf.clear();
+    }
+
+    void put_byte(int v) throws IOException {
+        ensure(1);
+        _buf.put((byte) v);
+    }
+
+    void put_int(int v) throws IOException {
+        ensure(Integer.BYTES);
+        _buf.putInt(v);
+    }
+
+    void put_long(long v) throws IOException {
+        ensure(Long.BYTES);
+        _buf.putLong(v);
+    }
+
+    void put_double(double v) throws IOException {
+        ensure(Double.BYTES);
+        _buf.putDouble(v);
+    }
+
+    void put_string(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        put_int(bytes.length);
+        put_bytes(bytes, bytes.length);
+    }
+
+    void put_bytes(byte[] values, int n) throws IOException {
+        for (int i = 0; i < n; ) {
+            ensure(1);
+            int k = Math.min(n - i, _buf.remaining());
+            _buf.put(values, i, k);
+            i += k;
+        }
+    }
+
+    void put_ints(int[] values, int n) throws IOException {
+        for (int i = 0; i < n; ) {
+            ensure(Integer.BYTES);
+            int k = Math.min(n - i, _buf.remaining() / Integer.BYTES);
+            _buf.asIntBuffer().put(values, i, k);
+            _buf.position(_buf.position() + k * Integer.BYTES);
+            i += k;
+        }
+    }
+
+    void put_doubles(double[] values, int n) throws IOException {
+        for (int i = 0; i < n; ) {
+            ensure(Double.BYTES);
+            int k = Math.min(n - i, _buf.remaining() / Double.BYTES);
+            _buf.asDoubleBuffer().put(values, i, k);
+            _buf.position(_buf.position() + k * Double.BYTES);
+            i += k;
+        }
+    }
+
+    /**
+     * Writes what is left in the buffer and forces it to the storage device.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            _channel.force(false);
+        } finally {
+            _channel.close();
+        }
+    }
+}
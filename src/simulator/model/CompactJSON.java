@@ -0,0 +1,100 @@
+package simulator.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writer of the compact schema of the state of a simulation, where every animal appears once:
+ * <pre>
+ * {"rows": 2, "cols": 3,
+ *  "states": ["NORMAL", ...], "diets": ["CARNIVORE", "HERBIVORE"],
+ *  "species": [{"gcode": "Sheep", "diet": 1}, ...],
+ *  "regions": [4, 0, 2, 1, 0, 0],
+ *  "animals": [[x, y, species, state], ...]}
+ * </pre>
+ * "regions" holds the number of animals of every region, row by row, and "animals" the
+ * animals region after region in that order. The species is a position in "species", the
+ * state and the diet are positions in "states" and "diets", and the species are numbered in
+ * order of first appearance in "animals".
+ */
+final class CompactJSON {
+    private static final int KEYS = 7;
+
+    private final List<String> _codes = new ArrayList<>();
+    private final List<Diet> _diets = new ArrayList<>();
+
+    /**
+     * Returns the number of a species, numbering it if it is new.
+     *
+     * @param code The genetic code
+     * @param diet The diet of the species
+     * @return The position of the species in "species"
+     */
+    int species_of(String code, Diet diet) {
+        // few species: a linear search, by reference first
+        for (int s = 0; s < _codes.size(); s++) {
+            if (_codes.get(s) == code) {
+                return s;
+            }
+        }
+        int s = _codes.indexOf(code);
+        if (s < 0) {
+            s = _codes.size();
+            _codes.add(code);
+            _diets.add(diet);
+        }
+        return s;
+    }
+
+    /**
+     * Writes everything up to the opening of "animals". The species of all the animals must have
+     * been numbered with {@link #species_of} already.
+     *
+     * @param out    The stream
+     * @param rows   The rows of the map
+     * @param cols   The columns of the map
+     * @param counts The number of animals of every region, row by row
+     * @param total  The number of animals
+     * @throws IOException If the stream cannot be written
+     */
+    void begin(JSONStream out, int rows, int cols, int[] counts, int total) throws IOException {
+        out.begin_object(KEYS);
+        out.key("rows").value(rows);
+        out.key("cols").value(cols);
+        Animal.State[] states = Animal.State.values();
+        out.key("states").begin_array(states.length);
+        for (Animal.State s : states) {
+            out.value(s.name());
+        }
+        out.end_array();
+        Diet[] diets = Diet.values();
+        out.key("diets").begin_array(diets.length);
+        for (Diet d : diets) {
+            out.value(d.name());
+        }
+        out.end_array();
+        out.key("species").begin_array(_codes.size());
+        for (int s = 0; s < _codes.size(); s++) {
+            out.begin_object(2);
+            out.key("gcode").value(_codes.get(s));
+            out.key("diet").value(_diets.get(s).ordinal());
+            out.end_object();
+        }
+        out.end_array();
+        out.key("regions").begin_array(counts.length);
+        for (int n : counts) {
+            out.value(n);
+        }
+        out.end_array();
+        out.key("animals").begin_array(total);
+    }
+
+    void animal(JSONStream out, double x, double y, int species, int state) throws IOException {
+        out.begin_array(4).value(x).value(y).value(species).value(state).end_array();
+    }
+
+    void end(JSONStream out) throws IOException {
+        out.end_array().end_object();
+    }
+}
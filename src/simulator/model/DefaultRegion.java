@@ -4,16 +4,18 @@ public class DefaultRegion extends Region implements RegionInfo {
     /**
      * Calculates the amount of food available for an animal in the region.
      *
-     * @param a  The animal for which the food amount is calculated
-     * @param dt The time step
+     * @param diet       The diet of the animal
+     * @param herbivores The number of herbivores in the region
+     * @param dt         The time step
      * @return The amount of food available for the animal
      */
-    public double get_food(Animal a, double dt) {
-        int n = getHerbivorousSize();
-        if (a._diet == Diet.CARNIVORE) {
+    @Override
+    double food_for(Diet diet, int herbivores, double dt) {
+        int n = herbivores;
+        if (diet == Diet.CARNIVORE) {
             return 0.0;
         } else {
-            return _multiplicativeFactor * Math.exp(-Math.max(0, n - _substractionNumHerb) * _speedFactorSheep) * dt;
+            return _params._multiplicativeFactor * Math.exp(-Math.max(0, n - _params._substractionNumHerb) * _params._speedFactorSheep) * dt;
         }
     }
     @Override
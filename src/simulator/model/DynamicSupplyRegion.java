@@ -1,7 +1,5 @@
 package simulator.model;
 
-import simulator.misc.Utils;
-
 public class DynamicSupplyRegion extends Region implements RegionInfo {
     private final double _growthRate;
     private double _food;
@@ -20,17 +18,19 @@ public class DynamicSupplyRegion extends Region implements RegionInfo {
     /**
      * Calculates the amount of food available for an animal in the region and updates the food supply.
      *
-     * @param a  The animal for which the food amount is calculated
-     * @param dt The time step
+     * @param diet       The diet of the animal
+     * @param herbivores The number of herbivores in the region
+     * @param dt         The time step
      * @return The amount of food available for the animal
      */
-    public double get_food(Animal a, double dt) {
-        int n = getHerbivorousSize();
+    @Override
+    double food_for(Diet diet, int herbivores, double dt) {
+        int n = herbivores;
 
-        if (a._diet == Diet.CARNIVORE) {
+        if (diet == Diet.CARNIVORE) {
             return 0.0;
         } else {
-            double food = Math.min(_food, _multiplicativeFactor * Math.exp(-Math.max(0, n - _substractionNumHerb) * _speedFactorSheep) * dt);
+            double food = Math.min(_food, _params._multiplicativeFactor * Math.exp(-Math.max(0, n - _params._substractionNumHerb) * _params._speedFactorSheep) * dt);
             this._food -= food;
             return this._food;
         }
@@ -43,11 +43,19 @@ public class DynamicSupplyRegion extends Region implements RegionInfo {
      */
     @Override
     public void update(double dt) {
-        if (Utils._rand.nextDouble() < 0.5) {
+        if (_rand.nextDouble() < 0.5) {
             this._food += this._growthRate * dt;
         }
     }
 
+    double get_food_stock() {
+        return _food;
+    }
+
+    double get_growth_rate() {
+        return _growthRate;
+    }
+
     @Override
     public String toString() {
         return "Dynamic Supply Region";
@@ -7,6 +7,9 @@ public interface EcoSysObserver {
     void onRegister(double time, MapInfo map, List<AnimalInfo> animals);
     void onReset(double time, MapInfo map, List<AnimalInfo> animals);
     void onAnimalAdded(double time, MapInfo map, List<AnimalInfo> animals, AnimalInfo a);
+    // the animals added at once, last in the list of animals: by add_animals, or the babies
+    // born since the last notified step, just before its onAdvanced
+    void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added);
     void onRegionSet(int row, int col, MapInfo map, RegionInfo r);
     void open(Component parent);
     void onAdvanced(double currentTime, MapInfo mapInfo, List<AnimalInfo> animals, double dt);
@@ -0,0 +1,168 @@
+package simulator.model;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Lists of the animal indexes of an {@link AnimalStore}, every animal in at most one of them.
+ * An animal is appended to a list and leaves it by a swap with the last animal of the list, so
+ * the lists keep the same order as the buckets of {@link SpatialIndex} and the animal lists of
+ * the regions.
+ */
+final class IndexBuckets {
+    private int[][] _items;
+    private int[] _sizes;
+    // list and slot of every animal, list -1 if it is in none
+    private int[] _bucket_of;
+    private int[] _slot_of;
+
+    IndexBuckets(int buckets, int capacity) {
+        _items = new int[buckets][];
+        _sizes = new int[buckets];
+        _bucket_of = new int[capacity];
+        _slot_of = new int[capacity];
+        Arrays.fill(_bucket_of, -1);
+    }
+
+    void ensure_capacity(int capacity) {
+        if (capacity <= _bucket_of.length) {
+            return;
+        }
+        int n = Math.max(capacity, _bucket_of.length * 2);
+        int old = _bucket_of.length;
+        _bucket_of = Arrays.copyOf(_bucket_of, n);
+        _slot_of = Arrays.copyOf(_slot_of, n);
+        Arrays.fill(_bucket_of, old, n, -1);
+    }
+
+    int buckets() {
+        return _sizes.length;
+    }
+
+    int size(int bucket) {
+        return _sizes[bucket];
+    }
+
+    /**
+     * Returns the indexes of a list, valid up to {@link #size(int)}.
+     *
+     * @param bucket The list
+     * @return The indexes, or null if the list was never used
+     */
+    int[] items(int bucket) {
+        return _items[bucket];
+    }
+
+    int bucket_of(int i) {
+        return _bucket_of[i];
+    }
+
+    void put(int i, int bucket) {
+        int[] items = _items[bucket];
+        int n = _sizes[bucket];
+        if (items == null) {
+            items = _items[bucket] = new int[4];
+        } else if (n == items.length) {
+            items = _items[bucket] = Arrays.copyOf(items, n * 2);
+        }
+        items[n] = i;
+        _bucket_of[i] = bucket;
+        _slot_of[i] = n;
+        _sizes[bucket] = n + 1;
+    }
+
+    void remove(int i) {
+        int bucket = _bucket_of[i];
+        if (bucket < 0) {
+            return;
+        }
+        int[] items = _items[bucket];
+        int last = items[--_sizes[bucket]];
+        items[_slot_of[i]] = last;
+        _slot_of[last] = _slot_of[i];
+        _bucket_of[i] = -1;
+    }
+
+    /**
+     * Moves an animal to the end of another list, if it is not in it already.
+     *
+     * @param i      The index of the animal
+     * @param bucket The list
+     */
+    void move(int i, int bucket) {
+        if (bucket != _bucket_of[i]) {
+            remove(i);
+            put(i, bucket);
+        }
+    }
+
+    /**
+     * Renumbers the animals after the store removed some of them, keeping the lists in order.
+     * The removed animals must have left their lists.
+     *
+     * @param remap The new index of every old index
+     * @param n     The number of old indexes
+     */
+    void renumber(int[] remap, int n) {
+        Arrays.fill(_bucket_of, 0, n, -1);
+        for (int b = 0; b < _sizes.length; b++) {
+            int[] items = _items[b];
+            for (int k = 0; k < _sizes[b]; k++) {
+                int i = remap[items[k]];
+                items[k] = i;
+                _bucket_of[i] = b;
+                _slot_of[i] = k;
+            }
+        }
+    }
+
+    /**
+     * Writes the indexes of every list, in order, to a checkpoint.
+     *
+     * @param out The checkpoint
+     * @throws IOException If the checkpoint cannot be written
+     */
+    void write_state(CheckpointWriter out) throws IOException {
+        out.put_int(_sizes.length);
+        for (int b = 0; b < _sizes.length; b++) {
+            out.put_int(_sizes[b]);
+            out.put_ints(_items[b], _sizes[b]);
+        }
+    }
+
+    /**
+     * Replaces the lists with the ones written by {@link #write_state}, which must hold every
+     * animal of the store once.
+     *
+     * @param in The checkpoint
+     * @param n  The number of animals of the store
+     * @throws IOException If the checkpoint is not valid
+     */
+    void read_state(CheckpointReader in, int n) throws IOException {
+        if (in.get_count() != _sizes.length) {
+            throw new IOException("Invalid checkpoint: the lists of the population store do not match the map");
+        }
+        ensure_capacity(n);
+        Arrays.fill(_bucket_of, -1);
+        int total = 0;
+        for (int b = 0; b < _sizes.length; b++) {
+            int size = in.get_count();
+            int[] items = new int[Math.max(size, 4)];
+            in.get_ints(items, size);
+            for (int k = 0; k < size; k++) {
+                int i = items[k];
+                if (i < 0 || i >= n || _bucket_of[i] >= 0) {
+                    throw new IOException("Invalid checkpoint: bad animal " + i + " in the lists of the population store");
+                }
+                _bucket_of[i] = b;
+                _slot_of[i] = k;
+            }
+            _items[b] = items;
+            _sizes[b] = size;
+            total += size;
+        }
+        if (total != n) {
+            throw new IOException("Invalid checkpoint: the lists of the population store miss animals");
+        }
+    }
+}
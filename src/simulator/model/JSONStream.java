@@ -0,0 +1,345 @@
+package simulator.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes a JSON document to a stream as it is produced, without building it in memory first.
+ * The output is the same, byte for byte, as toString(2) of the equivalent org.json object when
+ * it is pretty-printed, and as toString() otherwise: an object or array with one element is
+ * written on one line, numbers without trailing zeros and strings quoted the same way.
+ * <p>
+ * Objects and arrays are opened with their number of elements, because the layout of a
+ * container with one element differs from the others; a container closed with a different
+ * number of elements is an error.
+ */
+public final class JSONStream implements Flushable {
+    private static final int INDENT = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer _out;
+    private final boolean _pretty;
+
+    // open containers: elements announced and written, indentation, object or array
+    private int _depth;
+    private int[] _length;
+    private int[] _written;
+    private int[] _indent;
+    private boolean[] _object;
+    // whether a key was written and waits for its value
+    private boolean _keyed;
+
+    /**
+     * Creates a stream writing to the given output, in UTF-8 and through a buffer.
+     *
+     * @param out    The output
+     * @param pretty Whether to break lines and indent by two spaces
+     */
+    public JSONStream(OutputStream out, boolean pretty) {
+        _out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        _pretty = pretty;
+        _depth = 0;
+        _length = new int[16];
+        _written = new int[16];
+        _indent = new int[16];
+        _object = new boolean[16];
+    }
+
+    /**
+     * Opens an object.
+     *
+     * @param keys The number of keys the object will have
+     * @return This stream
+     * @throws IOException If the output cannot be written
+     */
+    public JSONStream begin_object(int keys) throws IOException {
+        open(keys, true, '{');
+        return this;
+    }
+
+    public JSONStream end_object() throws IOException {
+        close(true, '}');
+        return this;
+    }
+
+    /**
+     * Opens an array.
+     *
+     * @param length The number of elements the array will have
+     * @return This stream
+     * @throws IOException If the output cannot be written
+     */
+    public JSONStream begin_array(int length) throws IOException {
+        open(length, false, '[');
+        return this;
+    }
+
+    public JSONStream end_array() throws IOException {
+        close(false, ']');
+        return this;
+    }
+
+    /**
+     * Writes the key of the next member of the current object.
+     *
+     * @param key The key
+     * @return This stream
+     * @throws IOException If the output cannot be written
+     */
+    public JSONStream key(String key) throws IOException {
+        if (_depth == 0 || !_object[_depth - 1] || _keyed) {
+            throw new IllegalStateException("A key must be written in an object, before its value");
+        }
+        next_element();
+        quote(key);
+        _out.write(':');
+        if (_pretty) {
+            _out.write(' ');
+        }
+        _keyed = true;
+        return this;
+    }
+
+    public JSONStream value(String s) throws IOException {
+        before_value();
+        if (s == null) {
+            _out.write("null");
+        } else {
+            quote(s);
+        }
+        return this;
+    }
+
+    public JSONStream value(int n) throws IOException {
+        before_value();
+        _out.write(Integer.toString(n));
+        return this;
+    }
+
+    public JSONStream value(long n) throws IOException {
+        before_value();
+        _out.write(Long.toString(n));
+        return this;
+    }
+
+    /**
+     * Writes a number as org.json does, without trailing zeros nor a trailing decimal point.
+     *
+     * @param d The number
+     * @return This stream
+     * @throws IOException              If the output cannot be written
+     * @throws IllegalArgumentException If the number is not finite
+     */
+    public JSONStream value(double d) throws IOException {
+        if (!Double.isFinite(d)) {
+            throw new IllegalArgumentException("JSON does not allow non-finite numbers");
+        }
+        before_value();
+        String s = Double.toString(d);
+        if (s.indexOf('.') > 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+            int end = s.length();
+            while (s.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (s.charAt(end - 1) == '.') {
+                end--;
+            }
+            _out.write(s, 0, end);
+        } else {
+            _out.write(s);
+        }
+        return this;
+    }
+
+    /**
+     * Writes an org.json object, array or value, visiting the members of an object in the order
+     * of its key set.
+     *
+     * @param v The value
+     * @return This stream
+     * @throws IOException If the output cannot be written
+     */
+    public JSONStream value(Object v) throws IOException {
+        if (v instanceof JSONObject o) {
+            begin_object(o.length());
+            for (String k : o.keySet()) {
+                key(k);
+                value(o.get(k));
+            }
+            end_object();
+        } else if (v instanceof JSONArray a) {
+            begin_array(a.length());
+            for (int i = 0; i < a.length(); i++) {
+                value(a.get(i));
+            }
+            end_array();
+        } else if (v instanceof Double d) {
+            value(d.doubleValue());
+        } else if (v instanceof Number n) {
+            before_value();
+            _out.write(JSONObject.numberToString(n));
+        } else if (v instanceof Boolean) {
+            before_value();
+            _out.write(v.toString());
+        } else if (v == null || JSONObject.NULL.equals(v)) {
+            value((String) null);
+        } else if (v instanceof Enum<?> e) {
+            value(e.name());
+        } else {
+            value(v.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Ends a line after a complete document, to write one document per line, and flushes it.
+     *
+     * @return This stream
+     * @throws IOException If the output cannot be written
+     */
+    public JSONStream line_break() throws IOException {
+        if (_depth != 0) {
+            throw new IllegalStateException("A line break can only follow a complete document");
+        }
+        _out.write('\n');
+        _out.flush();
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _out.flush();
+    }
+
+    private void open(int length, boolean object, char c) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative length " + length);
+        }
+        before_value();
+        int indent = _depth == 0 ? 0 : child_indent(_depth - 1);
+        if (_depth == _length.length) {
+            _length = Arrays.copyOf(_length, _depth * 2);
+            _written = Arrays.copyOf(_written, _depth * 2);
+            _indent = Arrays.copyOf(_indent, _depth * 2);
+            _object = Arrays.copyOf(_object, _depth * 2);
+        }
+        _length[_depth] = length;
+        _written[_depth] = 0;
+        _indent[_depth] = indent;
+        _object[_depth] = object;
+        _depth++;
+        _out.write(c);
+    }
+
+    private void close(boolean object, char c) throws IOException {
+        if (_depth == 0 || _object[_depth - 1] != object || _keyed) {
+            throw new IllegalStateException("No " + (object ? "object" : "array") + " to close");
+        }
+        int d = _depth - 1;
+        if (_written[d] != _length[d]) {
+            throw new IllegalStateException("Announced " + _length[d] + " elements, wrote " + _written[d]);
+        }
+        if (_length[d] > 1) {
+            if (_pretty) {
+                _out.write('\n');
+            }
+            indent(_indent[d]);
+        }
+        _depth--;
+        _out.write(c);
+        if (_depth == 0) {
+            _out.flush();
+        }
+    }
+
+    // the indentation of the elements of a container: its own if it has one element
+    private int child_indent(int d) {
+        return _length[d] > 1 ? _indent[d] + (_pretty ? INDENT : 0) : _indent[d];
+    }
+
+    // starts an element of the current container: separator, line break and indentation
+    private void next_element() throws IOException {
+        int d = _depth - 1;
+        if (_written[d] == _length[d]) {
+            throw new IllegalStateException("More elements than the " + _length[d] + " announced");
+        }
+        if (_length[d] > 1) {
+            if (_written[d] > 0) {
+                _out.write(',');
+            }
+            if (_pretty) {
+                _out.write('\n');
+            }
+            indent(child_indent(d));
+        }
+        _written[d]++;
+    }
+
+    private void before_value() throws IOException {
+        if (_depth == 0) {
+            return;
+        }
+        if (_object[_depth - 1]) {
+            if (!_keyed) {
+                throw new IllegalStateException("A value of an object needs a key");
+            }
+            _keyed = false;
+        } else {
+            next_element();
+        }
+    }
+
+    private void indent(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            _out.write(' ');
+        }
+    }
+
+    // same escapes as JSONObject.quote
+    private void quote(String s) throws IOException {
+        int n = s.length();
+        _out.write('"');
+        char c = 0;
+        for (int i = 0; i < n; i++) {
+            char b = c;
+            c = s.charAt(i);
+            switch (c) {
+                case '\\', '"' -> {
+                    _out.write('\\');
+                    _out.write(c);
+                }
+                case '/' -> {
+                    if (b == '<') {
+                        _out.write('\\');
+                    }
+                    _out.write(c);
+                }
+                case '\b' -> _out.write("\\b");
+                case '\t' -> _out.write("\\t");
+                case '\n' -> _out.write("\\n");
+                case '\f' -> _out.write("\\f");
+                case '\r' -> _out.write("\\r");
+                default -> {
+                    if (c < ' ' || (c >= 0x80 && c < 0xa0) || (c >= 0x2000 && c < 0x2100)) {
+                        String hex = Integer.toHexString(c);
+                        _out.write("\\u");
+                        _out.write("0000", 0, 4 - hex.length());
+                        _out.write(hex);
+                    } else {
+                        _out.write(c);
+                    }
+                }
+            }
+        }
+        _out.write('"');
+    }
+}
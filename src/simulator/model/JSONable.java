@@ -2,8 +2,21 @@ package simulator.model;
 
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 public interface JSONable {
     default JSONObject as_JSON() {
         return new JSONObject();
     }
+
+    /**
+     * Writes the same JSON as {@link #as_JSON()} to a stream. Classes whose JSON is large
+     * override it to write it as they walk their state, without building it.
+     *
+     * @param out The stream
+     * @throws IOException If the stream cannot be written
+     */
+    default void write_JSON(JSONStream out) throws IOException {
+        out.value(as_JSON());
+    }
 }
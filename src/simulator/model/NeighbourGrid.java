@@ -0,0 +1,71 @@
+package simulator.model;
+
+/**
+ * Layout of a uniform grid of square cells over the map, used to find the neighbours of an
+ * animal. The cell size follows the sight ranges of the animals and not the region layout,
+ * so a query covers at most 3x3 cells whatever rows and cols the scenario uses.
+ */
+final class NeighbourGrid {
+    // upper bound on the number of cells, the cell size is raised to respect it
+    static final int MAX_CELLS = 1 << 16;
+
+    private final double _width;
+    private final double _height;
+    private double _cell_size;
+    private int _cols;
+    private int _rows;
+
+    /**
+     * Creates a grid of one cell over a map of the given size.
+     *
+     * @param width  The width of the map
+     * @param height The height of the map
+     */
+    NeighbourGrid(double width, double height) {
+        _width = width;
+        _height = height;
+        set_cell_size(Math.max(width, height));
+    }
+
+    /**
+     * Changes the cell size, keeping the number of cells under {@link #MAX_CELLS}.
+     *
+     * @param cell_size The new cell size
+     */
+    void set_cell_size(double cell_size) {
+        double min = Math.sqrt(_width * _height / MAX_CELLS);
+        _cell_size = Math.max(Math.max(cell_size, min), 1.0);
+        _cols = Math.max(1, (int) Math.ceil(_width / _cell_size));
+        _rows = Math.max(1, (int) Math.ceil(_height / _cell_size));
+    }
+
+    double get_cell_size() {
+        return _cell_size;
+    }
+
+    int get_cols() {
+        return _cols;
+    }
+
+    int get_rows() {
+        return _rows;
+    }
+
+    int cells() {
+        return _cols * _rows;
+    }
+
+    int col_of(double x) {
+        int col = (int) (x / _cell_size);
+        return col < 0 ? 0 : Math.min(col, _cols - 1);
+    }
+
+    int row_of(double y) {
+        int row = (int) (y / _cell_size);
+        return row < 0 ? 0 : Math.min(row, _rows - 1);
+    }
+
+    int cell_of(double x, double y) {
+        return row_of(y) * _cols + col_of(x);
+    }
+}
@@ -0,0 +1,76 @@
+package simulator.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Result of a range query: the animals found and their squared distances to the searching
+ * animal, in parallel arrays. It can be cleared and reused between queries.
+ */
+public final class Neighbours {
+    private Animal[] _animals;
+    private double[] _distances2;
+    private int _size;
+
+    public Neighbours() {
+        _animals = new Animal[8];
+        _distances2 = new double[8];
+        _size = 0;
+    }
+
+    void add(Animal a, double distance2) {
+        if (_size == _animals.length) {
+            _animals = Arrays.copyOf(_animals, _size * 2);
+            _distances2 = Arrays.copyOf(_distances2, _size * 2);
+        }
+        _animals[_size] = a;
+        _distances2[_size] = distance2;
+        _size++;
+    }
+
+    /**
+     * Removes every animal, keeping the arrays for the next query.
+     */
+    public void clear() {
+        Arrays.fill(_animals, 0, _size, null);
+        _size = 0;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public Animal get(int i) {
+        return _animals[i];
+    }
+
+    /**
+     * Returns the squared distance of the i-th animal to the searching animal.
+     *
+     * @param i The index of the animal
+     * @return The squared distance
+     */
+    public double get_distance2(int i) {
+        return _distances2[i];
+    }
+
+    /**
+     * Returns a read-only list view of the animals.
+     *
+     * @return The animals found
+     */
+    public List<Animal> as_list() {
+        return new AbstractList<>() {
+            @Override
+            public Animal get(int i) {
+                return _animals[i];
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+}
@@ -0,0 +1,277 @@
+package simulator.model;
+
+import java.util.Arrays;
+
+/**
+ * Batch form of the part of the NORMAL update of the {@link AnimalStore} that does not depend on
+ * the other animals: the move towards the destination with the energy speed factor, and the
+ * age, energy and desire updates with their clamps.
+ * <p>
+ * At the start of a step the animals in the NORMAL state that will not pick a new destination
+ * (the only random draw of that update) are gathered into contiguous lanes, and their results
+ * are computed for all of them at once by a {@link Kernel}. Every animal still takes its result
+ * at its own turn, and only if its fields did not change since the start of the step (e.g. a
+ * mate reset its desire); otherwise it is updated by the scalar path. So the random draws, the
+ * motion and the searches keep the per-animal order of the scalar path, and the results are
+ * the same.
+ * <p>
+ * The kernel is the one over the vector lanes of {@code jdk.incubator.vector}
+ * ({@code VectorNormalKernel}, in the {@code src-vector} source folder, which must be compiled
+ * and run with {@code --add-modules jdk.incubator.vector}) if that module and class are
+ * present at run time, and the scalar loop of this class otherwise. Both compute the exponential
+ * of the speed factor with {@link Math#exp} in a scalar loop, since the vector exponential does
+ * not round like it, and then use only operations that round like the scalar ones.
+ * <p>
+ * Every lane of the first batch, and one lane every {@link #CHECK_STRIDE} of the next ones, is
+ * updated by the scalar path instead and compared with the batch; if they differ the batch is
+ * not used again.
+ */
+final class NormalBatch {
+    // one lane out of this many is checked against the scalar update after the first batch
+    static final int CHECK_STRIDE = 64;
+
+    /**
+     * Computes the results of the lanes of a batch, from its inputs and the speed factors.
+     */
+    interface Kernel {
+        void compute(NormalBatch b, double dt);
+    }
+
+    private static final Kernel SCALAR = (b, dt) -> b.compute_lanes(0, b._lanes, dt);
+    private static final Kernel KERNEL = load_kernel();
+
+    private final Parameters _params;
+    private final Kernel _kernel;
+    private boolean _first;
+    private boolean _failed;
+    private int _checking;
+
+    // lane of every animal of the store, -1 if it has none
+    private int[] _lane_of;
+    int _lanes;
+    int[] _index;
+    // inputs
+    double[] _x;
+    double[] _y;
+    double[] _dest_x;
+    double[] _dest_y;
+    double[] _speed;
+    double[] _energy;
+    double[] _desire;
+    double[] _age;
+    double[] _energy_rate;
+    double[] _desire_rate;
+    double[] _pace;
+    // results
+    double[] _new_x;
+    double[] _new_y;
+    double[] _new_energy;
+    double[] _new_desire;
+    double[] _new_age;
+
+    NormalBatch(Parameters params) {
+        _params = params;
+        _kernel = KERNEL;
+        _first = true;
+        _failed = false;
+        _checking = -1;
+        _lane_of = new int[0];
+        allocate(0);
+    }
+
+    private static Kernel load_kernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            return (Kernel) Class.forName("simulator.model.VectorNormalKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Returns whether the batches compute their lanes with the vector kernel.
+     *
+     * @return true if the vector kernel was loaded
+     */
+    static boolean is_vector() {
+        return KERNEL != SCALAR;
+    }
+
+    Parameters get_parameters() {
+        return _params;
+    }
+
+    private void allocate(int capacity) {
+        _index = new int[capacity];
+        _x = new double[capacity];
+        _y = new double[capacity];
+        _dest_x = new double[capacity];
+        _dest_y = new double[capacity];
+        _speed = new double[capacity];
+        _energy = new double[capacity];
+        _desire = new double[capacity];
+        _age = new double[capacity];
+        _energy_rate = new double[capacity];
+        _desire_rate = new double[capacity];
+        _pace = new double[capacity];
+        _new_x = new double[capacity];
+        _new_y = new double[capacity];
+        _new_energy = new double[capacity];
+        _new_desire = new double[capacity];
+        _new_age = new double[capacity];
+    }
+
+    /**
+     * Gathers the alive animals of the store in the NORMAL state that keep their destination,
+     * and computes their results.
+     *
+     * @param s  The store
+     * @param dt The time interval for the update
+     */
+    void run(AnimalStore s, double dt) {
+        int n = s.size();
+        if (_lane_of.length < n) {
+            _lane_of = new int[Math.max(n, _lane_of.length * 2)];
+            Arrays.fill(_lane_of, -1);
+        }
+        if (_index.length < n) {
+            allocate(Math.max(n, _index.length * 2));
+        }
+        double min_distance2 = _params.distanceDest * _params.distanceDest;
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (s._state[i] == AnimalStore.NORMAL && s.distance2_to_dest(i) >= min_distance2) {
+                SpeciesKernel kernel = s.kernel(i);
+                _index[m] = i;
+                _x[m] = s._x[i];
+                _y[m] = s._y[i];
+                _dest_x[m] = s._dest_x[i];
+                _dest_y[m] = s._dest_y[i];
+                _speed[m] = s._speed[i];
+                _energy[m] = s._energy[i];
+                _desire[m] = s._desire[i];
+                _age[m] = s._age[i];
+                _energy_rate[m] = kernel.get_energy_rate();
+                _desire_rate[m] = kernel.get_desire_rate();
+                _lane_of[i] = m++;
+            }
+        }
+        _lanes = m;
+        for (int k = 0; k < m; k++) {
+            _pace[k] = SpeciesRules.normal_pace(_params, _energy[k]);
+        }
+        _kernel.compute(this, dt);
+    }
+
+    /**
+     * Same arithmetic as {@link AnimalStore#normal_motion}, over the lanes in the given range.
+     *
+     * @param from The first lane
+     * @param to   The lane after the last one
+     * @param dt   The time interval for the update
+     */
+    void compute_lanes(int from, int to, double dt) {
+        double max_energy = _params._maxenergy;
+        double lowest_energy = _params._lowestenergy;
+        double max_desire = _params._maxdesire;
+        double lowest_desire = _params._lowestdesire;
+        for (int k = from; k < to; k++) {
+            double step = _speed[k] * dt * _pace[k];
+            double dx = _dest_x[k] - _x[k];
+            double dy = _dest_y[k] - _y[k];
+            double m = Math.sqrt(dx * dx + dy * dy);
+            double x = _x[k];
+            double y = _y[k];
+            if (m > 0.0) {
+                double inv = 1.0 / m;
+                x += dx * inv * step;
+                y += dy * inv * step;
+            }
+            _new_x[k] = x;
+            _new_y[k] = y;
+            _new_age[k] = _age[k] + dt;
+
+            double energy = _energy[k] - dt * _energy_rate[k];
+            if (energy > max_energy) {
+                energy = max_energy;
+            } else if (energy < lowest_energy) {
+                energy = lowest_energy;
+            }
+            _new_energy[k] = energy;
+
+            double desire = _desire[k] + _desire_rate[k] * dt;
+            if (desire > max_desire) {
+                desire = max_desire;
+            } else if (desire < lowest_desire) {
+                desire = lowest_desire;
+            }
+            _new_desire[k] = desire;
+        }
+    }
+
+    /**
+     * Writes the result of the batch for an animal, at its turn in the step.
+     *
+     * @param s The store
+     * @param i The index of the animal
+     * @return false if the batch has no valid result for it, and it must be updated by the
+     * scalar path; when its lane is checked, {@link #verify} must be called after that update
+     */
+    boolean apply(AnimalStore s, int i) {
+        int k = i < _lane_of.length ? _lane_of[i] : -1;
+        if (k < 0) {
+            return false;
+        }
+        _lane_of[i] = -1;
+        if (_failed || s._x[i] != _x[k] || s._y[i] != _y[k] || s._dest_x[i] != _dest_x[k] || s._dest_y[i] != _dest_y[k]
+                || s._energy[i] != _energy[k] || s._desire[i] != _desire[k] || s._age[i] != _age[k]) {
+            return false;
+        }
+        if (_first || k % CHECK_STRIDE == 0) {
+            _checking = k;
+            return false;
+        }
+        s._x[i] = _new_x[k];
+        s._y[i] = _new_y[k];
+        s._energy[i] = _new_energy[k];
+        s._desire[i] = _new_desire[k];
+        s._age[i] = _new_age[k];
+        return true;
+    }
+
+    /**
+     * Compares the scalar update of an animal with the batch, if its lane is being checked.
+     *
+     * @param s The store
+     * @param i The index of the animal
+     */
+    void verify(AnimalStore s, int i) {
+        int k = _checking;
+        if (k < 0) {
+            return;
+        }
+        _checking = -1;
+        if (s._x[i] != _new_x[k] || s._y[i] != _new_y[k] || s._energy[i] != _new_energy[k]
+                || s._desire[i] != _new_desire[k] || s._age[i] != _new_age[k]) {
+            _failed = true;
+        }
+    }
+
+    /**
+     * Clears the lanes of the last batch that the animals did not take, e.g. of animals killed
+     * before their turn.
+     *
+     * @return false if a check against the scalar update failed, and the batch must not be used
+     * again
+     */
+    boolean finish() {
+        for (int k = 0; k < _lanes; k++) {
+            _lane_of[_index[k]] = -1;
+        }
+        _lanes = 0;
+        _first = false;
+        return !_failed;
+    }
+}
@@ -0,0 +1,160 @@
+package simulator.model;
+
+import org.json.JSONObject;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Immutable set of the behaviour coefficients of one simulation. The fields have the names of
+ * the {@link Constants} they replace, and default to their values, so that a parameter sweep can
+ * run every point in the same JVM.
+ * <p>
+ * Unlike the static finals of Constants, these values are not compile-time constants. The
+ * animals and regions reach them through a reference set when they join the simulation, so
+ * every use costs one more load and the JIT does not fold them. The population store kernels
+ * keep the reference in a final field, which lets the JIT hoist the loads out of their loops.
+ */
+public final class Parameters {
+    private static final List<String> NAMES = parameter_names();
+
+    public static final Parameters DEFAULT = new Parameters(Map.of());
+
+    public final double _maxenergy;
+    public final double _maxdesire;
+    public final double _lowestdesire;
+    public final double _lowestenergy;
+    public final double _energyreductionSheep;
+    public final double _energyreductionWolf;
+    public final double _desirereductionSheep;
+    public final double _desirereductionWolf;
+    public final double _movefactor;
+    public final double _speedConst;
+    public final double _sightrangeConst;
+    public final double _ageLimit;
+    public final double _multiplicativeFactor;
+    public final double _tolerance;
+    public final double _speedFactorSheep;
+    public final double _speedFactorWolf;
+    public final double _multiplicativeMath;
+    public final double _multiplicativeTime;
+    public final double _desireUpperBound;
+    public final double _substractionNumHerb;
+    public final double _plusEnergy;
+    public final double _sexEnergy;
+    public final double _toleranceSpeed;
+    public final double _createBaby;
+    public final double _wolfAge;
+    public final double distanceDest;
+    public final double _energyBound;
+
+    /**
+     * Creates a set of parameters, taking the values not given from {@link Constants}.
+     *
+     * @param values The values of the parameters, by name
+     * @throws IllegalArgumentException If a name is not a parameter
+     */
+    public Parameters(Map<String, Double> values) {
+        for (String name : values.keySet()) {
+            if (!NAMES.contains(name)) {
+                throw new IllegalArgumentException("Unknown parameter: " + name);
+            }
+        }
+        _maxenergy = values.getOrDefault("_maxenergy", Constants._maxenergy);
+        _maxdesire = values.getOrDefault("_maxdesire", Constants._maxdesire);
+        _lowestdesire = values.getOrDefault("_lowestdesire", Constants._lowestdesire);
+        _lowestenergy = values.getOrDefault("_lowestenergy", Constants._lowestenergy);
+        _energyreductionSheep = values.getOrDefault("_energyreductionSheep", Constants._energyreductionSheep);
+        _energyreductionWolf = values.getOrDefault("_energyreductionWolf", Constants._energyreductionWolf);
+        _desirereductionSheep = values.getOrDefault("_desirereductionSheep", Constants._desirereductionSheep);
+        _desirereductionWolf = values.getOrDefault("_desirereductionWolf", Constants._desirereductionWolf);
+        _movefactor = values.getOrDefault("_movefactor", Constants._movefactor);
+        _speedConst = values.getOrDefault("_speedConst", Constants._speedConst);
+        _sightrangeConst = values.getOrDefault("_sightrangeConst", Constants._sightrangeConst);
+        _ageLimit = values.getOrDefault("_ageLimit", Constants._ageLimit);
+        _multiplicativeFactor = values.getOrDefault("_multiplicativeFactor", Constants._multiplicativeFactor);
+        _tolerance = values.getOrDefault("_tolerance", Constants._tolerance);
+        _speedFactorSheep = values.getOrDefault("_speedFactorSheep", Constants._speedFactorSheep);
+        _speedFactorWolf = values.getOrDefault("_speedFactorWolf", Constants._speedFactorWolf);
+        _multiplicativeMath = values.getOrDefault("_multiplicativeMath", Constants._multiplicativeMath);
+        _multiplicativeTime = values.getOrDefault("_multiplicativeTime", Constants._multiplicativeTime);
+        _desireUpperBound = values.getOrDefault("_desireUpperBound", Constants._desireUpperBound);
+        _substractionNumHerb = values.getOrDefault("_substractionNumHerb", Constants._substractionNumHerb);
+        _plusEnergy = values.getOrDefault("_plusEnergy", Constants._plusEnergy);
+        _sexEnergy = values.getOrDefault("_sexEnergy", Constants._sexEnergy);
+        _toleranceSpeed = values.getOrDefault("_toleranceSpeed", Constants._toleranceSpeed);
+        _createBaby = values.getOrDefault("_createBaby", Constants._createBaby);
+        _wolfAge = values.getOrDefault("_wolfAge", Constants._wolfAge);
+        distanceDest = values.getOrDefault("distanceDest", Constants.distanceDest);
+        _energyBound = values.getOrDefault("_energyBound", Constants._energyBound);
+    }
+
+    private static List<String> parameter_names() {
+        List<String> names = new ArrayList<>();
+        for (Field f : Parameters.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(f.getModifiers())) {
+                names.add(f.getName());
+            }
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Returns the names of all the parameters.
+     *
+     * @return The parameter names
+     */
+    public static List<String> get_names() {
+        return NAMES;
+    }
+
+    /**
+     * Returns a copy of these parameters with some values changed.
+     *
+     * @param values The values to change, by name
+     * @return The new parameters
+     * @throws IllegalArgumentException If a name is not a parameter
+     */
+    public Parameters with(Map<String, Double> values) {
+        Map<String, Double> all = as_map();
+        all.putAll(values);
+        return new Parameters(all);
+    }
+
+    /**
+     * Returns the values of all the parameters by name.
+     *
+     * @return A new map with the values
+     */
+    public Map<String, Double> as_map() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        try {
+            for (String name : NAMES) {
+                values.put(name, Parameters.class.getField(name).getDouble(this));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        return values;
+    }
+
+    /**
+     * Creates parameters from a JSON object mapping parameter names to numbers.
+     *
+     * @param json The JSON object
+     * @return The parameters
+     * @throws IllegalArgumentException If a name is not a parameter
+     */
+    public static Parameters from_JSON(JSONObject json) {
+        Map<String, Double> values = new HashMap<>();
+        for (String name : json.keySet()) {
+            values.put(name, json.getDouble(name));
+        }
+        return new Parameters(values);
+    }
+
+    public JSONObject as_JSON() {
+        return new JSONObject(as_map());
+    }
+}
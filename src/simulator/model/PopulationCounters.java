@@ -0,0 +1,132 @@
+package simulator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Number of animals of every species in every state, kept up to date by the simulator as the
+ * animals are added, born, change state and are removed, instead of being counted again from
+ * the animals. Every animal remembers the state it is counted in, and the simulator moves it
+ * to its new state at the points of the step where it already visits it: after its update, or
+ * after its commit in two-phase mode, and after it is killed by another animal.
+ * <p>
+ * The species are numbered in order of first appearance. The counters match the animals of the
+ * simulator between two steps.
+ */
+public final class PopulationCounters {
+    private static final Animal.State[] STATES = Animal.State.values();
+
+    private final List<String> _codes;
+    private final List<Diet> _diets;
+    private int[] _counts;
+    private int _total;
+
+    PopulationCounters() {
+        _codes = new ArrayList<>();
+        _diets = new ArrayList<>();
+        _counts = new int[0];
+        _total = 0;
+    }
+
+    /**
+     * Returns the number of a species, numbering it if it is new.
+     *
+     * @param code The genetic code
+     * @param diet The diet of the species
+     * @return The number of the species
+     */
+    int species_of(String code, Diet diet) {
+        // few species: a linear search, by reference first
+        for (int s = 0; s < _codes.size(); s++) {
+            if (_codes.get(s) == code) {
+                return s;
+            }
+        }
+        int s = _codes.indexOf(code);
+        if (s < 0) {
+            s = _codes.size();
+            _codes.add(code);
+            _diets.add(diet);
+            int[] counts = new int[_codes.size() * STATES.length];
+            System.arraycopy(_counts, 0, counts, 0, _counts.length);
+            _counts = counts;
+        }
+        return s;
+    }
+
+    void add(int species, int state) {
+        _counts[species * STATES.length + state]++;
+        _total++;
+    }
+
+    void remove(int species, int state) {
+        _counts[species * STATES.length + state]--;
+        _total--;
+    }
+
+    void move(int species, int from, int to) {
+        _counts[species * STATES.length + from]--;
+        _counts[species * STATES.length + to]++;
+    }
+
+    /**
+     * Sets every count to zero, keeping the numbers of the species.
+     */
+    void clear() {
+        _counts = new int[_counts.length];
+        _total = 0;
+    }
+
+    /**
+     * Returns the number of species seen, counted or not.
+     *
+     * @return The number of species
+     */
+    public int get_species() {
+        return _codes.size();
+    }
+
+    public String get_genetic_code(int species) {
+        return _codes.get(species);
+    }
+
+    public Diet get_diet(int species) {
+        return _diets.get(species);
+    }
+
+    public int get_count(int species, Animal.State state) {
+        return _counts[species * STATES.length + state.ordinal()];
+    }
+
+    /**
+     * Returns the number of animals of a species, in any state.
+     *
+     * @param species The number of the species
+     * @return The number of animals
+     */
+    public int get_count(int species) {
+        int n = 0;
+        for (int k = 0; k < STATES.length; k++) {
+            n += _counts[species * STATES.length + k];
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of animals in a state, of any species.
+     *
+     * @param state The state
+     * @return The number of animals
+     */
+    public int get_count(Animal.State state) {
+        int n = 0;
+        for (int s = 0; s < _codes.size(); s++) {
+            n += _counts[s * STATES.length + state.ordinal()];
+        }
+        return n;
+    }
+
+    public int get_total() {
+        return _total;
+    }
+}
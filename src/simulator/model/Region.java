@@ -2,20 +2,93 @@ package simulator.model;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import simulator.misc.Utils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.random.RandomGenerator;
+
+public abstract class Region implements Entity, FoodSupplier, RegionInfo {
+    private static final int REGION_DEFAULT = 0;
+    private static final int REGION_DYNAMIC_SUPPLY = 1;
 
-public abstract class Region implements Entity, FoodSupplier, RegionInfo, Constants {
     protected List<Animal> animals;
-    private int countHerbivorous;
+    private final int[] _diet_counts;
+    protected RandomGenerator _rand;
+    protected Parameters _params;
 
     /**
      * Constructs a region with an empty list of animals.
      */
     public Region() {
         animals = new ArrayList<>();
+        _diet_counts = new int[Diet.values().length];
+        _rand = Utils._rand;
+        _params = Parameters.DEFAULT;
+    }
+
+    /**
+     * Sets the random stream used by the region when it is updated.
+     *
+     * @param rand The random stream
+     */
+    void set_random(RandomGenerator rand) {
+        _rand = rand;
+    }
+
+    /**
+     * Sets the parameters of the simulation the region belongs to.
+     *
+     * @param params The parameters
+     */
+    void set_parameters(Parameters params) {
+        _params = params;
+    }
+
+    /**
+     * Writes the type, the food and the random stream of the region to a checkpoint.
+     *
+     * @param out  The checkpoint
+     * @param main The main stream of the simulation, written as a reference
+     * @throws IOException              If the checkpoint cannot be written
+     * @throws IllegalArgumentException If the region type cannot be checkpointed
+     */
+    final void write_state(CheckpointWriter out, RandomGenerator main) throws IOException {
+        if (this instanceof DynamicSupplyRegion r) {
+            out.put_byte(REGION_DYNAMIC_SUPPLY);
+            out.put_double(r.get_food_stock());
+            out.put_double(r.get_growth_rate());
+        } else if (getClass() == DefaultRegion.class) {
+            out.put_byte(REGION_DEFAULT);
+        } else {
+            throw new IllegalArgumentException("Regions of type " + getClass().getSimpleName() + " cannot be checkpointed");
+        }
+        Checkpoint.write_random(out, _rand, main);
+    }
+
+    /**
+     * Creates a region from its state in a checkpoint.
+     *
+     * @param in   The checkpoint
+     * @param main The main stream of the simulation
+     * @return The region, without animals
+     * @throws IOException If the checkpoint is not valid
+     */
+    static Region read_state(CheckpointReader in, RandomGenerator main) throws IOException {
+        int type = in.get_byte();
+        Region r = switch (type) {
+            case REGION_DEFAULT -> new DefaultRegion();
+            case REGION_DYNAMIC_SUPPLY -> {
+                double food = in.get_double();
+                double growth = in.get_double();
+                yield new DynamicSupplyRegion(food, growth);
+            }
+            default -> throw new IOException("Invalid checkpoint: unknown region type " + type);
+        };
+        r.set_random(Checkpoint.read_random(in, main));
+        return r;
     }
 
     @Override
@@ -23,6 +96,19 @@ public abstract class Region implements Entity, FoodSupplier, RegionInfo, Consta
 
     @Override
     public double get_food(Animal a, double dt) {
+        return food_for(a.get_diet(), getHerbivorousSize(), dt);
+    }
+
+    /**
+     * Calculates the food given to an animal of the given diet when the region holds the given
+     * number of herbivores. Used by populations whose animals are not registered in the region.
+     *
+     * @param diet        The diet of the animal
+     * @param herbivores  The number of herbivores in the region
+     * @param dt          The time step
+     * @return The amount of food given to the animal
+     */
+    double food_for(Diet diet, int herbivores, double dt) {
         return 0;
     }
 
@@ -32,20 +118,28 @@ public abstract class Region implements Entity, FoodSupplier, RegionInfo, Consta
      * @param a The animal to add
      */
     public final void add_animal(Animal a) {
+        a._region_slot = animals.size();
         animals.add(a);
-        if(a.get_diet() == Diet.HERBIVORE)
-            countHerbivorous++;
+        _diet_counts[a.get_diet().ordinal()]++;
     }
 
     /**
-     * Removes an animal from the region.
+     * Removes an animal from the region, moving the last animal of the list to its slot.
      *
      * @param a The animal to remove
+     * @throws IllegalStateException If the animal is not at its slot in the region
      */
     public void remove_animal(Animal a) {
-        animals.remove(a);
-        if(a.get_diet() == Diet.HERBIVORE)
-            countHerbivorous--;
+        int slot = a._region_slot;
+        if (slot < 0 || slot >= animals.size() || animals.get(slot) != a) {
+            throw new IllegalStateException("The animal " + a.get_id() + " is not at its slot " + slot + " of the region");
+        }
+        Animal last = animals.remove(animals.size() - 1);
+        if (last != a) {
+            animals.set(slot, last);
+            last._region_slot = slot;
+        }
+        _diet_counts[a.get_diet().ordinal()]--;
     }
 
     /**
@@ -72,13 +166,44 @@ public abstract class Region implements Entity, FoodSupplier, RegionInfo, Consta
         return ObjectAnimal;
     }
 
+    @Override
+    public void write_JSON(JSONStream out) throws IOException {
+        out.begin_object(1).key("animals");
+        write_animals_JSON(out);
+        out.end_object();
+    }
+
+    /**
+     * Writes the array of the animals of the region to a stream.
+     *
+     * @param out The stream
+     * @throws IOException If the stream cannot be written
+     */
+    void write_animals_JSON(JSONStream out) throws IOException {
+        out.begin_array(animals.size());
+        for (int i = 0; i < animals.size(); i++) {
+            animals.get(i).write_JSON(out);
+        }
+        out.end_array();
+    }
+
     /**
      * Gets the number of herbivorous animals in the region.
      *
      * @return The number of herbivorous animals
      */
     public int getHerbivorousSize() {
-        return countHerbivorous;
+        return get_count(Diet.HERBIVORE);
+    }
+
+    /**
+     * Gets the number of animals of the given diet in the region.
+     *
+     * @param diet The diet
+     * @return The number of animals
+     */
+    public int get_count(Diet diet) {
+        return _diet_counts[diet.ordinal()];
     }
 
     public List<AnimalInfo> getAnimalsInfo() {
@@ -2,11 +2,16 @@ package simulator.model;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import simulator.misc.RandomSource;
 import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiPredicate;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData>{
     private final int _rows;
@@ -16,7 +21,31 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
     private final int _region_width;
     private final int _region_height;
     private final Region[][] _regions;
-    private final Map<Animal, Region> _animal_region;
+    private final Region[][] _ticking;
+    private final SpatialIndex _index;
+    private RandomSource _random;
+    private boolean _per_region_streams;
+    private Parameters _params;
+
+    // region types whose update(dt) does nothing, they are left out of the region phase
+    private static final Set<Class<? extends Region>> _static_region_types = new HashSet<>();
+
+    static {
+        register_static_region_type(DefaultRegion.class);
+    }
+
+    /**
+     * Registers a region type that does not need to be updated every tick.
+     *
+     * @param type The region class
+     */
+    public static synchronized void register_static_region_type(Class<? extends Region> type) {
+        _static_region_types.add(type);
+    }
+
+    private static synchronized boolean is_static_region(Region r) {
+        return _static_region_types.contains(r.getClass());
+    }
 
     /**
      * Constructs a region manager with the specified parameters.
@@ -34,12 +63,15 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
         this._regions = new Region[_rows][_cols];
         this._region_width = width / cols;
         this._region_height = height / rows;
-        this._animal_region = new HashMap<>();
+        this._ticking = new Region[_rows][];
+        this._params = Parameters.DEFAULT;
+        this._index = new SpatialIndex(width, height);
 
         for (int i = 0; i < _rows; i++) {
             for (int j = 0; j < _cols; j++) {
                 _regions[i][j] = new DefaultRegion();
             }
+            update_ticking_row(i);
         }
         iterator();
     }
@@ -69,6 +101,10 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
         return _region_height;
     }
 
+    Region region_at(int row, int col) {
+        return _regions[row][col];
+    }
+
     /**
      * Sets the region at the specified row and column to the given region.
      * Moves animals from the current region to the new region if applicable.
@@ -82,19 +118,167 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
         // Get the current region at the specified row and column
         Region currentRegion = _regions[row][col];
 
-        // Add all the animals from the current region to the new region
-        for (Map.Entry<Animal, Region> entry : _animal_region.entrySet()) {
-            if (entry.getValue().equals(currentRegion)) {
-                // Add the animal to the new region
-                r.add_animal(entry.getKey()); // Assuming you have a method in Region to add an animal
-
-                // Update the _animal_region map
-                _animal_region.put(entry.getKey(), r);
-            }
+        // Add all the animals from the current region to the new region, their cell does not change
+        for (Animal a : currentRegion.getAnimals()) {
+            r.add_animal(a);
         }
 
         // Set the region at the specified row and column to the new region
         _regions[row][col] = r;
+        r.set_parameters(_params);
+        if (_random != null) {
+            r.set_random(_per_region_streams ? _random.split() : _random.main());
+        }
+        update_ticking_row(row);
+    }
+
+    /**
+     * Rebuilds the list of regions of a row that have to be updated every tick.
+     *
+     * @param row The row index
+     */
+    private void update_ticking_row(int row) {
+        List<Region> ticking = new ArrayList<>();
+        for (int j = 0; j < _cols; j++) {
+            if (!is_static_region(_regions[row][j])) {
+                ticking.add(_regions[row][j]);
+            }
+        }
+        _ticking[row] = ticking.toArray(new Region[0]);
+    }
+
+    /**
+     * Sets the random source of the regions. With per-region streams every region gets its own
+     * stream split from the source, so that regions can be updated in parallel reproducibly;
+     * otherwise they all share the main stream of the source.
+     *
+     * @param random             The random source of the simulator
+     * @param per_region_streams Whether every region gets its own stream
+     */
+    void set_random(RandomSource random, boolean per_region_streams) {
+        _random = random;
+        _per_region_streams = per_region_streams;
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                _regions[i][j].set_random(per_region_streams ? random.split() : random.main());
+            }
+        }
+    }
+
+    /**
+     * Sets the parameters of the simulation, passing them to every region. Animals take them
+     * when they are registered.
+     *
+     * @param params The parameters
+     */
+    void set_parameters(Parameters params) {
+        _params = params;
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                _regions[i][j].set_parameters(params);
+            }
+        }
+    }
+
+    @Override
+    public Parameters get_parameters() {
+        return _params;
+    }
+
+    /**
+     * Writes the size of the map and the state of every region, row by row, to a checkpoint.
+     *
+     * @param out The checkpoint
+     * @throws IOException If the checkpoint cannot be written
+     */
+    void write_state(CheckpointWriter out) throws IOException {
+        out.put_int(_rows);
+        out.put_int(_cols);
+        out.put_int(_width);
+        out.put_int(_height);
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                _regions[i][j].write_state(out, _random.main());
+            }
+        }
+    }
+
+    /**
+     * Creates a region manager from its state in a checkpoint, without animals. The regions
+     * keep the streams read from the checkpoint instead of splitting new ones.
+     *
+     * @param in                 The checkpoint
+     * @param random             The random source of the simulator, already restored
+     * @param per_region_streams Whether the regions have their own streams
+     * @param params             The parameters of the simulation
+     * @return The region manager
+     * @throws IOException If the checkpoint is not valid
+     */
+    static RegionManager read_state(CheckpointReader in, RandomSource random, boolean per_region_streams, Parameters params) throws IOException {
+        int rows = in.get_int();
+        int cols = in.get_int();
+        int width = in.get_int();
+        int height = in.get_int();
+        if (rows <= 0 || cols <= 0 || width < cols || height < rows) {
+            throw new IOException("Invalid checkpoint: bad map size");
+        }
+        RegionManager m = new RegionManager(rows, cols, width, height);
+        m._random = random;
+        m._per_region_streams = per_region_streams;
+        m._params = params;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                Region r = Region.read_state(in, random.main());
+                r.set_parameters(params);
+                m._regions[i][j] = r;
+            }
+            m.update_ticking_row(i);
+        }
+        return m;
+    }
+
+    /**
+     * Writes the animals of every region and of the neighbour index to a checkpoint, in the
+     * order in which they are kept, as their positions in the animal list of the simulator.
+     *
+     * @param out The checkpoint
+     * @param ids The position in the animal list of every pool slot
+     * @throws IOException If the checkpoint cannot be written
+     */
+    void write_animals(CheckpointWriter out, int[] ids) throws IOException {
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                List<Animal> as = _regions[i][j].getAnimals();
+                out.put_int(as.size());
+                for (Animal a : as) {
+                    out.put_int(ids[a._pool_slot]);
+                }
+            }
+        }
+        _index.write_state(out, ids);
+    }
+
+    /**
+     * Registers the animals read from a checkpoint in the regions and in the neighbour index,
+     * in the order written by {@link #write_animals}, without initializing them again.
+     *
+     * @param in      The checkpoint
+     * @param animals The animal list of the simulator
+     * @throws IOException If the checkpoint is not valid
+     */
+    void read_animals(CheckpointReader in, Animal[] animals) throws IOException {
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                int n = in.get_count();
+                for (int k = 0; k < n; k++) {
+                    Animal a = Checkpoint.animal_at(animals, in.get_int());
+                    a._region_mngr = this;
+                    _regions[i][j].add_animal(a);
+                    a._region_cell = i * _cols + j;
+                }
+            }
+        }
+        _index.read_state(in, animals);
     }
 
     /**
@@ -108,8 +292,8 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
 //        }
         a.init(this);
         // Calculate the row and column of the region based on the animal's position
-        int row = (int) a.get_position().getY() / _region_height;
-        int col = (int) a.get_position().getX() / _region_width;
+        int row = (int) a._pos.getY() / _region_height;
+        int col = (int) a._pos.getX() / _region_width;
 
         // Check if the row and col are within the valid range
         if (row < 0) {
@@ -126,9 +310,8 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
         Region r = _regions[row][col];
         // Add the animal to the region
         r.add_animal(a);
-        // Update the _animal_region map
-        _animal_region.put(a, r);
-
+        a._region_cell = row * _cols + col;
+        _index.insert(a);
     }
 
     /**
@@ -137,12 +320,35 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
      * @param a The animal to unregister
      */
     public void unregister_animal(Animal a) {
-        Region reg = _animal_region.get(a);
+        Region reg = region_of(a);
 
         if (reg != null) {
             reg.remove_animal(a);
         }
-        _animal_region.remove(a);
+        a._region_cell = -1;
+        _index.remove(a);
+    }
+
+    /**
+     * Returns the region the animal is registered in.
+     *
+     * @param a The animal
+     * @return The region, or null if the animal is not registered
+     */
+    private Region region_of(Animal a) {
+        int cell = a._region_cell;
+        return cell < 0 ? null : _regions[cell / _cols][cell % _cols];
+    }
+
+    /**
+     * Unregisters a batch of animals. Every removal is a constant time swap in its region.
+     *
+     * @param as The animals to unregister
+     */
+    public void unregister_animals(Collection<Animal> as) {
+        for (Animal a : as) {
+            unregister_animal(a);
+        }
     }
 
     /**
@@ -151,22 +357,21 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
      * @param a The animal to update
      */
     public void update_animal_region(Animal a) {
-        double x = a.get_position().getX();
-        double y = a.get_position().getY();
+        double x = a._pos.getX();
+        double y = a._pos.getY();
 
         int row = (int) Utils.constrain_value_in_range(y / _region_height, 0, _rows - 1);
         int col = (int) Utils.constrain_value_in_range(x / _region_width, 0, _cols - 1);
-        Region regCurrent = _animal_region.get(a);
-        Region regNew = _regions[row][col];
+        _index.update(a);
+        int cell = row * _cols + col;
 
-        if (regNew != regCurrent) {
+        if (cell != a._region_cell) {
+            Region regCurrent = region_of(a);
             if (regCurrent != null) {
                 regCurrent.remove_animal(a);
             }
-            if (regNew != null) {
-                regNew.add_animal(a);
-                _animal_region.put(a, regNew);
-            }
+            _regions[row][col].add_animal(a);
+            a._region_cell = cell;
         }
     }
 
@@ -178,7 +383,7 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
      * @return The amount of food available
      */
     public double get_food(Animal a, double dt) {
-        Region reg = _animal_region.get(a);
+        Region reg = region_of(a);
         double food = 0;
         if (reg != null) {
             food = reg.get_food(a, dt);
@@ -188,20 +393,30 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
     }
 
     /**
-     * Updates all regions within the region manager.
+     * Updates all regions within the region manager, skipping the static region types.
+     * When a pool is given the rows are updated in parallel on it.
      *
-     * @param dt The time interval
+     * @param dt   The time interval
+     * @param pool The pool to update the rows on, or null to update them sequentially
      */
-    void update_all_regions(double dt) {
-        for (int i = 0; i < _rows; i++) {
-            for (int j = 0; j < _cols; j++) {
-                _regions[i][j].update(dt);
+    void update_all_regions(double dt, ForkJoinPool pool) {
+        if (pool == null) {
+            for (int i = 0; i < _rows; i++) {
+                update_row(i, dt);
             }
+        } else {
+            pool.submit(() -> IntStream.range(0, _rows).parallel().forEach(i -> update_row(i, dt))).join();
+        }
+    }
+
+    private void update_row(int row, double dt) {
+        for (Region r : _ticking[row]) {
+            r.update(dt);
         }
     }
 
     /**
-     * Retrieves a list of animals within the specified range of the given animal position, filtered by the provided predicate.
+     * Retrieves a list of animals within the sight range of the given animal, filtered by the provided predicate.
      *
      * @param a      The reference animal.
      * @param filter The predicate used to filter the animals.
@@ -209,35 +424,30 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
      */
     @Override
     public List<Animal> get_animals_in_range(Animal a, Predicate<Animal> filter) {
-        List<Animal> animals_in_range = new ArrayList<>();
-        Vector2D pos = a.get_position();
-        double sight_range = a.get_sight_range();
-        double col = pos.getX();
-        double row = pos.getY();
-
-        int col_mx = (int) (Math.max(0, col + sight_range) / _region_width);
-        int col_mn = (int) (Math.max(0, col - sight_range) / _region_width);
-        int row_mx = (int) (Math.max(0, row + sight_range) / _region_height);
-        int row_mn = (int) (Math.max(0, row - sight_range) / _region_height);
-
-        col_mx = Math.min(col_mx, _cols - 1);
-        col_mn = Math.max(col_mn, 0);
-        row_mx = Math.min(row_mx, _rows - 1);
-        row_mn = Math.max(row_mn, 0);
-
-        for (int f = row_mn; f <= row_mx; f++) {
-            for (int c = col_mn; c <= col_mx; c++) {
-                Region reg = _regions[f][c];
-                for (int i = 0; reg.animals.size() > i; i++) {
-                    Animal animal = reg.animals.get(i);
-                    if (filter.test(animal)) {
-                        animals_in_range.add(animal);
-                    }
-                }
+        Neighbours animals_in_range = new Neighbours();
+        _index.query(a, filter, animals_in_range);
+        return new ArrayList<>(animals_in_range.as_list());
+    }
 
-            }
+    @Override
+    public void get_animals_in_range(Animal a, Predicate<Animal> filter, Neighbours result) {
+        _index.query(a, filter, result);
+    }
+
+    @Override
+    public Animal select_in_range(Animal a, Diet diet, BiPredicate<Animal, Animal> filter, SelectionStrategy strategy) {
+        if (!(strategy instanceof StreamingSelectionStrategy s)) {
+            return strategy.select(a, get_animals_in_range(a, b -> (diet == null || b.get_diet() == diet) && filter.test(a, b)));
         }
-        return animals_in_range;
+        return _index.select(a, diet, false, filter, s);
+    }
+
+    @Override
+    public Animal select_mate_in_range(Animal a, BiPredicate<Animal, Animal> filter, SelectionStrategy strategy) {
+        if (!(strategy instanceof StreamingSelectionStrategy s)) {
+            return strategy.select(a, get_animals_in_range(a, b -> filter.test(a, b)));
+        }
+        return _index.select(a, null, true, filter, s);
     }
 
     /**
@@ -264,6 +474,80 @@ public class RegionManager implements AnimalMapView, Iterable<MapInfo.RegionData
         return json;
     }
 
+    /**
+     * Writes the same JSON as {@link #as_JSON()} region by region, with the members of every
+     * region in the order org.json writes them.
+     *
+     * @param out The stream
+     * @throws IOException If the stream cannot be written
+     */
+    @Override
+    public void write_JSON(JSONStream out) throws IOException {
+        int count = 0;
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                if (_regions[i][j] != null) {
+                    count++;
+                }
+            }
+        }
+        out.begin_object(1).key("regions").begin_array(count);
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                Region region = _regions[i][j];
+                if (region != null) {
+                    out.begin_object(4);
+                    out.key("col").value(i);
+                    out.key("data");
+                    region.write_JSON(out);
+                    out.key("animals");
+                    region.write_animals_JSON(out);
+                    out.key("row").value(j);
+                    out.end_object();
+                }
+            }
+        }
+        out.end_array().end_object();
+    }
+
+    /**
+     * Writes the regions and their animals in the compact schema of {@link CompactJSON}, every
+     * animal once.
+     *
+     * @param out The stream
+     * @throws IOException If the stream cannot be written
+     */
+    public void write_compact_JSON(JSONStream out) throws IOException {
+        CompactJSON compact = new CompactJSON();
+        int[] counts = new int[_rows * _cols];
+        int total = 0;
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                if (_regions[i][j] != null) {
+                    List<Animal> as = _regions[i][j].getAnimals();
+                    for (int k = 0; k < as.size(); k++) {
+                        compact.species_of(as.get(k)._genetic_code, as.get(k)._diet);
+                    }
+                    counts[i * _cols + j] = as.size();
+                    total += as.size();
+                }
+            }
+        }
+        compact.begin(out, _rows, _cols, counts, total);
+        for (int i = 0; i < _rows; i++) {
+            for (int j = 0; j < _cols; j++) {
+                if (_regions[i][j] != null) {
+                    List<Animal> as = _regions[i][j].getAnimals();
+                    for (int k = 0; k < as.size(); k++) {
+                        Animal a = as.get(k);
+                        compact.animal(out, a._pos.getX(), a._pos.getY(), compact.species_of(a._genetic_code, a._diet), a.get_state().ordinal());
+                    }
+                }
+            }
+        }
+        compact.end(out);
+    }
+
     private class RegionManagerIterator implements Iterator<MapInfo.RegionData> {
         private int row = 0;
         private int col = 0;
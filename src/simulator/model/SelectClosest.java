@@ -7,13 +7,16 @@ import java.util.List;
 /**
  * Selects the closest animal to the current animal
  */
-public class SelectClosest implements SelectionStrategy {
+public class SelectClosest implements StreamingSelectionStrategy {
+    // the strategy has no state, every animal can share this instance
+    public static final SelectClosest INSTANCE = new SelectClosest();
+
     @Override
     public Animal select(Animal a, List<Animal> as) {
         if (!as.isEmpty()) {
             Animal closest = as.get(0);
             for (Animal animal : as) {
-                if (a.get_position().distanceTo(animal.get_position()) < a.get_position().distanceTo(closest.get_position())) {
+                if (a._pos.distanceSquaredTo(animal.observed_x(), animal.observed_y()) < a._pos.distanceSquaredTo(closest.observed_x(), closest.observed_y())) {
                     closest = animal;
                 }
             }
@@ -21,4 +24,9 @@ public class SelectClosest implements SelectionStrategy {
         }
         return null;
     }
+
+    @Override
+    public double rank(Animal a, Animal candidate, double distance2) {
+        return distance2;
+    }
 }
@@ -7,7 +7,10 @@ import java.util.List;
 /**
  * Selects the first animal in the list
  */
-public class SelectFirst implements SelectionStrategy {
+public class SelectFirst implements StreamingSelectionStrategy {
+    // the strategy has no state, every animal can share this instance
+    public static final SelectFirst INSTANCE = new SelectFirst();
+
     @Override
     public Animal select(Animal a, List<Animal> as) {
         if (as.isEmpty())
@@ -16,4 +19,13 @@ public class SelectFirst implements SelectionStrategy {
         return as.get(0);
     }
 
+    @Override
+    public double rank(Animal a, Animal candidate, double distance2) {
+        return 0;
+    }
+
+    @Override
+    public boolean first_only() {
+        return true;
+    }
 }
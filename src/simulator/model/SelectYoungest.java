@@ -7,7 +7,10 @@ import java.util.List;
 /**
  * Interface for selection strategies
  */
-public class SelectYoungest implements SelectionStrategy {
+public class SelectYoungest implements StreamingSelectionStrategy {
+    // the strategy has no state, every animal can share this instance
+    public static final SelectYoungest INSTANCE = new SelectYoungest();
+
     @Override
     public Animal select(Animal a, List<Animal> as) {
         if (as.isEmpty())
@@ -15,10 +18,15 @@ public class SelectYoungest implements SelectionStrategy {
 
         Animal youngest = as.get(0);
         for (Animal animal : as) {
-            if (animal.get_age() < youngest.get_age()) {
+            if (animal.observed_age() < youngest.observed_age()) {
                 youngest = animal;
             }
         }
         return youngest;
     }
+
+    @Override
+    public double rank(Animal a, Animal candidate, double distance2) {
+        return candidate.observed_age();
+    }
 }
@@ -3,10 +3,13 @@ package simulator.model;
 import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 
+import java.util.random.RandomGenerator;
+
 public class Sheep extends Animal {
 
-    private Animal _danger_source;
-    private final SelectionStrategy _danger_strategy;
+    // handle of the danger source in the pool of the sheep
+    private long _danger_source;
+    private SelectionStrategy _danger_strategy;
 
     /**
      * Constructor for the Sheep class
@@ -16,10 +19,22 @@ public class Sheep extends Animal {
      * @param pos
      */
     public Sheep(SelectionStrategy mate_strategy, SelectionStrategy danger_strategy, Vector2D pos) {
-        super("Sheep", Diet.HERBIVORE, _sightrangeConst, _speedConst, mate_strategy, pos);
+        this(mate_strategy, danger_strategy, pos, Utils._rand);
+    }
+
+    /**
+     * Constructor for the Sheep class
+     *
+     * @param mate_strategy
+     * @param danger_strategy
+     * @param pos
+     * @param rand The random stream of the sheep
+     */
+    public Sheep(SelectionStrategy mate_strategy, SelectionStrategy danger_strategy, Vector2D pos, RandomGenerator rand) {
+        super("Sheep", Diet.HERBIVORE, Constants._sightrangeConst, Constants._speedConst, mate_strategy, pos, rand);
         this._mate_strategy = mate_strategy;
         this._danger_strategy = danger_strategy;
-        this._danger_source = null;
+        this._danger_source = AnimalPool.NONE;
     }
 
     /**
@@ -31,7 +46,47 @@ public class Sheep extends Animal {
     protected Sheep(Sheep p1, Animal p2) {
         super(p1, p2);
         this._danger_strategy = p1.get_danger_strategy();
-        this._danger_source = null;
+        this._danger_source = AnimalPool.NONE;
+    }
+
+    /**
+     * Returns a baby of this sheep and the given mate, reusing a recycled sheep of the pool if there is one.
+     *
+     * @param mate The mate of the sheep
+     * @return The baby
+     */
+    private Sheep new_baby(Animal mate) {
+        Sheep baby = _pool == null ? null : _pool.take(Sheep.class);
+        if (baby == null) {
+            return new Sheep(this, mate);
+        }
+        baby.born_of(this, mate);
+        baby._danger_strategy = _danger_strategy;
+        baby._danger_source = AnimalPool.NONE;
+        return baby;
+    }
+
+    @Override
+    long get_aux_target() {
+        return _danger_source;
+    }
+
+    @Override
+    void set_aux_target(long handle) {
+        _danger_source = handle;
+    }
+
+    @Override
+    protected void release() {
+        super.release();
+        _danger_source = AnimalPool.NONE;
+    }
+
+    @Override
+    protected void init_attributes() {
+        _sight_range = _params._sightrangeConst;
+        _init_speed = _params._speedConst;
+        super.init_attributes();
     }
 
     public SelectionStrategy get_danger_strategy() {
@@ -59,18 +114,17 @@ public class Sheep extends Animal {
                 break;
         }
         if (IsOutOfMap()) {
-            _pos = adjust_position(_pos);
+            adjust_position();
             this._state = State.NORMAL;
         }
 
-        if (_energy <= _lowestenergy || _age > _ageLimit) {
+        if (SpeciesRules.sheep_dies(_params, _energy, _age)) {
             _state = State.DEAD;
         }
 
         State state = this.get_state();
         if (state != State.DEAD) {
-            _energy += this._region_mngr.get_food(this, dt);
-            checkEnergy();
+            feed(dt);
         }
 
     }
@@ -82,29 +136,26 @@ public class Sheep extends Animal {
      * @param dt The time increment for the update.
      */
     private void updateAsNormal(double dt) {
-        _danger_source = null;
-        _mate_target = null;
-        if (_dest == null || _pos.distanceTo(_dest) < distanceDest) {
-            _dest = new Vector2D(Utils._rand.nextDouble() * _region_mngr.get_width(), Utils._rand.nextDouble() * _region_mngr.get_height());
+        _danger_source = AnimalPool.NONE;
+        _mate_target = AnimalPool.NONE;
+        if (_pos.distanceSquaredTo(_dest) < _params.distanceDest * _params.distanceDest) {
+            _dest.set(_rand.nextDouble() * _region_mngr.get_width(), _rand.nextDouble() * _region_mngr.get_height());
         }
-        move(_speed * dt * Math.exp((_energy - _maxenergy) * _movefactor));
+        move(_speed * dt * SpeciesRules.normal_pace(_params, _energy));
         _age += dt;
 
         //Energy reduction always between 0 and 100
-        _energy -= dt * _energyreductionSheep;
+        _energy -= dt * _params._energyreductionSheep;
         checkEnergy();
         //Desire addition always between 0 and 100
-        _desire += _desirereductionSheep * dt;
+        _desire += _params._desirereductionSheep * dt;
         checkDesire();
 
 
-        if (this._danger_source == null) {
-            _danger_source = searchForDanger(_region_mngr, this._danger_strategy);
-            if (this._danger_source != null) {
-                this._state = State.DANGER;
-            } else if (this._desire > 65.0) {
-                this._state = State.MATE;
-            }
+        if (this._danger_source == AnimalPool.NONE) {
+            Animal danger = searchForDanger(_region_mngr, this._danger_strategy);
+            _danger_source = AnimalPool.handle(danger);
+            _state = SpeciesRules.sheep_after_normal(danger != null, _desire, _state);
         }
     }
 
@@ -115,31 +166,31 @@ public class Sheep extends Animal {
      * @param dt The time increment for the update.
      */
     private void updateAsDanger(double dt) {
-        _mate_target = null;
-        if (_danger_source != null) {
-            if (_danger_source.get_state() == State.DEAD) {
-                _danger_source = null;
+        _mate_target = AnimalPool.NONE;
+        Animal danger = resolve(_danger_source);
+        if (_danger_source != AnimalPool.NONE) {
+            // a recycled source is gone, like a dead one
+            if (danger == null || danger.observed_state() == State.DEAD) {
+                danger = null;
+                _danger_source = AnimalPool.NONE;
             } else {
-                _dest = _pos.plus(_pos.minus(_danger_source.get_position()).direction());
-                move(_speedFactorSheep * this._speed * dt * Math.exp((_energy - _maxenergy) * _multiplicativeMath));
+                set_dest_away_from(danger);
+                move(_params._speedFactorSheep * this._speed * dt * SpeciesRules.chase_pace(_params, _energy));
                 this._age += dt;
             }
 
-            _energy -= _energyreductionSheep * _multiplicativeTime * dt;
+            _energy -= _params._energyreductionSheep * _params._multiplicativeTime * dt;
             checkEnergy();
 
-            _desire += _desirereductionSheep * dt;
+            _desire += _params._desirereductionSheep * dt;
             checkDesire();
 
         }
-        if ((_danger_source == null) || (this._pos.distanceTo(_danger_source.get_position()) <= this._sight_range)) {
-            _danger_source = searchForDanger(_region_mngr, _danger_strategy);
-            if (_danger_source == null) {
-                if (_desire < _desireUpperBound) {
-                    this._state = State.NORMAL;
-                } else {
-                    this._state = State.MATE;
-                }
+        if ((danger == null) || (distance2_to(danger) <= this._sight_range * this._sight_range)) {
+            danger = searchForDanger(_region_mngr, _danger_strategy);
+            _danger_source = AnimalPool.handle(danger);
+            if (danger == null) {
+                _state = SpeciesRules.sheep_out_of_danger(_params, _desire);
             }
         }
     }
@@ -151,46 +202,45 @@ public class Sheep extends Animal {
      * @param dt The time increment for the update.
      */
     private void updateAsMate(double dt) {
-        _danger_source = null;
-        if (this._mate_target != null && (this._state == State.DEAD || this._sight_range < _pos.distanceTo(_mate_target.get_position()))) {
-            this._mate_target = null;
+        _danger_source = AnimalPool.NONE;
+        Animal mate = get_mate_target();
+        if (mate != null && (this._state == State.DEAD || this._sight_range * this._sight_range < distance2_to(mate))) {
+            mate = null;
+            this._mate_target = AnimalPool.NONE;
         }
-        if (this._mate_target == null) {
-            _mate_target = searchForMate(_region_mngr, this._mate_strategy);
-            if (_mate_target == null) {
+        if (mate == null) {
+            mate = searchForMate(_region_mngr, this._mate_strategy);
+            set_mate_target(mate);
+            if (mate == null) {
                 updateAsNormal(dt);
             }
         }
-        if (this._mate_target != null) {
-            _dest = _mate_target.get_position();
-            move(_speedFactorSheep * this._speed * dt * Math.exp((_energy - _maxenergy) * _multiplicativeMath));
+        if (mate != null) {
+            set_dest_to(mate);
+            move(_params._speedFactorSheep * this._speed * dt * SpeciesRules.chase_pace(_params, _energy));
             this._age += dt;
 
 
-            _energy -= _energyreductionSheep * _multiplicativeTime * dt;
+            _energy -= _params._energyreductionSheep * _params._multiplicativeTime * dt;
             checkEnergy();
 
-            this._desire += _desirereductionSheep * dt;
+            this._desire += _params._desirereductionSheep * dt;
             checkDesire();
 
-            if (this._pos.distanceTo(_mate_target.get_position()) < distanceDest) {
+            if (distance2_to(mate) < _params.distanceDest * _params.distanceDest) {
                 this.setDesire(0);
-                this._mate_target.setDesire(0);
-                if (!is_pregnant() && Utils._rand.nextDouble() < _createBaby) {
-                    _baby = new Sheep(this, _mate_target);
+                reset_mate_desire(mate);
+                if (!is_pregnant() && _rand.nextDouble() < _params._createBaby) {
+                    _baby = new_baby(mate);
                 }
-                _mate_target = null;
+                _mate_target = AnimalPool.NONE;
             }
         }
 
-        if (this._danger_source == null) {
-            _danger_source = searchForDanger(_region_mngr, this._danger_strategy);
-            if (this._danger_source != null) {
-                _state = State.DANGER;
-            }
-            else if (this._desire < _desireUpperBound) {
-                this._state = State.NORMAL;
-            }
+        if (this._danger_source == AnimalPool.NONE) {
+            Animal danger = searchForDanger(_region_mngr, this._danger_strategy);
+            _danger_source = AnimalPool.handle(danger);
+            _state = SpeciesRules.sheep_after_mate(_params, danger != null, _desire, _state);
         }
 
 
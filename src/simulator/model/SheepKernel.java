@@ -0,0 +1,140 @@
+package simulator.model;
+
+/**
+ * Sheep behaviour over the arrays of an {@link AnimalStore}, following {@link Sheep}.
+ * The second target of a sheep is its danger source.
+ */
+final class SheepKernel implements SpeciesKernel {
+    private final Parameters _params;
+
+    SheepKernel(Parameters params) {
+        _params = params;
+    }
+
+    @Override
+    public String get_genetic_code() {
+        return "Sheep";
+    }
+
+    @Override
+    public Diet get_diet() {
+        return Diet.HERBIVORE;
+    }
+
+    @Override
+    public SelectionStrategy get_aux_strategy(Animal a) {
+        return ((Sheep) a).get_danger_strategy();
+    }
+
+    @Override
+    public double get_energy_rate() {
+        return _params._energyreductionSheep;
+    }
+
+    @Override
+    public double get_desire_rate() {
+        return _params._desirereductionSheep;
+    }
+
+    @Override
+    public void update(AnimalStore s, int i, double dt) {
+        byte state = s._state[i];
+        if (state == AnimalStore.NORMAL) {
+            update_as_normal(s, i, dt);
+        } else if (state == AnimalStore.DANGER) {
+            update_as_danger(s, i, dt);
+        } else if (state == AnimalStore.MATE) {
+            update_as_mate(s, i, dt);
+        }
+        if (s.adjust_if_out(i)) {
+            s._state[i] = AnimalStore.NORMAL;
+        }
+
+        if (SpeciesRules.sheep_dies(_params, s._energy[i], s._age[i])) {
+            s._state[i] = AnimalStore.DEAD;
+        }
+
+        if (s._state[i] != AnimalStore.DEAD) {
+            s._energy[i] += s.food(i, dt);
+            s.check_energy(i);
+        }
+    }
+
+    private void update_as_normal(AnimalStore s, int i, double dt) {
+        s._aux_target[i] = -1;
+        s._mate_target[i] = -1;
+        s.normal_update(i, dt, get_energy_rate(), get_desire_rate());
+
+        s._aux_target[i] = s.search(i, AnimalStore.SEARCH_CARNIVORE, s._aux_strategy[i]);
+        s.set_state(i, SpeciesRules.sheep_after_normal(s._aux_target[i] >= 0, s._desire[i], s.state(i)));
+    }
+
+    private void update_as_danger(AnimalStore s, int i, double dt) {
+        s._mate_target[i] = -1;
+        int danger = s._aux_target[i];
+        if (danger != -1) {
+            // a source that left the store is gone, like a dead one
+            if (danger == AnimalStore.GONE || s._state[danger] == AnimalStore.DEAD) {
+                danger = -1;
+            } else {
+                s.dest_away_from(i, danger);
+                s.move(i, _params._speedFactorSheep * s._speed[i] * dt * SpeciesRules.chase_pace(_params, s._energy[i]));
+                s._age[i] += dt;
+            }
+
+            s._energy[i] -= _params._energyreductionSheep * _params._multiplicativeTime * dt;
+            s.check_energy(i);
+
+            s._desire[i] += _params._desirereductionSheep * dt;
+            s.check_desire(i);
+        }
+        if (danger < 0 || s.distance2(i, danger) <= s._sight_range[i] * s._sight_range[i]) {
+            danger = s.search(i, AnimalStore.SEARCH_CARNIVORE, s._aux_strategy[i]);
+            if (danger < 0) {
+                s.set_state(i, SpeciesRules.sheep_out_of_danger(_params, s._desire[i]));
+            }
+        }
+        s._aux_target[i] = danger;
+    }
+
+    private void update_as_mate(AnimalStore s, int i, double dt) {
+        s._aux_target[i] = -1;
+        int mate = s._mate_target[i];
+        if (mate >= 0 && (s._state[i] == AnimalStore.DEAD || s._sight_range[i] * s._sight_range[i] < s.distance2(i, mate))) {
+            mate = -1;
+        }
+        if (mate < 0) {
+            mate = s.search(i, AnimalStore.SEARCH_MATE, s._mate_strategy[i]);
+            s._mate_target[i] = mate;
+            if (mate < 0) {
+                update_as_normal(s, i, dt);
+            }
+        }
+        if (mate >= 0) {
+            s.dest_to(i, mate);
+            s.move(i, _params._speedFactorSheep * s._speed[i] * dt * SpeciesRules.chase_pace(_params, s._energy[i]));
+            s._age[i] += dt;
+
+            s._energy[i] -= _params._energyreductionSheep * _params._multiplicativeTime * dt;
+            s.check_energy(i);
+
+            s._desire[i] += _params._desirereductionSheep * dt;
+            s.check_desire(i);
+
+            if (s.distance2(i, mate) < _params.distanceDest * _params.distanceDest) {
+                s._desire[i] = 0;
+                s._desire[mate] = 0;
+                if (s.random().nextDouble() < _params._createBaby) {
+                    s.give_birth(i, mate);
+                }
+                mate = -1;
+            }
+        }
+        s._mate_target[i] = mate;
+
+        if (s._aux_target[i] < 0) {
+            s._aux_target[i] = s.search(i, AnimalStore.SEARCH_CARNIVORE, s._aux_strategy[i]);
+            s.set_state(i, SpeciesRules.sheep_after_mate(_params, s._aux_target[i] >= 0, s._desire[i], s.state(i)));
+        }
+    }
+}
@@ -1,14 +1,26 @@
 package simulator.model;
 
 import org.json.JSONObject;
+import simulator.factories.Creator;
 import simulator.factories.DynamicSupplyRegionBuilder;
 import simulator.factories.Factory;
+import simulator.misc.RandomSource;
 
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-public class Simulator implements Observable<EcoSysObserver>, JSONable {
+public class Simulator implements Observable<EcoSysObserver>, JSONable, AutoCloseable {
 
     private final Factory<Animal> animalsFactory;
     private final Factory<Region> regionsFactory;
@@ -16,6 +28,26 @@ public class Simulator implements Observable<EcoSysObserver>, JSONable {
     private final List<Animal> animals;
     private double currentTime;
     private final List<EcoSysObserver> observers;
+    private final List<Animal> births;
+    private final List<Animal> deaths;
+    private AnimalPool pool;
+    private PopulationCounters counters;
+    // id of the next animal added or born, the population store numbers its own
+    private int nextAnimalId;
+    // id of the first animal the observers were not told was added
+    private int notifiedId;
+    private ForkJoinPool tickPool;
+    private AnimalStore animalStore;
+    private boolean batchKernel;
+    private final RandomSource random;
+    private int notifyEvery;
+    private long notifyIntervalNanos;
+    private int stepsSinceNotify;
+    private double dtSinceNotify;
+    private long lastNotifyNanos;
+    // incremented whenever the animals change, the snapshot is rebuilt when it is out of date
+    private long epoch;
+    private AnimalSnapshot snapshot;
 
     /**
      * Constructor for the Simulator class
@@ -28,12 +60,37 @@ public class Simulator implements Observable<EcoSysObserver>, JSONable {
      * @param regionsFactory The factory for creating regions
      */
     public Simulator(int width, int height, int rows, int cols, Factory<Animal> animalsFactory, Factory<Region> regionsFactory) {
+        this(width, height, rows, cols, animalsFactory, regionsFactory, RandomSource.DEFAULT_SEED);
+    }
+
+    /**
+     * Constructor for the Simulator class with its own random seed. All the randomness of the
+     * simulation comes from a random source created from this seed, so two simulators with the
+     * same seed and input give the same results even when they run in the same JVM.
+     *
+     * @param width          The width of the map
+     * @param height         The height of the map
+     * @param cols           The number of columns in the map
+     * @param rows           The number of rows in the map
+     * @param animalsFactory The factory for creating animals
+     * @param regionsFactory The factory for creating regions
+     * @param seed           The seed of the simulation
+     */
+    public Simulator(int width, int height, int rows, int cols, Factory<Animal> animalsFactory, Factory<Region> regionsFactory, long seed) {
         this.animalsFactory = animalsFactory;
         this.regionsFactory = regionsFactory;
+        this.random = new RandomSource(seed);
         this.regionManager = new RegionManager(rows, cols, width, height);
+        this.regionManager.set_random(random, false);
         this.animals = new ArrayList<>();
         this.currentTime = 0.0;
         this.observers = new ArrayList<>();
+        this.births = new ArrayList<>();
+        this.deaths = new ArrayList<>();
+        this.pool = new AnimalPool();
+        this.counters = new PopulationCounters();
+        this.notifyEvery = 1;
+        this.notifyIntervalNanos = 0;
     }
 
     /**
@@ -59,28 +116,131 @@ public class Simulator implements Observable<EcoSysObserver>, JSONable {
      */
     public void set_region(int row, int col, JSONObject r_json) {
         if (r_json != null) {
-            Region region = regionsFactory.createInstance(r_json);
+            Region region = regionsFactory.createInstance(r_json, random.main());
             set_region(row, col, region);
         }
 
     }
 
     /**
-     * Adds the provided animal to the simulator.
+     * Adds the provided animal to the simulator, without notifying the observers.
      *
-     * @param a The JSON object representing the animal to be added.
+     * @param a The animal to be added.
      */
-    private void add_animal(Animal a) {
-        animals.add(a);
-        regionManager.register_animal(a);
-        for (EcoSysObserver observer : observers) {
-            observer.onAnimalAdded(currentTime, regionManager, new ArrayList<>(animals), a);
+    private void insert_animal(Animal a) {
+        if (animalStore != null) {
+            animalStore.add(a, regionManager);
+        } else {
+            a._id = nextAnimalId++;
+            a.set_two_phase(tickPool != null, tickPool != null ? random.split() : random.main());
+            pool.adopt(a);
+            animals.add(a);
+            regionManager.register_animal(a);
+            count(a);
+        }
+        epoch++;
+    }
+
+    private void count(Animal a) {
+        a._counted_species = counters.species_of(a._genetic_code, a._diet);
+        a._counted_state = a._state;
+        counters.add(a._counted_species, a._state.ordinal());
+    }
+
+    // moves an animal, and the one it killed, to the counters of their current states
+    private void recount(Animal a) {
+        recount_state(a);
+        Animal victim = a.take_victim();
+        if (victim != null) {
+            recount_state(victim);
         }
     }
 
+    private void recount_state(Animal a) {
+        if (a._state != a._counted_state) {
+            counters.move(a._counted_species, a._counted_state.ordinal(), a._state.ordinal());
+            a._counted_state = a._state;
+        }
+    }
+
+    /**
+     * Returns the number of animals of every species in every state, kept up to date as the
+     * simulation runs. The counters are valid between two steps and must not be kept across a
+     * reset or a restore.
+     *
+     * @return The counters
+     */
+    public PopulationCounters get_counters() {
+        return animalStore != null ? animalStore.get_counters() : counters;
+    }
+
+    /**
+     * Counts the animals of a diet in every region.
+     *
+     * @param diet The diet
+     * @return The number of animals of the diet in every region, row by row
+     */
+    public int[] count_by_region(Diet diet) {
+        if (animalStore != null) {
+            return animalStore.count_by_region(regionManager, diet);
+        }
+        int rows = regionManager.get_rows();
+        int cols = regionManager.get_cols();
+        int[] counts = new int[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                counts[i * cols + j] = regionManager.region_at(i, j).get_count(diet);
+            }
+        }
+        return counts;
+    }
+
     public void add_animal(JSONObject a_json) {
-        Animal animal = animalsFactory.createInstance(a_json);
-        add_animal(animal);
+        Animal animal = animalsFactory.createInstance(a_json, random.main());
+        insert_animal(animal);
+        if (!observers.isEmpty()) {
+            AnimalSnapshot all = get_snapshot();
+            AnimalInfo info = all.get(all.size() - 1);
+            for (EcoSysObserver observer : observers) {
+                observer.onAnimalAdded(currentTime, regionManager, all, info);
+            }
+        }
+        notifiedId = next_id();
+    }
+
+    /**
+     * Adds a number of animals created from the same spec, compiled once, in the same order and with the same
+     * random draws as that many calls to {@link #add_animal(JSONObject)}, and notifies the
+     * observers once with onAnimalsAdded.
+     *
+     * @param a_json The JSON object describing the animals
+     * @param amount The number of animals to add
+     */
+    public void add_animals(JSONObject a_json, int amount) {
+        int first = animal_count();
+        Creator<Animal> creator = animalsFactory.compile(a_json);
+        for (int i = 0; i < amount; i++) {
+            insert_animal(creator.create(random.main()));
+        }
+        if (amount > 0) {
+            notify_added(first);
+        }
+    }
+
+    // notifies the animals from the given position of the list on, added at once
+    private void notify_added(int first) {
+        if (!observers.isEmpty()) {
+            AnimalSnapshot all = get_snapshot();
+            List<AnimalInfo> added = all.subList(first, all.size());
+            for (EcoSysObserver observer : observers) {
+                observer.onAnimalsAdded(currentTime, regionManager, all, added);
+            }
+        }
+        notifiedId = next_id();
+    }
+
+    private int next_id() {
+        return animalStore != null ? animalStore.next_id() : nextAnimalId;
     }
 
     /**
@@ -92,51 +252,362 @@ public class Simulator implements Observable<EcoSysObserver>, JSONable {
         return regionManager;
     }
 
+    public List<Animal> getAnimals() {
+        return animals;
+    }
+
     /**
-     * Retrieves an unmodifiable list of animals currently in the simulator.
+     * Retrieves an unmodifiable list of animals currently in the simulator. With the population
+     * store enabled the animals have no objects, so the list is the snapshot of their current
+     * state and does not follow later steps.
      *
      * @return An unmodifiable list of animal information.
      */
-
-    public List<Animal> getAnimals() {
-        return animals;
-    }
     public List<? extends AnimalInfo> get_animals() {
+        if (animalStore != null) {
+            return get_snapshot();
+        }
         return Collections.unmodifiableList(animals);
     }
 
+    private int animal_count() {
+        return animalStore != null ? animalStore.size() : animals.size();
+    }
+
+    /**
+     * Returns an immutable snapshot of the animals in their current state, the one given to the
+     * observers. It is only rebuilt when the animals changed since the last call.
+     *
+     * @return The snapshot
+     */
+    public AnimalSnapshot get_snapshot() {
+        if (snapshot == null || snapshot.get_epoch() != epoch) {
+            snapshot = animalStore != null ? animalStore.snapshot(epoch, currentTime) : AnimalSnapshot.of(animals, epoch, currentTime);
+        }
+        return snapshot;
+    }
+
+    private List<AnimalInfo> animals_info() {
+        return get_snapshot();
+    }
+
+    /**
+     * Selects where the animals are kept. With the population store enabled the animals created
+     * by the factory are copied into an {@link AnimalStore}, whose per-species kernels update them
+     * with the in-place tick semantics and the same results; the parallelism only applies to the
+     * region phase then.
+     *
+     * @param enabled Whether the animals are kept in a population store
+     * @throws IllegalStateException If there are animals in the simulator already
+     */
+    public void set_population_store(boolean enabled) {
+        if (animal_count() > 0) {
+            throw new IllegalStateException("The population store must be selected before adding animals");
+        }
+        animalStore = enabled ? new AnimalStore(random.main(), regionManager.get_parameters()) : null;
+        batchKernel = false;
+    }
+
+    /**
+     * Selects whether the population store updates the motion and counters of its NORMAL animals
+     * with its batch kernel at the start of every step, see {@link AnimalStore#set_batch_kernel}.
+     *
+     * @param enabled Whether the batch kernel is used
+     * @throws IllegalStateException If the population store is not enabled
+     */
+    public void set_batch_kernel(boolean enabled) {
+        if (animalStore == null) {
+            throw new IllegalStateException("The batch kernel needs the population store");
+        }
+        animalStore.set_batch_kernel(enabled);
+        batchKernel = enabled;
+    }
+
+    /**
+     * Sets the behaviour parameters of the simulation. They are fixed for the lifetime of the
+     * animals, so they must be set before adding any.
+     *
+     * @param params The parameters
+     * @throws IllegalStateException If there are animals in the simulation
+     */
+    public void set_parameters(Parameters params) {
+        if (animal_count() > 0) {
+            throw new IllegalStateException("The parameters must be set before adding animals");
+        }
+        regionManager.set_parameters(params);
+        if (animalStore != null) {
+            animalStore = new AnimalStore(random.main(), params);
+            animalStore.set_batch_kernel(batchKernel);
+        }
+    }
+
+    public Parameters get_parameters() {
+        return regionManager.get_parameters();
+    }
+
     public double get_time() {
         return currentTime;
     }
 
+    public RandomSource get_random() {
+        return random;
+    }
+
+    /**
+     * Selects how advance() updates the animals. With a parallelism of 0 the animals are updated
+     * in place one after the other. With a parallelism of 1 or more each step is split into a
+     * read-only decide phase, run on a ForkJoinPool with that many threads, and a sequential
+     * commit phase that applies kills, mating, feeding, region moves and births in list order.
+     * Every animal gets its own random stream split from the simulator seed, so a two-phase run
+     * gives the same result whatever the number of threads.
+     *
+     * @param threads The number of threads of the decide phase, or 0 for the in-place tick
+     */
+    public void set_parallelism(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("The parallelism cannot be negative");
+        }
+        if (tickPool != null) {
+            tickPool.shutdown();
+            tickPool = null;
+        }
+        if (threads == 0) {
+            for (Animal a : animals) {
+                a.set_two_phase(false, random.main());
+            }
+            regionManager.set_random(random, false);
+        } else {
+            tickPool = new ForkJoinPool(threads);
+            for (Animal a : animals) {
+                a.set_two_phase(true, random.split());
+            }
+            regionManager.set_random(random, true);
+        }
+    }
+
+    public int get_parallelism() {
+        return tickPool == null ? 0 : tickPool.getParallelism();
+    }
+
+    /**
+     * Shuts down the threads of the decide phase, if any. The simulator can be read afterwards
+     * but not advanced, unless set_parallelism is called again.
+     */
+    @Override
+    public void close() {
+        if (tickPool != null) {
+            tickPool.shutdown();
+        }
+    }
+
+    /**
+     * Selects which steps the observers are notified of. A step is notified when at least
+     * {@code every} steps have been done since the last notified one and, if the interval is
+     * positive, at least that much wall time has passed too. The dt given to onAdvanced is the
+     * simulated time since the last notification. By default every step is notified.
+     *
+     * @param every       The number of steps between two notifications, at least 1
+     * @param interval_ms The wall time between two notifications in milliseconds, or 0
+     * @throws IllegalArgumentException If every is less than 1 or the interval is negative
+     */
+    public void set_observer_sampling(int every, long interval_ms) {
+        if (every < 1 || interval_ms < 0) {
+            throw new IllegalArgumentException("Invalid observer sampling: every " + every + " steps, " + interval_ms + " ms");
+        }
+        notifyEvery = every;
+        notifyIntervalNanos = interval_ms * 1_000_000L;
+    }
+
     /**
      * Advances the simulation by the specified time increment.
      * Updates the time, animals' states, and their regions accordingly.
+     * The animals that died during the previous step are swept out first in a single pass,
+     * and the babies born during this step are added once every animal has been updated.
+     * The observers are notified if the step is sampled, see {@link #set_observer_sampling}:
+     * first with onAnimalsAdded for the babies born since the last notified step that are
+     * still alive, if any, then with onAdvanced, both from the same snapshot.
      *
      * @param dt The time increment for the simulation advancement.
      */
 
     public void advance(double dt) {
+        step(dt);
+        if (stepsSinceNotify >= notifyEvery
+                && (notifyIntervalNanos == 0 || System.nanoTime() - lastNotifyNanos >= notifyIntervalNanos)) {
+            notify_advanced();
+        }
+    }
+
+    /**
+     * Advances the simulation by a number of steps, notifying the observers of the sampled
+     * steps only, see {@link #set_observer_sampling}, and always of the last one, so that they
+     * end up showing the final state.
+     *
+     * @param steps The number of steps
+     * @param dt    The time increment of every step
+     */
+    public void fast_forward(int steps, double dt) {
+        for (int i = 0; i < steps; i++) {
+            advance(dt);
+        }
+        if (stepsSinceNotify > 0) {
+            notify_advanced();
+        }
+    }
+
+    private void step(double dt) {
         currentTime += dt;
-        for (int i = 0; i < animals.size(); i++) {
+        if (animalStore != null) {
+            animalStore.sweep_dead();
+            animalStore.advance(dt, regionManager);
+        } else {
+            advance_animals(dt);
+        }
+        regionManager.update_all_regions(dt, tickPool);
+        epoch++;
+        stepsSinceNotify++;
+        dtSinceNotify += dt;
+    }
+
+    private void notify_advanced() {
+        if (!observers.isEmpty()) {
+            AnimalSnapshot all = get_snapshot();
+            // the ids grow in the order of the list, so the babies are at its end
+            int first = all.index_of_id_from(notifiedId);
+            if (first < all.size()) {
+                List<AnimalInfo> born = all.subList(first, all.size());
+                for (EcoSysObserver observer : observers) {
+                    observer.onAnimalsAdded(currentTime, regionManager, all, born);
+                }
+            }
+            for (EcoSysObserver observer : observers) {
+                observer.onAdvanced(currentTime, regionManager, all, dtSinceNotify);
+            }
+        }
+        notifiedId = next_id();
+        stepsSinceNotify = 0;
+        dtSinceNotify = 0;
+        lastNotifyNanos = System.nanoTime();
+    }
+
+    private void notify_reset() {
+        epoch++;
+        notifiedId = next_id();
+        stepsSinceNotify = 0;
+        dtSinceNotify = 0;
+        lastNotifyNanos = System.nanoTime();
+        if (!observers.isEmpty()) {
+            List<AnimalInfo> all = animals_info();
+            for (EcoSysObserver observer : observers) {
+                observer.onReset(currentTime, regionManager, all);
+            }
+        }
+    }
+
+    private void advance_animals(double dt) {
+        sweep_dead();
+        if (tickPool != null) {
+            advance_two_phase(dt);
+        } else {
+            advance_in_place(dt);
+        }
+        // the babies are notified with the next sampled onAdvanced
+        for (Animal baby : births) {
+            insert_animal(baby);
+        }
+        births.clear();
+    }
+
+    /**
+     * Removes the dead animals from the list, keeping the order of the others, unregisters
+     * all of them from their regions in one batch and recycles them for the next babies.
+     */
+    private void sweep_dead() {
+        int n = animals.size();
+        int alive = 0;
+        for (int i = 0; i < n; i++) {
             Animal animal = animals.get(i);
             if (animal.get_state() == Animal.State.DEAD) {
-                animals.remove(animal);
-                regionManager.unregister_animal(animal);
+                counters.remove(animal._counted_species, animal._counted_state.ordinal());
+                deaths.add(animal);
             } else {
+                animals.set(alive++, animal);
+            }
+        }
+        if (!deaths.isEmpty()) {
+            animals.subList(alive, n).clear();
+            regionManager.unregister_animals(deaths);
+            for (Animal animal : deaths) {
+                pool.recycle(animal);
+            }
+            deaths.clear();
+        }
+    }
+
+    private void advance_in_place(double dt) {
+        int n = animals.size();
+        for (int i = 0; i < n; i++) {
+            Animal animal = animals.get(i);
+            // animals killed earlier in this step are swept at the start of the next one
+            if (animal.get_state() != Animal.State.DEAD) {
                 animal.update(dt);
                 regionManager.update_animal_region(animal);
-                regionManager.update_all_regions(dt);
+                recount(animal);
 
                 if (animal.is_pregnant()) {
-                    Animal baby = animal.deliver_baby();
-                    add_animal(baby);
+                    births.add(animal.deliver_baby());
                 }
             }
         }
+    }
 
-        for (EcoSysObserver observer : observers) {
-            observer.onAdvanced(currentTime, regionManager, new ArrayList<>(animals), dt);
+    private void advance_two_phase(double dt) {
+        for (Animal animal : animals) {
+            animal.snapshot();
+        }
+
+        // decide: every animal reads the snapshot and only writes its own fields
+        tickPool.invoke(new DecideTask(animals, 0, animals.size(), dt));
+
+        // commit: shared state is changed sequentially in list order
+        for (Animal animal : animals) {
+            animal.commit(dt);
+            regionManager.update_animal_region(animal);
+            recount(animal);
+            if (animal.is_pregnant()) {
+                births.add(animal.deliver_baby());
+            }
+        }
+    }
+
+    /**
+     * Runs the decide phase of a range of animals, splitting it in halves while it is large.
+     */
+    private static class DecideTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 256;
+        private final List<Animal> animals;
+        private final int from;
+        private final int to;
+        private final double dt;
+
+        DecideTask(List<Animal> animals, int from, int to, double dt) {
+            this.animals = animals;
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    animals.get(i).update(dt);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new DecideTask(animals, from, mid, dt), new DecideTask(animals, mid, to, dt));
+            }
         }
     }
 
@@ -144,25 +615,207 @@ public class Simulator implements Observable<EcoSysObserver>, JSONable {
     public JSONObject as_JSON() {
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("time", currentTime);
-        jsonObject.put("state", regionManager.as_JSON());
+        jsonObject.put("state", animalStore == null ? regionManager.as_JSON() : animalStore.as_JSON(regionManager));
         return jsonObject;
     }
 
+    @Override
+    public void write_JSON(JSONStream out) throws IOException {
+        out.begin_object(2);
+        out.key("time").value(currentTime);
+        out.key("state");
+        if (animalStore == null) {
+            regionManager.write_JSON(out);
+        } else {
+            animalStore.write_JSON(out, regionManager);
+        }
+        out.end_object();
+    }
+
+    /**
+     * Writes the time and the state of the simulation with the state in the compact schema of
+     * RegionManager.write_compact_JSON, where every animal appears once with numeric
+     * coordinates and codes, instead of the schema of {@link #as_JSON()}.
+     *
+     * @param out The stream
+     * @throws IOException If the stream cannot be written
+     */
+    public void write_compact_JSON(JSONStream out) throws IOException {
+        out.begin_object(2);
+        out.key("time").value(currentTime);
+        out.key("state");
+        if (animalStore == null) {
+            regionManager.write_compact_JSON(out);
+        } else {
+            animalStore.write_compact_JSON(out, regionManager);
+        }
+        out.end_object();
+    }
+
+    /**
+     * Writes a binary checkpoint of the whole simulation to a file: time, parameters, random
+     * streams, regions with their food, and every animal with its targets. The checkpoint is
+     * written next to the file and then moved over it, so an interrupted write leaves the
+     * previous checkpoint in place. It must be called between two steps.
+     *
+     * @param file The file to write
+     * @throws IOException              If the file cannot be written
+     * @throws IllegalArgumentException If a region, animal, strategy or stream of the
+     *                                  simulation is of a type that cannot be checkpointed
+     */
+    public void save_checkpoint(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (CheckpointWriter out = new CheckpointWriter(tmp)) {
+            out.put_int(Checkpoint.MAGIC);
+            out.put_int(Checkpoint.VERSION);
+            out.put_double(currentTime);
+            Map<String, Double> params = regionManager.get_parameters().as_map();
+            out.put_int(params.size());
+            for (Map.Entry<String, Double> e : params.entrySet()) {
+                out.put_string(e.getKey());
+                out.put_double(e.getValue());
+            }
+            for (long v : random.get_state()) {
+                out.put_long(v);
+            }
+            out.put_byte(checkpoint_mode());
+            regionManager.write_state(out);
+
+            if (animalStore != null) {
+                animalStore.write_state(out);
+            } else {
+                int[] ids = new int[pool.get_slots()];
+                Arrays.fill(ids, -1);
+                for (int i = 0; i < animals.size(); i++) {
+                    ids[animals.get(i)._pool_slot] = i;
+                }
+                out.put_int(nextAnimalId);
+                out.put_int(animals.size());
+                for (Animal a : animals) {
+                    Checkpoint.write_animal(out, a, random.main());
+                }
+                for (Animal a : animals) {
+                    Checkpoint.write_targets(out, a, ids);
+                }
+                regionManager.write_animals(out, ids);
+            }
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private int checkpoint_mode() {
+        if (animalStore != null) {
+            return Checkpoint.MODE_STORE;
+        }
+        return tickPool != null ? Checkpoint.MODE_TWO_PHASE : Checkpoint.MODE_IN_PLACE;
+    }
+
+    /**
+     * Replaces the state of the simulation with a checkpoint written by {@link #save_checkpoint}.
+     * The simulator must use the same update mode as the one that wrote it (in place, two-phase
+     * or population store); the number of threads of the two-phase mode may differ. Continuing
+     * the simulation gives the same results as if it had not been interrupted.
+     *
+     * @param file The file to read
+     * @throws IOException              If the file cannot be read or is not a valid checkpoint
+     * @throws IllegalArgumentException If the checkpoint was written in another update mode
+     */
+    public void restore_checkpoint(Path file) throws IOException {
+        CheckpointReader in = new CheckpointReader(file);
+        if (in.get_int() != Checkpoint.MAGIC) {
+            throw new IOException("Not a checkpoint: " + file);
+        }
+        int version = in.get_int();
+        if (version != Checkpoint.VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        double time = in.get_double();
+        int n_params = in.get_count();
+        Map<String, Double> values = new HashMap<>();
+        for (int k = 0; k < n_params; k++) {
+            String name = in.get_string();
+            values.put(name, in.get_double());
+        }
+        Parameters params = new Parameters(values);
+        long[] state = new long[5];
+        for (int k = 0; k < state.length; k++) {
+            state[k] = in.get_long();
+        }
+        int mode = in.get_byte();
+        if (mode != checkpoint_mode()) {
+            throw new IllegalArgumentException("The checkpoint was written in another update mode");
+        }
+        random.set_state(state);
+        RegionManager map = RegionManager.read_state(in, random, tickPool != null, params);
+
+        List<Animal> restored = new ArrayList<>();
+        AnimalPool restored_pool = new AnimalPool();
+        AnimalStore store = null;
+        int next_id = 0;
+        if (mode == Checkpoint.MODE_STORE) {
+            store = new AnimalStore(random.main(), params);
+            store.set_batch_kernel(batchKernel);
+            store.read_state(in, map);
+        } else {
+            next_id = in.get_int();
+            Animal[] list = new Animal[in.get_count()];
+            for (int i = 0; i < list.length; i++) {
+                list[i] = Checkpoint.read_animal(in, params, tickPool != null, random.main());
+                if (list[i]._id < 0 || list[i]._id >= next_id) {
+                    throw new IOException("Invalid checkpoint: bad animal id " + list[i]._id);
+                }
+                restored_pool.adopt(list[i]);
+            }
+            for (Animal a : list) {
+                Checkpoint.read_targets(in, a, list);
+            }
+            map.read_animals(in, list);
+            restored.addAll(Arrays.asList(list));
+        }
+
+        regionManager = map;
+        animalStore = store;
+        pool = restored_pool;
+        nextAnimalId = next_id;
+        counters = new PopulationCounters();
+        animals.clear();
+        animals.addAll(restored);
+        for (Animal a : restored) {
+            count(a);
+        }
+        births.clear();
+        deaths.clear();
+        currentTime = time;
+
+        notify_reset();
+    }
+
     public void reset(int cols, int rows, int width, int height) {
+        Parameters params = regionManager.get_parameters();
         regionManager = new RegionManager(cols, rows, width, height);
+        regionManager.set_random(random, tickPool != null);
+        regionManager.set_parameters(params);
         animals.clear();
+        pool = new AnimalPool();
+        nextAnimalId = 0;
+        counters = new PopulationCounters();
+        if (animalStore != null) {
+            animalStore.clear();
+        }
         currentTime = 0.0;
 
-        for (EcoSysObserver observer : observers) {
-            observer.onReset(currentTime, regionManager, new ArrayList<>(animals));
-        }
+        notify_reset();
     }
 
     @Override
     public void addObserver(EcoSysObserver o) {
         if (!observers.contains(o)) {
             observers.add(o);
-            o.onRegister(currentTime, regionManager, new ArrayList<>(animals));
+            o.onRegister(currentTime, regionManager, animals_info());
         }
     }
 
@@ -0,0 +1,313 @@
+package simulator.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Neighbour index of the registered animals over a {@link NeighbourGrid}. Every cell is split
+ * in buckets, two per species: the animals that were in the MATE state when last indexed, and
+ * the others. Searches by diet or for mates only visit the buckets that can match.
+ * <p>
+ * Every animal keeps the bucket and slot it occupies, so moving or removing it is a swap with
+ * the last animal of the bucket. The cell size grows with the largest sight range inserted.
+ */
+final class SpatialIndex {
+    // slack added when the cell size grows, so that slightly larger babies do not rebuild it again
+    static final double GROWTH = 1.25;
+    static final int BUCKETS_PER_SPECIES = 2;
+
+    private final NeighbourGrid _grid;
+    private final Map<String, Integer> _species_ids;
+    private final List<Diet> _species_diet;
+    private int _stride;
+    private Animal[][] _buckets;
+    private int[] _sizes;
+    private double _max_sight_range;
+
+    SpatialIndex(double width, double height) {
+        _grid = new NeighbourGrid(width, height);
+        _species_ids = new HashMap<>();
+        _species_diet = new ArrayList<>();
+        _max_sight_range = 0;
+        _stride = 0;
+        _buckets = new Animal[0][];
+        _sizes = new int[0];
+    }
+
+    private int bucket_of(Animal a) {
+        int cell = _grid.cell_of(a._pos.getX(), a._pos.getY());
+        int mate = a.get_state() == Animal.State.MATE ? 1 : 0;
+        return cell * _stride + a._index_species * BUCKETS_PER_SPECIES + mate;
+    }
+
+    /**
+     * Inserts an animal at its current position.
+     *
+     * @param a The animal
+     */
+    void insert(Animal a) {
+        Integer species = _species_ids.get(a.get_genetic_code());
+        boolean rebuild = false;
+        if (species == null) {
+            species = _species_diet.size();
+            _species_ids.put(a.get_genetic_code(), species);
+            _species_diet.add(a.get_diet());
+            rebuild = true;
+        }
+        a._index_species = species;
+
+        double r = a.get_sight_range();
+        if (r > _max_sight_range) {
+            _max_sight_range = r;
+            if (r > _grid.get_cell_size() || _grid.cells() == 1) {
+                _grid.set_cell_size(r * GROWTH);
+                rebuild = true;
+            }
+        }
+        if (rebuild) {
+            rebuild();
+        }
+        put(a, bucket_of(a));
+    }
+
+    /**
+     * Removes an animal from the index, if present.
+     *
+     * @param a The animal
+     */
+    void remove(Animal a) {
+        int bucket = a._index_bucket;
+        if (bucket < 0) {
+            return;
+        }
+        Animal[] items = _buckets[bucket];
+        int last = --_sizes[bucket];
+        Animal moved = items[last];
+        items[a._index_slot] = moved;
+        moved._index_slot = a._index_slot;
+        items[last] = null;
+        a._index_bucket = -1;
+    }
+
+    /**
+     * Moves an animal to the bucket of its current position and state.
+     *
+     * @param a The animal
+     */
+    void update(Animal a) {
+        int bucket = bucket_of(a);
+        if (bucket != a._index_bucket) {
+            remove(a);
+            put(a, bucket);
+        }
+    }
+
+    private void put(Animal a, int bucket) {
+        Animal[] items = _buckets[bucket];
+        int n = _sizes[bucket];
+        if (items == null) {
+            items = _buckets[bucket] = new Animal[4];
+        } else if (n == items.length) {
+            items = _buckets[bucket] = Arrays.copyOf(items, n * 2);
+        }
+        items[n] = a;
+        a._index_bucket = bucket;
+        a._index_slot = n;
+        _sizes[bucket] = n + 1;
+    }
+
+    /**
+     * Lays out the buckets for the current grid and species and reinserts the animals,
+     * visiting the old buckets in order.
+     */
+    private void rebuild() {
+        Animal[][] old_buckets = _buckets;
+        int[] old_sizes = _sizes;
+        _stride = _species_diet.size() * BUCKETS_PER_SPECIES;
+        _buckets = new Animal[_grid.cells() * _stride][];
+        _sizes = new int[_buckets.length];
+        for (int b = 0; b < old_buckets.length; b++) {
+            for (int k = 0; k < old_sizes[b]; k++) {
+                Animal a = old_buckets[b][k];
+                put(a, bucket_of(a));
+            }
+        }
+    }
+
+    /**
+     * Writes the layout of the index and the animals of every bucket, in order, to a checkpoint,
+     * so that a restored index visits the candidates of a search in the same order.
+     *
+     * @param out The checkpoint
+     * @param ids The position in the animal list of every pool slot
+     * @throws IOException If the checkpoint cannot be written
+     */
+    void write_state(CheckpointWriter out, int[] ids) throws IOException {
+        out.put_double(_grid.get_cell_size());
+        out.put_double(_max_sight_range);
+        out.put_int(_species_diet.size());
+        String[] codes = new String[_species_diet.size()];
+        for (Map.Entry<String, Integer> e : _species_ids.entrySet()) {
+            codes[e.getValue()] = e.getKey();
+        }
+        for (int s = 0; s < codes.length; s++) {
+            out.put_string(codes[s]);
+            out.put_byte(_species_diet.get(s).ordinal());
+        }
+        out.put_int(_buckets.length);
+        for (int b = 0; b < _buckets.length; b++) {
+            out.put_int(_sizes[b]);
+            for (int k = 0; k < _sizes[b]; k++) {
+                out.put_int(ids[_buckets[b][k]._pool_slot]);
+            }
+        }
+    }
+
+    /**
+     * Restores the layout and the buckets written by {@link #write_state}.
+     *
+     * @param in      The checkpoint
+     * @param animals The animal list of the simulator
+     * @throws IOException If the checkpoint is not valid
+     */
+    void read_state(CheckpointReader in, Animal[] animals) throws IOException {
+        double cell_size = in.get_double();
+        _max_sight_range = in.get_double();
+        int species = in.get_count();
+        Diet[] diets = Diet.values();
+        _species_ids.clear();
+        _species_diet.clear();
+        for (int s = 0; s < species; s++) {
+            String code = in.get_string();
+            int diet = in.get_byte();
+            if (diet < 0 || diet >= diets.length) {
+                throw new IOException("Invalid checkpoint: unknown diet " + diet);
+            }
+            _species_ids.put(code, s);
+            _species_diet.add(diets[diet]);
+        }
+        _grid.set_cell_size(cell_size);
+        _stride = species * BUCKETS_PER_SPECIES;
+        int buckets = in.get_count();
+        if (buckets != _grid.cells() * _stride) {
+            throw new IOException("Invalid checkpoint: the neighbour index does not match the map");
+        }
+        _buckets = new Animal[buckets][];
+        _sizes = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            int n = in.get_count();
+            if (n > 0) {
+                _buckets[b] = new Animal[Math.max(n, 4)];
+            }
+            for (int k = 0; k < n; k++) {
+                Animal a = Checkpoint.animal_at(animals, in.get_int());
+                a._index_species = (b % _stride) / BUCKETS_PER_SPECIES;
+                put(a, b);
+            }
+        }
+    }
+
+    /**
+     * Adds to the result the animals satisfying the filter whose observed position is within
+     * the sight range of the given animal, with their squared distances to it.
+     *
+     * @param a      The searching animal
+     * @param filter The condition the animals must satisfy
+     * @param result The neighbours the animals are added to
+     */
+    void query(Animal a, Predicate<Animal> filter, Neighbours result) {
+        double x = a._pos.getX();
+        double y = a._pos.getY();
+        double r = a.get_sight_range();
+        double r2 = r * r;
+        int col_mn = _grid.col_of(x - r);
+        int col_mx = _grid.col_of(x + r);
+        int row_mn = _grid.row_of(y - r);
+        int row_mx = _grid.row_of(y + r);
+        int cols = _grid.get_cols();
+        for (int row = row_mn; row <= row_mx; row++) {
+            for (int col = col_mn; col <= col_mx; col++) {
+                int first = (row * cols + col) * _stride;
+                for (int bucket = first; bucket < first + _stride; bucket++) {
+                    Animal[] items = _buckets[bucket];
+                    for (int k = 0, n = _sizes[bucket]; k < n; k++) {
+                        Animal b = items[k];
+                        double dx = b.observed_x() - x;
+                        double dy = b.observed_y() - y;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 <= r2 && filter.test(b)) {
+                            result.add(b, d2);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the animals in range satisfying the filter to a streaming strategy and returns
+     * the one it selects, without allocating. Only the buckets of the species of the given
+     * diet, or only the MATE bucket of the species of the searching animal, are visited.
+     *
+     * @param a        The searching animal
+     * @param diet     The diet of the candidates, or null for any diet
+     * @param mates    Whether only candidates of the same species in the MATE state are wanted
+     * @param filter   The condition on the searching animal and a candidate
+     * @param strategy The strategy that ranks the candidates
+     * @return The selected animal, or null if there is none
+     */
+    Animal select(Animal a, Diet diet, boolean mates, BiPredicate<Animal, Animal> filter, StreamingSelectionStrategy strategy) {
+        double x = a._pos.getX();
+        double y = a._pos.getY();
+        double r = a.get_sight_range();
+        double r2 = r * r;
+        int col_mn = _grid.col_of(x - r);
+        int col_mx = _grid.col_of(x + r);
+        int row_mn = _grid.row_of(y - r);
+        int row_mx = _grid.row_of(y + r);
+        int cols = _grid.get_cols();
+        int species_count = _species_diet.size();
+        boolean first_only = strategy.first_only();
+
+        Animal best = null;
+        double best_rank = 0;
+        for (int row = row_mn; row <= row_mx; row++) {
+            for (int col = col_mn; col <= col_mx; col++) {
+                int first = (row * cols + col) * _stride;
+                for (int s = 0; s < species_count; s++) {
+                    if (mates ? s != a._index_species : diet != null && _species_diet.get(s) != diet) {
+                        continue;
+                    }
+                    for (int m = mates ? 1 : 0; m < BUCKETS_PER_SPECIES; m++) {
+                        int bucket = first + s * BUCKETS_PER_SPECIES + m;
+                        Animal[] items = _buckets[bucket];
+                        for (int k = 0, n = _sizes[bucket]; k < n; k++) {
+                            Animal b = items[k];
+                            double dx = b.observed_x() - x;
+                            double dy = b.observed_y() - y;
+                            double d2 = dx * dx + dy * dy;
+                            if (d2 > r2 || !filter.test(a, b)) {
+                                continue;
+                            }
+                            if (first_only) {
+                                return b;
+                            }
+                            double rank = strategy.rank(a, b, d2);
+                            if (best == null || rank < best_rank) {
+                                best = b;
+                                best_rank = rank;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,37 @@
+package simulator.model;
+
+/**
+ * Behaviour of one species of the {@link AnimalStore}, applied to the animal at a given index of the store arrays.
+ */
+interface SpeciesKernel {
+    String get_genetic_code();
+
+    Diet get_diet();
+
+    /**
+     * Returns the second selection strategy of the animal (danger for herbivores, hunting for carnivores).
+     *
+     * @param a The animal being copied into the store
+     * @return The strategy, or null if the species has none
+     */
+    SelectionStrategy get_aux_strategy(Animal a);
+
+    /**
+     * Returns the energy the animals lose per time unit in the NORMAL state.
+     */
+    double get_energy_rate();
+
+    /**
+     * Returns the desire the animals gain per time unit in the NORMAL state.
+     */
+    double get_desire_rate();
+
+    /**
+     * Updates the animal stored at the given index.
+     *
+     * @param s  The store
+     * @param i  The index of the animal
+     * @param dt The time interval for the update
+     */
+    void update(AnimalStore s, int i, double dt);
+}
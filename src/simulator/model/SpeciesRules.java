@@ -0,0 +1,143 @@
+package simulator.model;
+
+/**
+ * Thresholds, paces and state transitions of the sheep and the wolves, shared by {@link Sheep}
+ * and {@link Wolf} and by their kernels over the arrays of an {@link AnimalStore}, so that both
+ * implementations of the state machines take their decisions from the same code. Each side
+ * keeps its own traversal of the animals and targets; only what they compute from the numbers
+ * of an animal is here.
+ */
+final class SpeciesRules {
+    // desire above which a NORMAL sheep with no danger in sight looks for a mate
+    static final double SHEEP_MATE_DESIRE = 65.0;
+    // factor of the energy a hunting wolf spends, over the one of its other states
+    static final double HUNTING_ENERGY_FACTOR = 1.2;
+
+    private SpeciesRules() {
+    }
+
+    /**
+     * Returns the factor of the speed of an animal wandering in the NORMAL state.
+     *
+     * @param p      The parameters of the simulation
+     * @param energy The energy of the animal
+     * @return The factor, 1 at full energy
+     */
+    static double normal_pace(Parameters p, double energy) {
+        return Math.exp((energy - p._maxenergy) * p._movefactor);
+    }
+
+    /**
+     * Returns the factor of the speed of an animal running from a danger, after a prey or to a
+     * mate, before the speed factor of its species.
+     *
+     * @param p      The parameters of the simulation
+     * @param energy The energy of the animal
+     * @return The factor, 1 at full energy
+     */
+    static double chase_pace(Parameters p, double energy) {
+        return Math.exp((energy - p._maxenergy) * p._multiplicativeMath);
+    }
+
+    static double hunting_energy_rate(Parameters p) {
+        return p._energyreductionWolf * HUNTING_ENERGY_FACTOR;
+    }
+
+    static boolean sheep_dies(Parameters p, double energy, double age) {
+        return energy <= p._lowestenergy || age > p._ageLimit;
+    }
+
+    static boolean wolf_dies(Parameters p, double energy, double age) {
+        return energy <= p._lowestenergy || age > p._wolfAge;
+    }
+
+    /**
+     * Returns the state of a sheep after it looked for a danger, in the NORMAL state.
+     *
+     * @param danger Whether a danger was found
+     * @param desire The desire of the sheep
+     * @param state  The current state
+     * @return The new state
+     */
+    static Animal.State sheep_after_normal(boolean danger, double desire, Animal.State state) {
+        if (danger) {
+            return Animal.State.DANGER;
+        }
+        return desire > SHEEP_MATE_DESIRE ? Animal.State.MATE : state;
+    }
+
+    /**
+     * Returns the state of a sheep in danger that found no danger any more.
+     *
+     * @param p      The parameters of the simulation
+     * @param desire The desire of the sheep
+     * @return The new state
+     */
+    static Animal.State sheep_out_of_danger(Parameters p, double desire) {
+        return desire < p._desireUpperBound ? Animal.State.NORMAL : Animal.State.MATE;
+    }
+
+    /**
+     * Returns the state of a sheep after it looked for a danger, in the MATE state.
+     *
+     * @param p      The parameters of the simulation
+     * @param danger Whether a danger was found
+     * @param desire The desire of the sheep
+     * @param state  The current state
+     * @return The new state
+     */
+    static Animal.State sheep_after_mate(Parameters p, boolean danger, double desire, Animal.State state) {
+        if (danger) {
+            return Animal.State.DANGER;
+        }
+        return desire < p._desireUpperBound ? Animal.State.NORMAL : state;
+    }
+
+    /**
+     * Returns the state of a wolf at the end of its update in the NORMAL state.
+     *
+     * @param p      The parameters of the simulation
+     * @param energy The energy of the wolf
+     * @param desire The desire of the wolf
+     * @param state  The current state
+     * @return The new state
+     */
+    static Animal.State wolf_after_normal(Parameters p, double energy, double desire, Animal.State state) {
+        if (energy < p._energyBound) {
+            return Animal.State.HUNGER;
+        }
+        return desire > p._desireUpperBound ? Animal.State.MATE : state;
+    }
+
+    /**
+     * Returns the state of a wolf that has just eaten its prey.
+     *
+     * @param p      The parameters of the simulation
+     * @param energy The energy of the wolf, after the meal
+     * @param desire The desire of the wolf
+     * @param state  The current state
+     * @return The new state
+     */
+    static Animal.State wolf_after_meal(Parameters p, double energy, double desire, Animal.State state) {
+        if (energy > p._energyBound) {
+            return desire < p._desireUpperBound ? Animal.State.NORMAL : Animal.State.MATE;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the state of a wolf at the end of its update in the MATE state.
+     *
+     * @param p      The parameters of the simulation
+     * @param energy The energy of the wolf
+     * @param desire The desire of the wolf
+     * @param state  The current state
+     * @return The new state
+     */
+    static Animal.State wolf_after_mate(Parameters p, double energy, double desire, Animal.State state) {
+        if (energy < p._energyBound) {
+            return Animal.State.HUNGER;
+        }
+        return desire < p._desireUpperBound ? Animal.State.NORMAL : state;
+    }
+}
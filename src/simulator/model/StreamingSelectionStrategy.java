@@ -0,0 +1,29 @@
+package simulator.model;
+
+/**
+ * Selection strategy that can select among candidates streamed one at a time, as the spatial
+ * index visits them, without building a candidate list. The index ranks every candidate and
+ * keeps the one with the smallest rank, the first one streamed on ties, so that the result is
+ * the one {@link #select} gives on the list of the same candidates in the same order.
+ */
+public interface StreamingSelectionStrategy extends SelectionStrategy {
+    /**
+     * Ranks a streamed candidate. The candidate with the smallest rank is selected, the first
+     * one streamed on ties.
+     *
+     * @param a         The animal that selects
+     * @param candidate The candidate
+     * @param distance2 The squared distance between the animal and the candidate
+     * @return The rank of the candidate
+     */
+    double rank(Animal a, Animal candidate, double distance2);
+
+    /**
+     * Whether every candidate has the same rank, so that the stream can stop at the first one.
+     *
+     * @return True if the first candidate is selected
+     */
+    default boolean first_only() {
+        return false;
+    }
+}
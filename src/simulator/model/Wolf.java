@@ -3,10 +3,13 @@ package simulator.model;
 import simulator.misc.Utils;
 import simulator.misc.Vector2D;
 
+import java.util.random.RandomGenerator;
+
 public class Wolf extends Animal {
-    private final SelectionStrategy _hunting_strategy;
-    private Animal _hunt_target;
-    private static final double _wolfSightRange = 50.0;
+    private SelectionStrategy _hunting_strategy;
+    // handle of the hunt target in the pool of the wolf
+    private long _hunt_target;
+    static final double _wolfSightRange = 50.0;
     private static final double _wolfSpeed = 60.0;
     /**
      * Constructs a Wolf with the specified mate strategy, hunting strategy, and position.
@@ -16,16 +19,61 @@ public class Wolf extends Animal {
      * @param pos             The position of the wolf.
      */
     public Wolf(SelectionStrategy mate_strategy, SelectionStrategy danger_strategy, Vector2D pos) {
-        super("Wolf", Diet.CARNIVORE, _wolfSightRange, _wolfSpeed, mate_strategy, pos);
+        this(mate_strategy, danger_strategy, pos, Utils._rand);
+    }
+
+    /**
+     * Constructs a Wolf with the specified strategies and position, drawing its random attributes from the given stream.
+     *
+     * @param mate_strategy   The mate selection strategy.
+     * @param danger_strategy The hunting selection strategy.
+     * @param pos             The position of the wolf.
+     * @param rand            The random stream of the wolf.
+     */
+    public Wolf(SelectionStrategy mate_strategy, SelectionStrategy danger_strategy, Vector2D pos, RandomGenerator rand) {
+        super("Wolf", Diet.CARNIVORE, _wolfSightRange, _wolfSpeed, mate_strategy, pos, rand);
         this._mate_strategy = mate_strategy;
         this._hunting_strategy = danger_strategy;
-        this._hunt_target = null;
+        this._hunt_target = AnimalPool.NONE;
     }
 
     protected Wolf(Wolf p1, Animal p2) {
         super(p1, p2);
         this._hunting_strategy = p1.get_hunting_strategy();
-        this._hunt_target = null;
+        this._hunt_target = AnimalPool.NONE;
+    }
+
+    /**
+     * Returns a baby of this wolf and the given mate, reusing a recycled wolf of the pool if there is one.
+     *
+     * @param mate The mate of the wolf
+     * @return The baby
+     */
+    private Wolf new_baby(Animal mate) {
+        Wolf baby = _pool == null ? null : _pool.take(Wolf.class);
+        if (baby == null) {
+            return new Wolf(this, mate);
+        }
+        baby.born_of(this, mate);
+        baby._hunting_strategy = _hunting_strategy;
+        baby._hunt_target = AnimalPool.NONE;
+        return baby;
+    }
+
+    @Override
+    long get_aux_target() {
+        return _hunt_target;
+    }
+
+    @Override
+    void set_aux_target(long handle) {
+        _hunt_target = handle;
+    }
+
+    @Override
+    protected void release() {
+        super.release();
+        _hunt_target = AnimalPool.NONE;
     }
 
     /**
@@ -33,7 +81,7 @@ public class Wolf extends Animal {
      *
      * @return The hunting selection strategy of the wolf.
      */
-    private SelectionStrategy get_hunting_strategy() {
+    SelectionStrategy get_hunting_strategy() {
         return this._hunting_strategy;
     }
 
@@ -58,15 +106,14 @@ public class Wolf extends Animal {
                 break;
         }
         if (IsOutOfMap()) {
-            _pos = adjust_position(_pos);
+            adjust_position();
             this._state = State.NORMAL;
             updateAsNormal(dt);
         }
-        if (this._energy <= _lowestenergy || this._age > _wolfAge) {
+        if (SpeciesRules.wolf_dies(_params, _energy, _age)) {
             this._state = State.DEAD;
         }
-        _energy += this._region_mngr.get_food(this, dt);
-        checkEnergy();
+        feed(dt);
     }
 
     /**
@@ -75,26 +122,22 @@ public class Wolf extends Animal {
      * @param dt The time increment for the update.
      */
     private void updateAsNormal(double dt) {
-        _hunt_target = null;
-        _mate_target = null;
+        _hunt_target = AnimalPool.NONE;
+        _mate_target = AnimalPool.NONE;
 
-        if (_pos.distanceTo(_dest) < distanceDest) {
-            _dest = new Vector2D(Utils._rand.nextDouble() * _region_mngr.get_width(), Utils._rand.nextDouble() * _region_mngr.get_height());
+        if (_pos.distanceSquaredTo(_dest) < _params.distanceDest * _params.distanceDest) {
+            _dest.set(_rand.nextDouble() * _region_mngr.get_width(), _rand.nextDouble() * _region_mngr.get_height());
         }
-        move(this._speed * dt * Math.exp((this._energy - _maxenergy) * _movefactor));
+        move(this._speed * dt * SpeciesRules.normal_pace(_params, _energy));
         this._age += dt;
 
-        _energy -= _energyreductionWolf * dt;
+        _energy -= _params._energyreductionWolf * dt;
         checkEnergy();
 
-        _desire += _desirereductionWolf * dt;
+        _desire += _params._desirereductionWolf * dt;
         checkDesire();
 
-        if (this._energy < _energyBound) {
-            _state = State.HUNGER;
-        } else if (this._desire > _desireUpperBound) {
-            this._state = State.MATE;
-        }
+        _state = SpeciesRules.wolf_after_normal(_params, _energy, _desire, _state);
     }
 
     /**
@@ -103,91 +146,96 @@ public class Wolf extends Animal {
      * @param dt The time increment for the update.
      */
     private void updateAsHunger(double dt) {
-        _mate_target = null;
-        if ((this._hunt_target == null) ||
-                (this._hunt_target != null && (this._hunt_target._state == State.DEAD ||
-                        this._hunt_target.get_position().distanceTo(_pos) > _wolfSightRange))) {
-            this._hunt_target = searchForHuntTarget(_region_mngr, this._hunting_strategy);
-            if (this._hunt_target == null) {
+        _mate_target = AnimalPool.NONE;
+        Animal prey = resolve(_hunt_target);
+        if ((prey == null) ||
+                (prey.observed_state() == State.DEAD ||
+                        distance2_to(prey) > _wolfSightRange * _wolfSightRange)) {
+            prey = searchForHuntTarget(_region_mngr, this._hunting_strategy);
+            this._hunt_target = AnimalPool.handle(prey);
+            if (prey == null) {
                 updateAsNormal(dt);
             }
         }
-        if (this._hunt_target != null) {
-            _dest = _hunt_target.get_position();
-            move(_speedFactorWolf * this._speed * dt * Math.exp((_energy - _maxenergy) * _multiplicativeMath));
+        if (prey != null) {
+            set_dest_to(prey);
+            move(_params._speedFactorWolf * this._speed * dt * SpeciesRules.chase_pace(_params, _energy));
 
             this._age += dt;
 
-            _energy -= _energyreductionWolf * 1.2 * dt;
+            _energy -= SpeciesRules.hunting_energy_rate(_params) * dt;
             checkEnergy();
 
-            _desire += _desirereductionWolf * dt;
+            _desire += _params._desirereductionWolf * dt;
             checkDesire();
 
-            if (this._pos.distanceTo(_hunt_target.get_position()) < distanceDest) {
-                this._hunt_target.setState(State.DEAD);
-                this._hunt_target = null;
-                _energy += _energyBound;
-                checkEnergy();
-
-                if (this._energy > _energyBound) {
-                    if (this._desire < _desireUpperBound) {
-                        this._state = State.NORMAL;
-                    } else {
-                        this._state = State.MATE;
-                    }
-                }
+            if (distance2_to(prey) < _params.distanceDest * _params.distanceDest) {
+                kill(prey);
+                this._hunt_target = AnimalPool.NONE;
             }
         }
     }
 
+    /**
+     * Feeds the wolf with its prey. In two-phase mode this happens at commit time, so the state
+     * only changes if the wolf is still hungry then.
+     *
+     * @param prey The killed animal
+     */
+    @Override
+    protected void on_kill(Animal prey) {
+        _energy += _params._energyBound;
+        checkEnergy();
+
+        if (_state == State.HUNGER) {
+            _state = SpeciesRules.wolf_after_meal(_params, _energy, _desire, _state);
+        }
+    }
+
     /**
      * Updates the wolf's state and behavior when it is in the MATE state.
      *
      * @param dt The time increment for the update.
      */
     private void updateAsMate(double dt) {
-        _hunt_target = null;
-        if (_mate_target != null &&
-                (_mate_target.get_state() == State.DEAD ||
-                        _mate_target.get_position().distanceTo(_pos) > _wolfSightRange)) {
-            _mate_target = null;
-
+        _hunt_target = AnimalPool.NONE;
+        Animal mate = get_mate_target();
+        if (mate != null &&
+                (mate.observed_state() == State.DEAD ||
+                        distance2_to(mate) > _wolfSightRange * _wolfSightRange)) {
+            mate = null;
+            _mate_target = AnimalPool.NONE;
         }
-        if (_mate_target == null) {
-            _mate_target = searchForMate(_region_mngr, _mate_strategy);
-            if (_mate_target == null) {
+        if (mate == null) {
+            mate = searchForMate(_region_mngr, _mate_strategy);
+            set_mate_target(mate);
+            if (mate == null) {
                 updateAsNormal(dt);
             }
         }
-        if (_mate_target != null) {
-            _dest = _mate_target.get_position();
-            move(_speedFactorWolf * dt * this._speed * Math.exp((_energy - _maxenergy) * _multiplicativeMath));
+        if (mate != null) {
+            set_dest_to(mate);
+            move(_params._speedFactorWolf * dt * this._speed * SpeciesRules.chase_pace(_params, _energy));
             _age += dt;
 
-            _energy -= _energyreductionWolf * _multiplicativeTime * dt;
+            _energy -= _params._energyreductionWolf * _params._multiplicativeTime * dt;
             checkEnergy();
 
-            _desire += _desirereductionWolf * dt;
+            _desire += _params._desirereductionWolf * dt;
             checkDesire();
 
-            if (_pos.distanceTo(_mate_target.get_position()) < distanceDest) {
+            if (distance2_to(mate) < _params.distanceDest * _params.distanceDest) {
                 setDesire(0);
-                _mate_target.setDesire(0);
+                reset_mate_desire(mate);
 
-                if (!is_pregnant() && Utils._rand.nextDouble() < _createBaby) {
-                    _baby = new Wolf(this, _mate_target);
-                    _energy -= _sexEnergy;
+                if (!is_pregnant() && _rand.nextDouble() < _params._createBaby) {
+                    _baby = new_baby(mate);
+                    _energy -= _params._sexEnergy;
                     checkEnergy();
-                    _mate_target = null;
+                    _mate_target = AnimalPool.NONE;
                 }
             }
         }
-        if (_energy < _energyBound) {
-            _state = State.HUNGER;
-        }
-        if (_energy >= _energyBound && _desire < _desireUpperBound) {
-            _state = State.NORMAL;
-        }
+        _state = SpeciesRules.wolf_after_mate(_params, _energy, _desire, _state);
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package simulator.model;
+
+/**
+ * Wolf behaviour over the arrays of an {@link AnimalStore}, following {@link Wolf}.
+ * The second target of a wolf is its hunt target.
+ */
+final class WolfKernel implements SpeciesKernel {
+    private final Parameters _params;
+
+    WolfKernel(Parameters params) {
+        _params = params;
+    }
+
+    @Override
+    public String get_genetic_code() {
+        return "Wolf";
+    }
+
+    @Override
+    public Diet get_diet() {
+        return Diet.CARNIVORE;
+    }
+
+    @Override
+    public SelectionStrategy get_aux_strategy(Animal a) {
+        return ((Wolf) a).get_hunting_strategy();
+    }
+
+    @Override
+    public double get_energy_rate() {
+        return _params._energyreductionWolf;
+    }
+
+    @Override
+    public double get_desire_rate() {
+        return _params._desirereductionWolf;
+    }
+
+    @Override
+    public void update(AnimalStore s, int i, double dt) {
+        byte state = s._state[i];
+        if (state == AnimalStore.NORMAL) {
+            update_as_normal(s, i, dt);
+        } else if (state == AnimalStore.HUNGER) {
+            update_as_hunger(s, i, dt);
+        } else if (state == AnimalStore.MATE) {
+            update_as_mate(s, i, dt);
+        }
+        if (s.adjust_if_out(i)) {
+            s._state[i] = AnimalStore.NORMAL;
+            update_as_normal(s, i, dt);
+        }
+        if (SpeciesRules.wolf_dies(_params, s._energy[i], s._age[i])) {
+            s._state[i] = AnimalStore.DEAD;
+        }
+        s._energy[i] += s.food(i, dt);
+        s.check_energy(i);
+    }
+
+    private void update_as_normal(AnimalStore s, int i, double dt) {
+        s._aux_target[i] = -1;
+        s._mate_target[i] = -1;
+        s.normal_update(i, dt, get_energy_rate(), get_desire_rate());
+
+        s.set_state(i, SpeciesRules.wolf_after_normal(_params, s._energy[i], s._desire[i], s.state(i)));
+    }
+
+    private void update_as_hunger(AnimalStore s, int i, double dt) {
+        s._mate_target[i] = -1;
+        int prey = s._aux_target[i];
+        if (prey < 0 || s._state[prey] == AnimalStore.DEAD || s.distance2(prey, i) > Wolf._wolfSightRange * Wolf._wolfSightRange) {
+            prey = s.search(i, AnimalStore.SEARCH_HERBIVORE, s._aux_strategy[i]);
+            s._aux_target[i] = prey;
+            if (prey < 0) {
+                update_as_normal(s, i, dt);
+            }
+        }
+        if (prey >= 0) {
+            s.dest_to(i, prey);
+            s.move(i, _params._speedFactorWolf * s._speed[i] * dt * SpeciesRules.chase_pace(_params, s._energy[i]));
+
+            s._age[i] += dt;
+
+            s._energy[i] -= SpeciesRules.hunting_energy_rate(_params) * dt;
+            s.check_energy(i);
+
+            s._desire[i] += _params._desirereductionWolf * dt;
+            s.check_desire(i);
+
+            if (s.distance2(i, prey) < _params.distanceDest * _params.distanceDest) {
+                s._state[prey] = AnimalStore.DEAD;
+                s.recount(prey);
+                prey = -1;
+                s._energy[i] += _params._energyBound;
+                s.check_energy(i);
+
+                s.set_state(i, SpeciesRules.wolf_after_meal(_params, s._energy[i], s._desire[i], s.state(i)));
+            }
+        }
+        s._aux_target[i] = prey;
+    }
+
+    private void update_as_mate(AnimalStore s, int i, double dt) {
+        s._aux_target[i] = -1;
+        int mate = s._mate_target[i];
+        if (mate >= 0 && (s._state[mate] == AnimalStore.DEAD || s.distance2(mate, i) > Wolf._wolfSightRange * Wolf._wolfSightRange)) {
+            mate = -1;
+        }
+        if (mate < 0) {
+            mate = s.search(i, AnimalStore.SEARCH_MATE, s._mate_strategy[i]);
+            s._mate_target[i] = mate;
+            if (mate < 0) {
+                update_as_normal(s, i, dt);
+            }
+        }
+        if (mate >= 0) {
+            s.dest_to(i, mate);
+            s.move(i, _params._speedFactorWolf * dt * s._speed[i] * SpeciesRules.chase_pace(_params, s._energy[i]));
+            s._age[i] += dt;
+
+            s._energy[i] -= _params._energyreductionWolf * _params._multiplicativeTime * dt;
+            s.check_energy(i);
+
+            s._desire[i] += _params._desirereductionWolf * dt;
+            s.check_desire(i);
+
+            if (s.distance2(i, mate) < _params.distanceDest * _params.distanceDest) {
+                s._desire[i] = 0;
+                s._desire[mate] = 0;
+
+                if (s.random().nextDouble() < _params._createBaby) {
+                    s.give_birth(i, mate);
+                    s._energy[i] -= _params._sexEnergy;
+                    s.check_energy(i);
+                    mate = -1;
+                }
+            }
+        }
+        s._mate_target[i] = mate;
+        s.set_state(i, SpeciesRules.wolf_after_mate(_params, s._energy[i], s._desire[i], s.state(i)));
+    }
+}
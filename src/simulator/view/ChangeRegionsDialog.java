@@ -229,6 +229,11 @@ public class ChangeRegionsDialog extends JDialog implements EcoSysObserver {
 
     }
 
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+
+    }
+
     @Override
     public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
 
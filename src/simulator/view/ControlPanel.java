@@ -12,6 +12,9 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 
 public class ControlPanel extends JPanel {
+    // wall time of a frame, the views are refreshed at most once per frame while running
+    private static final long FRAME_MS = 1000 / 60;
+
     private final Controller _ctrl;
     private ChangeRegionsDialog _changeRegionsDialog;
     private JToolBar _toolBar;
@@ -26,9 +29,11 @@ public class ControlPanel extends JPanel {
     private final JSpinner _stepsSpinner = new JSpinner(new SpinnerNumberModel(10000, 1, 100000000, 1));
     private JTextField _deltaTimeField;
     private MapViewer _mapViewer;
+    private int _steps_per_frame = 1;
 
     ControlPanel(Controller ctrl) {
         _ctrl = ctrl;
+        _ctrl.set_observer_sampling(1, FRAME_MS);
         initGUI();
     }
 
@@ -166,6 +171,7 @@ public class ControlPanel extends JPanel {
         _stopButton.setEnabled(true);
         double dt = Double.parseDouble(_deltaTimeField.getText());
         int steps = (int) _stepsSpinner.getValue();
+        _steps_per_frame = 1;
         run_sim(steps, dt);
     }
 
@@ -177,10 +183,19 @@ public class ControlPanel extends JPanel {
 
         if (n > 0 && !_stopped) {
             try {
-                _ctrl.advance(dt);
+                // as many steps as fit in a frame, the views only show the last one
+                int k = Math.min(n, _steps_per_frame);
+                long start = System.nanoTime();
+                _ctrl.fast_forward(k, dt);
+                long elapsed_ms = (System.nanoTime() - start) / 1_000_000;
+                if (elapsed_ms * 2 < FRAME_MS && k == _steps_per_frame) {
+                    _steps_per_frame *= 2;
+                } else if (elapsed_ms > FRAME_MS && _steps_per_frame > 1) {
+                    _steps_per_frame /= 2;
+                }
                 SwingUtilities.invokeLater(() -> {
                     try {
-                        run_sim(n - 1, dt);
+                        run_sim(n - k, dt);
                         Thread.sleep(20);
 
                     } catch (InterruptedException e) {
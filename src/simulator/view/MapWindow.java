@@ -94,6 +94,11 @@ public class MapWindow extends JFrame implements EcoSysObserver{
 
     }
 
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+
+    }
+
     @Override
     public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
 
@@ -77,6 +77,13 @@ public class RegionsTableModel extends AbstractTableModel implements EcoSysObser
         fireTableDataChanged();
     }
 
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+        _mapInfo = map;
+        updateData();
+        fireTableDataChanged();
+    }
+
     @Override
     public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
         _mapInfo = map;
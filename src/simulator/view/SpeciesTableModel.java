@@ -72,6 +72,13 @@ public class SpeciesTableModel extends AbstractTableModel implements EcoSysObser
         fireTableDataChanged();
     }
 
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+        _animals = animals;
+        updateData();
+        fireTableDataChanged();
+    }
+
     @Override
     public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
 
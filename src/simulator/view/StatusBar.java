@@ -67,6 +67,11 @@ public class StatusBar extends JPanel implements EcoSysObserver {
         updateAnimalCount(animals.size());
     }
 
+    @Override
+    public void onAnimalsAdded(double time, MapInfo map, List<AnimalInfo> animals, List<AnimalInfo> added) {
+        updateAnimalCount(animals.size());
+    }
+
     @Override
     public void onRegionSet(int row, int col, MapInfo map, RegionInfo r) {
     }